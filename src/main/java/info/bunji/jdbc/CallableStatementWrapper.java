@@ -0,0 +1,712 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ **********************************************************
+ * implements CallableStatement static delegate.
+ *
+ * @author f.kinoshita
+ **********************************************************
+ */
+class CallableStatementWrapper extends PreparedStatementWrapper implements CallableStatement {
+
+	/** real CallableStatement */
+	private final CallableStatement cstmt;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param cstmt real statement
+	 * @param handler logging handler
+	 **********************************************
+	 */
+	CallableStatementWrapper(CallableStatement cstmt, StatementProxy handler) {
+		super(cstmt, handler);
+		this.cstmt = cstmt;
+	}
+
+	@Override
+	public void registerOutParameter(int parameterIndex, int sqlType) throws SQLException {
+		cstmt.registerOutParameter(parameterIndex, sqlType);
+	}
+
+	@Override
+	public void registerOutParameter(int parameterIndex, int sqlType, int scale) throws SQLException {
+		cstmt.registerOutParameter(parameterIndex, sqlType, scale);
+	}
+
+	@Override
+	public boolean wasNull() throws SQLException {
+		return cstmt.wasNull();
+	}
+
+	@Override
+	public String getString(int parameterIndex) throws SQLException {
+		return cstmt.getString(parameterIndex);
+	}
+
+	@Override
+	public boolean getBoolean(int parameterIndex) throws SQLException {
+		return cstmt.getBoolean(parameterIndex);
+	}
+
+	@Override
+	public byte getByte(int parameterIndex) throws SQLException {
+		return cstmt.getByte(parameterIndex);
+	}
+
+	@Override
+	public short getShort(int parameterIndex) throws SQLException {
+		return cstmt.getShort(parameterIndex);
+	}
+
+	@Override
+	public int getInt(int parameterIndex) throws SQLException {
+		return cstmt.getInt(parameterIndex);
+	}
+
+	@Override
+	public long getLong(int parameterIndex) throws SQLException {
+		return cstmt.getLong(parameterIndex);
+	}
+
+	@Override
+	public float getFloat(int parameterIndex) throws SQLException {
+		return cstmt.getFloat(parameterIndex);
+	}
+
+	@Override
+	public double getDouble(int parameterIndex) throws SQLException {
+		return cstmt.getDouble(parameterIndex);
+	}
+
+	@Deprecated
+	@Override
+	public BigDecimal getBigDecimal(int parameterIndex, int scale) throws SQLException {
+		return cstmt.getBigDecimal(parameterIndex, scale);
+	}
+
+	@Override
+	public byte[] getBytes(int parameterIndex) throws SQLException {
+		return cstmt.getBytes(parameterIndex);
+	}
+
+	@Override
+	public java.sql.Date getDate(int parameterIndex) throws SQLException {
+		return cstmt.getDate(parameterIndex);
+	}
+
+	@Override
+	public java.sql.Time getTime(int parameterIndex) throws SQLException {
+		return cstmt.getTime(parameterIndex);
+	}
+
+	@Override
+	public java.sql.Timestamp getTimestamp(int parameterIndex) throws SQLException {
+		return cstmt.getTimestamp(parameterIndex);
+	}
+
+	@Override
+	public Object getObject(int parameterIndex) throws SQLException {
+		return cstmt.getObject(parameterIndex);
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(int parameterIndex) throws SQLException {
+		return cstmt.getBigDecimal(parameterIndex);
+	}
+
+	@Override
+	public Object getObject(int parameterIndex, Map<String,Class<?>> map) throws SQLException {
+		return cstmt.getObject(parameterIndex, map);
+	}
+
+	@Override
+	public Ref getRef(int parameterIndex) throws SQLException {
+		return cstmt.getRef(parameterIndex);
+	}
+
+	@Override
+	public Blob getBlob(int parameterIndex) throws SQLException {
+		return cstmt.getBlob(parameterIndex);
+	}
+
+	@Override
+	public Clob getClob(int parameterIndex) throws SQLException {
+		return cstmt.getClob(parameterIndex);
+	}
+
+	@Override
+	public Array getArray(int parameterIndex) throws SQLException {
+		return cstmt.getArray(parameterIndex);
+	}
+
+	@Override
+	public java.sql.Date getDate(int parameterIndex, Calendar cal) throws SQLException {
+		return cstmt.getDate(parameterIndex, cal);
+	}
+
+	@Override
+	public java.sql.Time getTime(int parameterIndex, Calendar cal) throws SQLException {
+		return cstmt.getTime(parameterIndex, cal);
+	}
+
+	@Override
+	public java.sql.Timestamp getTimestamp(int parameterIndex, Calendar cal) throws SQLException {
+		return cstmt.getTimestamp(parameterIndex, cal);
+	}
+
+	@Override
+	public void registerOutParameter(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		cstmt.registerOutParameter(parameterIndex, sqlType, typeName);
+	}
+
+	@Override
+	public void registerOutParameter(String parameterName, int sqlType) throws SQLException {
+		cstmt.registerOutParameter(parameterName, sqlType);
+	}
+
+	@Override
+	public void registerOutParameter(String parameterName, int sqlType, int scale) throws SQLException {
+		cstmt.registerOutParameter(parameterName, sqlType, scale);
+	}
+
+	@Override
+	public void registerOutParameter(String parameterName, int sqlType, String typeName) throws SQLException {
+		cstmt.registerOutParameter(parameterName, sqlType, typeName);
+	}
+
+	@Override
+	public URL getURL(int parameterIndex) throws SQLException {
+		return cstmt.getURL(parameterIndex);
+	}
+
+	@Override
+	public void setURL(String parameterName, URL val) throws SQLException {
+		cstmt.setURL(parameterName, val);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setNull(String parameterName, int sqlType) throws SQLException {
+		cstmt.setNull(parameterName, sqlType);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setBoolean(String parameterName, boolean x) throws SQLException {
+		cstmt.setBoolean(parameterName, x);
+		handler.bindParameter(parameterName, Types.BOOLEAN, x);
+	}
+
+	@Override
+	public void setByte(String parameterName, byte x) throws SQLException {
+		cstmt.setByte(parameterName, x);
+		handler.bindParameter(parameterName, Types.TINYINT, x);
+	}
+
+	@Override
+	public void setShort(String parameterName, short x) throws SQLException {
+		cstmt.setShort(parameterName, x);
+		handler.bindParameter(parameterName, Types.SMALLINT, x);
+	}
+
+	@Override
+	public void setInt(String parameterName, int x) throws SQLException {
+		cstmt.setInt(parameterName, x);
+		handler.bindParameter(parameterName, Types.INTEGER, x);
+	}
+
+	@Override
+	public void setLong(String parameterName, long x) throws SQLException {
+		cstmt.setLong(parameterName, x);
+		handler.bindParameter(parameterName, Types.BIGINT, x);
+	}
+
+	@Override
+	public void setFloat(String parameterName, float x) throws SQLException {
+		cstmt.setFloat(parameterName, x);
+		handler.bindParameter(parameterName, Types.FLOAT, x);
+	}
+
+	@Override
+	public void setDouble(String parameterName, double x) throws SQLException {
+		cstmt.setDouble(parameterName, x);
+		handler.bindParameter(parameterName, Types.DOUBLE, x);
+	}
+
+	@Override
+	public void setBigDecimal(String parameterName, BigDecimal x) throws SQLException {
+		cstmt.setBigDecimal(parameterName, x);
+		handler.bindParameter(parameterName, Types.NUMERIC, x);
+	}
+
+	@Override
+	public void setString(String parameterName, String x) throws SQLException {
+		cstmt.setString(parameterName, x);
+		handler.bindParameter(parameterName, Types.CHAR, x);
+	}
+
+	@Override
+	public void setBytes(String parameterName, byte[] x) throws SQLException {
+		cstmt.setBytes(parameterName, x);
+		handler.bindParameter(parameterName, Types.BINARY, x);
+	}
+
+	@Override
+	public void setDate(String parameterName, java.sql.Date x) throws SQLException {
+		cstmt.setDate(parameterName, x);
+		handler.bindParameter(parameterName, Types.DATE, x);
+	}
+
+	@Override
+	public void setTime(String parameterName, java.sql.Time x) throws SQLException {
+		cstmt.setTime(parameterName, x);
+		handler.bindParameter(parameterName, Types.TIME, x);
+	}
+
+	@Override
+	public void setTimestamp(String parameterName, java.sql.Timestamp x) throws SQLException {
+		cstmt.setTimestamp(parameterName, x);
+		handler.bindParameter(parameterName, Types.TIMESTAMP, x);
+	}
+
+	@Override
+	public void setAsciiStream(String parameterName, InputStream x, int length) throws SQLException {
+		cstmt.setAsciiStream(parameterName, x, length);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setBinaryStream(String parameterName, InputStream x, int length) throws SQLException {
+		cstmt.setBinaryStream(parameterName, x, length);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setObject(String parameterName, Object x, int targetSqlType, int scale) throws SQLException {
+		cstmt.setObject(parameterName, x, targetSqlType, scale);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setObject(String parameterName, Object x, int targetSqlType) throws SQLException {
+		cstmt.setObject(parameterName, x, targetSqlType);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setObject(String parameterName, Object x) throws SQLException {
+		cstmt.setObject(parameterName, x);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setCharacterStream(String parameterName, Reader reader, int length) throws SQLException {
+		cstmt.setCharacterStream(parameterName, reader, length);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, reader);
+	}
+
+	@Override
+	public void setDate(String parameterName, java.sql.Date x, Calendar cal) throws SQLException {
+		cstmt.setDate(parameterName, x, cal);
+		handler.bindParameter(parameterName, Types.DATE, x);
+	}
+
+	@Override
+	public void setTime(String parameterName, java.sql.Time x, Calendar cal) throws SQLException {
+		cstmt.setTime(parameterName, x, cal);
+		handler.bindParameter(parameterName, Types.TIME, x);
+	}
+
+	@Override
+	public void setTimestamp(String parameterName, java.sql.Timestamp x, Calendar cal) throws SQLException {
+		cstmt.setTimestamp(parameterName, x, cal);
+		handler.bindParameter(parameterName, Types.TIMESTAMP, x);
+	}
+
+	@Override
+	public void setNull(String parameterName, int sqlType, String typeName) throws SQLException {
+		cstmt.setNull(parameterName, sqlType, typeName);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public String getString(String parameterName) throws SQLException {
+		return cstmt.getString(parameterName);
+	}
+
+	@Override
+	public boolean getBoolean(String parameterName) throws SQLException {
+		return cstmt.getBoolean(parameterName);
+	}
+
+	@Override
+	public byte getByte(String parameterName) throws SQLException {
+		return cstmt.getByte(parameterName);
+	}
+
+	@Override
+	public short getShort(String parameterName) throws SQLException {
+		return cstmt.getShort(parameterName);
+	}
+
+	@Override
+	public int getInt(String parameterName) throws SQLException {
+		return cstmt.getInt(parameterName);
+	}
+
+	@Override
+	public long getLong(String parameterName) throws SQLException {
+		return cstmt.getLong(parameterName);
+	}
+
+	@Override
+	public float getFloat(String parameterName) throws SQLException {
+		return cstmt.getFloat(parameterName);
+	}
+
+	@Override
+	public double getDouble(String parameterName) throws SQLException {
+		return cstmt.getDouble(parameterName);
+	}
+
+	@Override
+	public byte[] getBytes(String parameterName) throws SQLException {
+		return cstmt.getBytes(parameterName);
+	}
+
+	@Override
+	public java.sql.Date getDate(String parameterName) throws SQLException {
+		return cstmt.getDate(parameterName);
+	}
+
+	@Override
+	public java.sql.Time getTime(String parameterName) throws SQLException {
+		return cstmt.getTime(parameterName);
+	}
+
+	@Override
+	public java.sql.Timestamp getTimestamp(String parameterName) throws SQLException {
+		return cstmt.getTimestamp(parameterName);
+	}
+
+	@Override
+	public Object getObject(String parameterName) throws SQLException {
+		return cstmt.getObject(parameterName);
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(String parameterName) throws SQLException {
+		return cstmt.getBigDecimal(parameterName);
+	}
+
+	@Override
+	public Object getObject(String parameterName, Map<String,Class<?>> map) throws SQLException {
+		return cstmt.getObject(parameterName, map);
+	}
+
+	@Override
+	public Ref getRef(String parameterName) throws SQLException {
+		return cstmt.getRef(parameterName);
+	}
+
+	@Override
+	public Blob getBlob(String parameterName) throws SQLException {
+		return cstmt.getBlob(parameterName);
+	}
+
+	@Override
+	public Clob getClob(String parameterName) throws SQLException {
+		return cstmt.getClob(parameterName);
+	}
+
+	@Override
+	public Array getArray(String parameterName) throws SQLException {
+		return cstmt.getArray(parameterName);
+	}
+
+	@Override
+	public java.sql.Date getDate(String parameterName, Calendar cal) throws SQLException {
+		return cstmt.getDate(parameterName, cal);
+	}
+
+	@Override
+	public java.sql.Time getTime(String parameterName, Calendar cal) throws SQLException {
+		return cstmt.getTime(parameterName, cal);
+	}
+
+	@Override
+	public java.sql.Timestamp getTimestamp(String parameterName, Calendar cal) throws SQLException {
+		return cstmt.getTimestamp(parameterName, cal);
+	}
+
+	@Override
+	public URL getURL(String parameterName) throws SQLException {
+		return cstmt.getURL(parameterName);
+	}
+
+	@Override
+	public RowId getRowId(int parameterIndex) throws SQLException {
+		return cstmt.getRowId(parameterIndex);
+	}
+
+	@Override
+	public RowId getRowId(String parameterName) throws SQLException {
+		return cstmt.getRowId(parameterName);
+	}
+
+	@Override
+	public void setRowId(String parameterName, RowId x) throws SQLException {
+		cstmt.setRowId(parameterName, x);
+		handler.bindParameter(parameterName, Types.ROWID, x);
+	}
+
+	@Override
+	public void setNString(String parameterName, String value) throws SQLException {
+		cstmt.setNString(parameterName, value);
+		handler.bindParameter(parameterName, Types.NCHAR, value);
+	}
+
+	@Override
+	public void setNCharacterStream(String parameterName, Reader value, long length) throws SQLException {
+		cstmt.setNCharacterStream(parameterName, value, length);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setNClob(String parameterName, NClob value) throws SQLException {
+		cstmt.setNClob(parameterName, value);
+		handler.bindParameter(parameterName, Types.NCLOB, value);
+	}
+
+	@Override
+	public void setClob(String parameterName, Reader reader, long length) throws SQLException {
+		cstmt.setClob(parameterName, reader, length);
+		handler.bindParameter(parameterName, Types.CLOB, reader);
+	}
+
+	@Override
+	public void setBlob(String parameterName, InputStream inputStream, long length) throws SQLException {
+		cstmt.setBlob(parameterName, inputStream, length);
+		handler.bindParameter(parameterName, Types.BLOB, inputStream);
+	}
+
+	@Override
+	public void setNClob(String parameterName, Reader reader, long length) throws SQLException {
+		cstmt.setNClob(parameterName, reader, length);
+		handler.bindParameter(parameterName, Types.NCLOB, reader);
+	}
+
+	@Override
+	public NClob getNClob(int parameterIndex) throws SQLException {
+		return cstmt.getNClob(parameterIndex);
+	}
+
+	@Override
+	public NClob getNClob(String parameterName) throws SQLException {
+		return cstmt.getNClob(parameterName);
+	}
+
+	@Override
+	public void setSQLXML(String parameterName, SQLXML xmlObject) throws SQLException {
+		cstmt.setSQLXML(parameterName, xmlObject);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public SQLXML getSQLXML(int parameterIndex) throws SQLException {
+		return cstmt.getSQLXML(parameterIndex);
+	}
+
+	@Override
+	public SQLXML getSQLXML(String parameterName) throws SQLException {
+		return cstmt.getSQLXML(parameterName);
+	}
+
+	@Override
+	public String getNString(int parameterIndex) throws SQLException {
+		return cstmt.getNString(parameterIndex);
+	}
+
+	@Override
+	public String getNString(String parameterName) throws SQLException {
+		return cstmt.getNString(parameterName);
+	}
+
+	@Override
+	public Reader getNCharacterStream(int parameterIndex) throws SQLException {
+		return cstmt.getNCharacterStream(parameterIndex);
+	}
+
+	@Override
+	public Reader getNCharacterStream(String parameterName) throws SQLException {
+		return cstmt.getNCharacterStream(parameterName);
+	}
+
+	@Override
+	public Reader getCharacterStream(int parameterIndex) throws SQLException {
+		return cstmt.getCharacterStream(parameterIndex);
+	}
+
+	@Override
+	public Reader getCharacterStream(String parameterName) throws SQLException {
+		return cstmt.getCharacterStream(parameterName);
+	}
+
+	@Override
+	public void setBlob(String parameterName, Blob x) throws SQLException {
+		cstmt.setBlob(parameterName, x);
+		handler.bindParameter(parameterName, Types.BLOB, x);
+	}
+
+	@Override
+	public void setClob(String parameterName, Clob x) throws SQLException {
+		cstmt.setClob(parameterName, x);
+		handler.bindParameter(parameterName, Types.CLOB, x);
+	}
+
+	@Override
+	public void setAsciiStream(String parameterName, InputStream x, long length) throws SQLException {
+		cstmt.setAsciiStream(parameterName, x, length);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setBinaryStream(String parameterName, InputStream x, long length) throws SQLException {
+		cstmt.setBinaryStream(parameterName, x, length);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setCharacterStream(String parameterName, Reader reader, long length) throws SQLException {
+		cstmt.setCharacterStream(parameterName, reader, length);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, reader);
+	}
+
+	@Override
+	public void setAsciiStream(String parameterName, InputStream x) throws SQLException {
+		cstmt.setAsciiStream(parameterName, x);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setBinaryStream(String parameterName, InputStream x) throws SQLException {
+		cstmt.setBinaryStream(parameterName, x);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setCharacterStream(String parameterName, Reader reader) throws SQLException {
+		cstmt.setCharacterStream(parameterName, reader);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, reader);
+	}
+
+	@Override
+	public void setNCharacterStream(String parameterName, Reader value) throws SQLException {
+		cstmt.setNCharacterStream(parameterName, value);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setClob(String parameterName, Reader reader) throws SQLException {
+		cstmt.setClob(parameterName, reader);
+		handler.bindParameter(parameterName, Types.CLOB, reader);
+	}
+
+	@Override
+	public void setBlob(String parameterName, InputStream inputStream) throws SQLException {
+		cstmt.setBlob(parameterName, inputStream);
+		handler.bindParameter(parameterName, Types.BLOB, inputStream);
+	}
+
+	@Override
+	public void setNClob(String parameterName, Reader reader) throws SQLException {
+		cstmt.setNClob(parameterName, reader);
+		handler.bindParameter(parameterName, Types.NCLOB, reader);
+	}
+
+	@Override
+	public <T> T getObject(int parameterIndex, Class<T> type) throws SQLException {
+		return cstmt.getObject(parameterIndex, type);
+	}
+
+	@Override
+	public <T> T getObject(String parameterName, Class<T> type) throws SQLException {
+		return cstmt.getObject(parameterName, type);
+	}
+
+	@Override
+	public void setObject(String parameterName, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+		cstmt.setObject(parameterName, x, targetSqlType, scaleOrLength);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setObject(String parameterName, Object x, SQLType targetSqlType) throws SQLException {
+		cstmt.setObject(parameterName, x, targetSqlType);
+		handler.bindParameter(parameterName, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void registerOutParameter(int parameterIndex, SQLType sqlType) throws SQLException {
+		cstmt.registerOutParameter(parameterIndex, sqlType);
+	}
+
+	@Override
+	public void registerOutParameter(int parameterIndex, SQLType sqlType, int scale) throws SQLException {
+		cstmt.registerOutParameter(parameterIndex, sqlType, scale);
+	}
+
+	@Override
+	public void registerOutParameter(int parameterIndex, SQLType sqlType, String typeName) throws SQLException {
+		cstmt.registerOutParameter(parameterIndex, sqlType, typeName);
+	}
+
+	@Override
+	public void registerOutParameter(String parameterName, SQLType sqlType) throws SQLException {
+		cstmt.registerOutParameter(parameterName, sqlType);
+	}
+
+	@Override
+	public void registerOutParameter(String parameterName, SQLType sqlType, int scale) throws SQLException {
+		cstmt.registerOutParameter(parameterName, sqlType, scale);
+	}
+
+	@Override
+	public void registerOutParameter(String parameterName, SQLType sqlType, String typeName) throws SQLException {
+		cstmt.registerOutParameter(parameterName, sqlType, typeName);
+	}
+}
@@ -21,10 +21,10 @@ import java.lang.reflect.Method;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 import info.bunji.jdbc.logger.JdbcLogger;
-import info.bunji.jdbc.logger.JdbcLoggerFactory;
 
 /**
  **********************************************************
@@ -50,6 +50,20 @@ public class ConnectionProxy extends LoggerHelper implements InvocationHandler {
 		_conn = conn;
 	}
 
+	/**
+	 **********************************************
+	 * constractor
+	 * @param conn real connection
+	 * @param url connection url
+	 * @param connectionId connection id
+	 * @param logger resolved logger(inherited by statements)
+	 **********************************************
+	 */
+	ConnectionProxy(Connection conn, String url, String connectionId, JdbcLogger logger) {
+		super(url, connectionId, logger);
+		_conn = conn;
+	}
+
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 		try {
@@ -59,10 +73,10 @@ public class ConnectionProxy extends LoggerHelper implements InvocationHandler {
 			//}
 
 			Object ret;
+			int event;
 			String name = method.getName();
 			if (name.equals("createStatement")) {
-				Statement stmt = (Statement) method.invoke(_conn, args);
-				ret = ProxyFactory.wrapStatement(stmt, url, getConnectionId());
+				ret = wrapStatement((Statement) method.invoke(_conn, args));
 			} else if (name.equals("prepareStatement")) {
 				PreparedStatement stmt = null;
 				try {
@@ -72,7 +86,7 @@ public class ConnectionProxy extends LoggerHelper implements InvocationHandler {
 					reportException(e.getCause());
 					throw e;
 				}
-				ret = ProxyFactory.wrapPreparedStatement(stmt, url, args[0].toString(), getConnectionId());
+				ret = wrapPreparedStatement(stmt, args[0].toString());
 			} else if (name.equals("prepareCall")) {
 				CallableStatement stmt = null;
 				try {
@@ -82,12 +96,19 @@ public class ConnectionProxy extends LoggerHelper implements InvocationHandler {
 					reportException(e.getCause());
 					throw e;
 				}
-				ret = ProxyFactory.wrapCallableStatement(stmt, url, args[0].toString(), getConnectionId());
-			} else if (name.equals("close") && isConnectionLogging()) {
-				long start  = System.currentTimeMillis();
-				JdbcLogger logger = JdbcLoggerFactory.getLogger(this.url);
-				ret = method.invoke(_conn, args);
-				logger.debug(String.format(JdbcLogger.RETURN_MSG_FORMAT_WITH_CONN, System.currentTimeMillis() - start, getConnectionId(), "close connection."));
+				ret = wrapCallableStatement(stmt, args[0].toString());
+			} else if (name.equals("close")) {
+				closeConnection();
+				ret = null;
+			} else if ((event = transactionEvent(name, args)) != 0) {
+				long start = System.nanoTime();
+				try {
+					ret = method.invoke(_conn, args);
+				} catch (InvocationTargetException e) {
+					reportTransaction(event, System.nanoTime() - start, e.getCause());
+					throw e;
+				}
+				reportTransaction(event, System.nanoTime() - start, null);
 			} else {
 				ret = method.invoke(_conn, args);
 			}
@@ -98,4 +119,106 @@ public class ConnectionProxy extends LoggerHelper implements InvocationHandler {
 			endExecute();
 		}
 	}
+
+	/**
+	 **********************************************
+	 * prepareStatement/prepareCallを実行する.
+	 *
+	 * 静的ラッパーから呼び出され、準備中のSQLを実行中クエリとして扱う
+	 *
+	 * @param sql prepare sql
+	 * @param exec real prepare call
+	 * @return prepared statement
+	 * @throws SQLException prepare failed
+	 **********************************************
+	 */
+	<T extends Statement> T prepare(String sql, Execution<T> exec) throws SQLException {
+		try {
+			startExecute(sql);
+			return exec.execute();
+		} catch (Throwable t) {
+			reportException(t);
+			throw t;
+		} finally {
+			endExecute();
+		}
+	}
+
+	/**
+	 **********************************************
+	 * トランザクションの制御を行うメソッドかを判定する.
+	 *
+	 * rollback(Savepoint)はトランザクションを終了しないため対象外
+	 *
+	 * @param name method name
+	 * @param args method args
+	 * @return transaction event, or 0 if not target
+	 **********************************************
+	 */
+	private static int transactionEvent(String name, Object[] args) {
+		int argc = args != null ? args.length : 0;
+		if (name.equals("commit") && argc == 0) {
+			return JdbcLogger.TX_COMMIT;
+		} else if (name.equals("rollback") && argc == 0) {
+			return JdbcLogger.TX_ROLLBACK;
+		} else if (name.equals("setAutoCommit") && argc == 1) {
+			return Boolean.TRUE.equals(args[0]) ? JdbcLogger.TX_AUTOCOMMIT_ON : JdbcLogger.TX_AUTOCOMMIT_OFF;
+		}
+		return 0;
+	}
+
+	/**
+	 **********************************************
+	 * commit/rollback/setAutoCommitを実行する.
+	 *
+	 * 静的ラッパーから呼び出され、所要時間を計測して報告する
+	 *
+	 * @param event transaction event
+	 * @param exec real call
+	 * @throws SQLException call failed
+	 **********************************************
+	 */
+	void transaction(int event, Execution<Void> exec) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			exec.execute();
+		} catch (Throwable t) {
+			reportTransaction(event, System.nanoTime() - start, t);
+			throw t;
+		}
+		reportTransaction(event, System.nanoTime() - start, null);
+	}
+
+	/**
+	 **********************************************
+	 * close connection.
+	 *
+	 * @throws SQLException close failed
+	 **********************************************
+	 */
+	void closeConnection() throws SQLException {
+		// 暗黙的にcloseされるStatementの保留中の実行を出力する
+		flushPendingStatements();
+		reportTransaction(JdbcLogger.TX_CLOSE, 0L, null);
+		if (isConnectionLogging()) {
+			long start  = System.nanoTime();
+			JdbcLogger logger = getLogger();
+			_conn.close();
+			logger.debug(String.format(JdbcLogger.RETURN_MSG_FORMAT_WITH_CONN_MICROS, (System.nanoTime() - start) / JdbcLogger.NANOS_PER_MILLI, getConnectionId(), "close connection."));
+		} else {
+			_conn.close();
+		}
+	}
+
+	Statement wrapStatement(Statement stmt) {
+		return ProxyFactory.wrapStatement(stmt, this);
+	}
+
+	PreparedStatement wrapPreparedStatement(PreparedStatement stmt, String sql) {
+		return ProxyFactory.wrapPreparedStatement(stmt, sql, this);
+	}
+
+	CallableStatement wrapCallableStatement(CallableStatement stmt, String sql) {
+		return ProxyFactory.wrapCallableStatement(stmt, sql, this);
+	}
 }
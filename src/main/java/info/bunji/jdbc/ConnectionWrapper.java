@@ -0,0 +1,348 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+import info.bunji.jdbc.logger.JdbcLogger;
+
+/**
+ **********************************************************
+ * implements Connection static delegate.
+ * <pre>
+ * proxyType=static 時に利用する。
+ * ロギング対象外のメソッドはリフレクションを介さず、
+ * 実際のConnectionを直接呼び出す。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+class ConnectionWrapper implements Connection {
+
+	/** real Connection */
+	private final Connection conn;
+
+	/** logging handler */
+	private final ConnectionProxy handler;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param conn real connection
+	 * @param handler logging handler
+	 **********************************************
+	 */
+	ConnectionWrapper(Connection conn, ConnectionProxy handler) {
+		this.conn = conn;
+		this.handler = handler;
+	}
+
+	@Override
+	public Statement createStatement() throws SQLException {
+		return handler.wrapStatement(conn.createStatement());
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return handler.wrapPreparedStatement(handler.prepare(sql, () -> conn.prepareStatement(sql)), sql);
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return handler.wrapCallableStatement(handler.prepare(sql, () -> conn.prepareCall(sql)), sql);
+	}
+
+	@Override
+	public String nativeSQL(String sql) throws SQLException {
+		return conn.nativeSQL(sql);
+	}
+
+	@Override
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		handler.transaction(autoCommit ? JdbcLogger.TX_AUTOCOMMIT_ON : JdbcLogger.TX_AUTOCOMMIT_OFF, () -> {
+			conn.setAutoCommit(autoCommit);
+			return null;
+		});
+	}
+
+	@Override
+	public boolean getAutoCommit() throws SQLException {
+		return conn.getAutoCommit();
+	}
+
+	@Override
+	public void commit() throws SQLException {
+		handler.transaction(JdbcLogger.TX_COMMIT, () -> {
+			conn.commit();
+			return null;
+		});
+	}
+
+	@Override
+	public void rollback() throws SQLException {
+		handler.transaction(JdbcLogger.TX_ROLLBACK, () -> {
+			conn.rollback();
+			return null;
+		});
+	}
+
+	@Override
+	public void close() throws SQLException {
+		handler.closeConnection();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return conn.isClosed();
+	}
+
+	@Override
+	public DatabaseMetaData getMetaData() throws SQLException {
+		return conn.getMetaData();
+	}
+
+	@Override
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		conn.setReadOnly(readOnly);
+	}
+
+	@Override
+	public boolean isReadOnly() throws SQLException {
+		return conn.isReadOnly();
+	}
+
+	@Override
+	public void setCatalog(String catalog) throws SQLException {
+		conn.setCatalog(catalog);
+	}
+
+	@Override
+	public String getCatalog() throws SQLException {
+		return conn.getCatalog();
+	}
+
+	@Override
+	public void setTransactionIsolation(int level) throws SQLException {
+		conn.setTransactionIsolation(level);
+	}
+
+	@Override
+	public int getTransactionIsolation() throws SQLException {
+		return conn.getTransactionIsolation();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return conn.getWarnings();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		conn.clearWarnings();
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		return handler.wrapStatement(conn.createStatement(resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return handler.wrapPreparedStatement(handler.prepare(sql, () -> conn.prepareStatement(sql, resultSetType, resultSetConcurrency)), sql);
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return handler.wrapCallableStatement(handler.prepare(sql, () -> conn.prepareCall(sql, resultSetType, resultSetConcurrency)), sql);
+	}
+
+	@Override
+	public Map<String,Class<?>> getTypeMap() throws SQLException {
+		return conn.getTypeMap();
+	}
+
+	@Override
+	public void setTypeMap(Map<String,Class<?>> map) throws SQLException {
+		conn.setTypeMap(map);
+	}
+
+	@Override
+	public void setHoldability(int holdability) throws SQLException {
+		conn.setHoldability(holdability);
+	}
+
+	@Override
+	public int getHoldability() throws SQLException {
+		return conn.getHoldability();
+	}
+
+	@Override
+	public Savepoint setSavepoint() throws SQLException {
+		return conn.setSavepoint();
+	}
+
+	@Override
+	public Savepoint setSavepoint(String name) throws SQLException {
+		return conn.setSavepoint(name);
+	}
+
+	@Override
+	public void rollback(Savepoint savepoint) throws SQLException {
+		conn.rollback(savepoint);
+	}
+
+	@Override
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		conn.releaseSavepoint(savepoint);
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return handler.wrapStatement(conn.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return handler.wrapPreparedStatement(handler.prepare(sql, () -> conn.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability)), sql);
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return handler.wrapCallableStatement(handler.prepare(sql, () -> conn.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability)), sql);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return handler.wrapPreparedStatement(handler.prepare(sql, () -> conn.prepareStatement(sql, autoGeneratedKeys)), sql);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return handler.wrapPreparedStatement(handler.prepare(sql, () -> conn.prepareStatement(sql, columnIndexes)), sql);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return handler.wrapPreparedStatement(handler.prepare(sql, () -> conn.prepareStatement(sql, columnNames)), sql);
+	}
+
+	@Override
+	public Clob createClob() throws SQLException {
+		return conn.createClob();
+	}
+
+	@Override
+	public Blob createBlob() throws SQLException {
+		return conn.createBlob();
+	}
+
+	@Override
+	public NClob createNClob() throws SQLException {
+		return conn.createNClob();
+	}
+
+	@Override
+	public SQLXML createSQLXML() throws SQLException {
+		return conn.createSQLXML();
+	}
+
+	@Override
+	public boolean isValid(int timeout) throws SQLException {
+		return conn.isValid(timeout);
+	}
+
+	@Override
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		conn.setClientInfo(name, value);
+	}
+
+	@Override
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		conn.setClientInfo(properties);
+	}
+
+	@Override
+	public String getClientInfo(String name) throws SQLException {
+		return conn.getClientInfo(name);
+	}
+
+	@Override
+	public Properties getClientInfo() throws SQLException {
+		return conn.getClientInfo();
+	}
+
+	@Override
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		return conn.createArrayOf(typeName, elements);
+	}
+
+	@Override
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		return conn.createStruct(typeName, attributes);
+	}
+
+	@Override
+	public void setSchema(String schema) throws SQLException {
+		conn.setSchema(schema);
+	}
+
+	@Override
+	public String getSchema() throws SQLException {
+		return conn.getSchema();
+	}
+
+	@Override
+	public void abort(Executor executor) throws SQLException {
+		conn.abort(executor);
+	}
+
+	@Override
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		conn.setNetworkTimeout(executor, milliseconds);
+	}
+
+	@Override
+	public int getNetworkTimeout() throws SQLException {
+		return conn.getNetworkTimeout();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return conn.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return conn.isWrapperFor(iface);
+	}
+}
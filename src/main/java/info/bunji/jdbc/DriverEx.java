@@ -46,6 +46,9 @@ public class DriverEx implements java.sql.Driver {
 
 	public static final String BASE_CONN_ID;
 
+	/** machine id (NIC情報から生成) */
+	public static final String MACHINE_ID;
+
 	static {
 		Set<String> subDrivers = new TreeSet<String>();
 
@@ -126,6 +129,7 @@ public class DriverEx implements java.sql.Driver {
 
 		//BASE_CONN_ID = String.format("%X%X", machinePiece, processId);
 		BASE_CONN_ID = String.format("%X", processId); /// only process id
+		MACHINE_ID = String.format("%06X", machinePiece);
 	}
 
 	/*
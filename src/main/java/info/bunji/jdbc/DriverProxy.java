@@ -15,6 +15,7 @@
  */
 package info.bunji.jdbc;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -22,11 +23,18 @@ import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import info.bunji.jdbc.logger.JdbcLogger;
 import info.bunji.jdbc.logger.JdbcLoggerFactory;
@@ -40,11 +48,31 @@ import info.bunji.jdbc.logger.JdbcLoggerFactory;
  */
 public class DriverProxy implements InvocationHandler {
 
-	/** real Connection */
-	private Driver realDriverLast;
-
 	private static final Driver DRIVER_EX = new DriverEx();
 
+	/** 解決済みの実ドライバの最大件数(超えた場合は破棄する) */
+	private static final int MAX_DRIVER_CACHE_SIZE = 1024;
+
+	/** 登録解除されたドライバを確認する間隔(ms) */
+	private static final long VALIDATE_INTERVAL = 5000L;
+
+	/**
+	 * 接続URL毎の実ドライバと実際の接続URL.
+	 *
+	 * 実ドライバは弱参照で保持し、アプリケーションのアンデプロイ時に
+	 * クラスローダーを解放できるようにする
+	 */
+	private static final ConcurrentMap<String, CachedDriver> driverCache = new ConcurrentHashMap<String, CachedDriver>();
+
+	/** 最後に解決した実ドライバ(接続URLを持たないメソッドの呼出先) */
+	private static volatile WeakReference<Driver> defaultDriver = new WeakReference<Driver>(null);
+
+	/** 最後に登録解除を確認した時刻 */
+	private static final AtomicLong lastValidated = new AtomicLong(System.currentTimeMillis());
+
+	/** 接続URL毎に適用済みのロギング設定 */
+	private static final ConcurrentMap<String, AppliedSetting> settingCache = new ConcurrentHashMap<String, AppliedSetting>();
+
 	private static final String PARAM_PREFIX = "logging.";
 
 	private static final AtomicInteger counter = new AtomicInteger(0);
@@ -55,32 +83,21 @@ public class DriverProxy implements InvocationHandler {
 	 */
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
 		try {
-			String name = method.getName();
-
 			if (name.equals("acceptsURL")) {
 				return acceptsURL((String) args[0]);
 			} else if (name.equals("connect")) {
-				Driver d = getRealDriver((String) args[0]);
-				if (d == null) return null;
-				args[0] = getRealUrl((String)args[0]);
+				RealDriver real = getRealDriver((String) args[0]);
+				if (real == null) return null;
+				Driver d = real.driver;
+				args[0] = real.url;
 
 				JdbcLogger logger = JdbcLoggerFactory.getLogger((String)args[0]);
 
 				// check logging parameter
-				if (args.length > 1) {
-					Properties newProps = (Properties) args[1];
-					Properties chkProps = new Properties();
-					chkProps.putAll(newProps);
-					Map<String, Object> settings = new HashMap<String, Object>();
-					for (Entry<Object, Object> entry : chkProps.entrySet()) {
-						String key = (String)entry.getKey();
-						if (key.startsWith(PARAM_PREFIX)) {
-							settings.put(key.substring(PARAM_PREFIX.length()), entry.getValue());
-							newProps.remove(key);
-						}
-					}
-					logger.setSetting(settings);
+				if (args.length > 1 && args[1] != null) {
+					applySettings((String)args[0], logger, (Properties) args[1]);
 				}
 
 				Connection conn = null;
@@ -88,16 +105,16 @@ public class DriverProxy implements InvocationHandler {
 					// connectionIdの生成
 					String id = String.format("%s%04d", DriverEx.BASE_CONN_ID, counter.incrementAndGet());
 					counter.compareAndSet(100, 0);
-					long start = System.currentTimeMillis();
+					long start = System.nanoTime();
 					try {
-						ConnectionProxy connProxy = new ConnectionProxy((Connection) method.invoke(d, args), (String)args[0], id);
-						conn = ProxyFactory.getInstance().newProxyInstance(Connection.class, connProxy);
+						Connection realConn = (Connection) method.invoke(d, args);
+						conn = ProxyFactory.wrapConnection(realConn, new ConnectionProxy(realConn, (String)args[0], id, logger));
 						if (logger.isConnectionLogging()) {
-							logger.debug(String.format(JdbcLogger.RETURN_MSG_FORMAT_WITH_CONN, System.currentTimeMillis() - start, id, "get connection."));
+							logger.debug(String.format(JdbcLogger.RETURN_MSG_FORMAT_WITH_CONN_MICROS, (System.nanoTime() - start) / JdbcLogger.NANOS_PER_MILLI, id, "get connection."));
 						}
 					} catch (Throwable t) {
 						if (logger.isConnectionLogging()) {
-							logger.error(String.format(JdbcLogger.EXCEPTION_MSG_FORMAT_WITH_CONN, System.currentTimeMillis() - start, id, "get connection."), t.getCause());
+							logger.error(String.format(JdbcLogger.EXCEPTION_MSG_FORMAT_WITH_CONN_MICROS, (System.nanoTime() - start) / JdbcLogger.NANOS_PER_MILLI, id, "get connection."), t.getCause());
 						}
 						throw t;
 					}
@@ -107,16 +124,21 @@ public class DriverProxy implements InvocationHandler {
 				}
 				return conn;
 			} else if (name.equals("getPropertyInfo")) {
-				Driver d = getRealDriver((String)args[0]);
-				return d.getPropertyInfo(getRealUrl((String)args[0]), (Properties) args[1]);
+				RealDriver real = getRealDriver((String)args[0]);
+				return real.driver.getPropertyInfo(real.url, (Properties) args[1]);
 			}
 
-			if(realDriverLast == null) {
+			Driver d = getDefaultDriver();
+			if(d == null) {
 				// DriverExのメソッドを呼び出し
 				return method.invoke(DRIVER_EX, args);
 			}
-			return method.invoke(realDriverLast, args);
+			return method.invoke(d, args);
 		} catch (InvocationTargetException e) {
+			if (name.equals("connect")) {
+				// 実ドライバが登録解除されている可能性があるため、その場で確認する
+				invalidateDrivers();
+			}
 			throw e.getCause();
 		}
 	}
@@ -148,18 +170,164 @@ public class DriverProxy implements InvocationHandler {
 	/**
 	 * get real driver.
 	 *
+	 * 解決結果は接続URL毎に保持し、DriverManagerへの問い合わせは初回のみとする
+	 * (保持していた実ドライバが回収済みの場合は再度問い合わせる)
+	 *
 	 * @param url
-	 * @return
+	 * @return real driver and url. if not log4jdbcex url null
 	 * @throws SQLException
 	 */
-	private Driver getRealDriver(String url) throws SQLException {
-		Driver driver = null;
-
+	private RealDriver getRealDriver(String url) throws SQLException {
 		// getDriver()だと再帰となるため自分自身のURLの場合のみ処理する
-		if (url != null && url.startsWith(DriverEx.DRIVER_URL_PREFIX)) {
-			realDriverLast = DriverManager.getDriver(getRealUrl(url.toString()));
-			driver = realDriverLast;
+		if (url == null || !url.startsWith(DriverEx.DRIVER_URL_PREFIX)) return null;
+
+		validateDrivers();
+		CachedDriver cached = driverCache.get(url);
+		Driver d = cached != null ? cached.get() : null;
+		if (d != null) {
+			return new RealDriver(d, cached.url);
+		}
+
+		String realUrl = getRealUrl(url);
+		d = DriverManager.getDriver(realUrl);
+		if (driverCache.size() >= MAX_DRIVER_CACHE_SIZE) driverCache.clear();
+		driverCache.put(url, new CachedDriver(d, realUrl));
+		defaultDriver = new WeakReference<Driver>(d);
+		return new RealDriver(d, realUrl);
+	}
+
+	/**
+	 * 接続URLを持たないメソッドの呼出先を取得する.
+	 *
+	 * @return real driver(nullable)
+	 */
+	private static Driver getDefaultDriver() {
+		Driver d = defaultDriver.get();
+		if (d == null && !driverCache.isEmpty()) {
+			// 回収済みの場合は残っている実ドライバを利用する
+			invalidateDrivers();
+			d = defaultDriver.get();
+		}
+		return d;
+	}
+
+	/**
+	 * 登録解除された実ドライバを破棄する.
+	 *
+	 * 一定間隔毎にいずれか1スレッドのみが確認する
+	 */
+	private static void validateDrivers() {
+		long now = System.currentTimeMillis();
+		long last = lastValidated.get();
+		if (now - last < VALIDATE_INTERVAL || !lastValidated.compareAndSet(last, now)) return;
+		if (driverCache.isEmpty()) return;
+		invalidateDrivers();
+	}
+
+	/**
+	 * DriverManagerに登録されていない(または回収済みの)実ドライバを破棄する.
+	 */
+	static void invalidateDrivers() {
+		Set<Driver> registered = Collections.newSetFromMap(new IdentityHashMap<Driver, Boolean>());
+		Enumeration<Driver> drivers = DriverManager.getDrivers();
+		while (drivers.hasMoreElements()) {
+			registered.add(drivers.nextElement());
+		}
+		driverCache.values().removeIf(cached -> !registered.contains(cached.get()));
+		Driver d = defaultDriver.get();
+		if (d == null || !registered.contains(d)) {
+			// 残っている実ドライバがあればそれを利用する
+			d = null;
+			for (CachedDriver cached : driverCache.values()) {
+				if ((d = cached.get()) != null) break;
+			}
+			defaultDriver = new WeakReference<Driver>(d);
+		}
+	}
+
+	/**
+	 * 接続プロパティのロギング設定(logging.*)をLoggerに適用する.
+	 *
+	 * 前回の接続時と同じ設定で、その後Loggerの設定が変更されていない場合は適用しない
+	 *
+	 * @param url real connection url
+	 * @param logger logger for url
+	 * @param props connection properties(ロギング設定は取り除く)
+	 */
+	private static void applySettings(String url, JdbcLogger logger, Properties props) {
+		Map<String, Object> settings = extractSettings(props);
+		if (settings.isEmpty()) return;
+
+		AppliedSetting applied = settingCache.get(url);
+		if (applied != null && applied.logger == logger
+				&& applied.version == logger.getSettingVersion() && applied.settings.equals(settings)) return;
+
+		logger.setSetting(settings);
+		if (settingCache.size() >= MAX_DRIVER_CACHE_SIZE) settingCache.clear();
+		settingCache.put(url, new AppliedSetting(logger, settings, logger.getSettingVersion()));
+	}
+
+	/**
+	 * 接続プロパティからロギング設定を取り出す.
+	 *
+	 * @param props connection properties
+	 * @return logging settings(prefix removed)
+	 */
+	static Map<String, Object> extractSettings(Properties props) {
+		Map<String, Object> settings = null;
+		for (Entry<Object, Object> entry : props.entrySet()) {
+			Object key = entry.getKey();
+			if (key instanceof String && ((String) key).startsWith(PARAM_PREFIX)) {
+				if (settings == null) settings = new HashMap<String, Object>();
+				settings.put(((String) key).substring(PARAM_PREFIX.length()), entry.getValue());
+			}
+		}
+		if (settings == null) return Collections.emptyMap();
+
+		// 実ドライバには渡さない
+		for (String key : settings.keySet()) {
+			props.remove(PARAM_PREFIX + key);
+		}
+		return settings;
+	}
+
+	/**
+	 * 適用済みのロギング設定
+	 */
+	private static final class AppliedSetting {
+		private final JdbcLogger logger;
+		private final Map<String, Object> settings;
+		private final long version;
+
+		private AppliedSetting(JdbcLogger logger, Map<String, Object> settings, long version) {
+			this.logger = logger;
+			this.settings = settings;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * 保持している実ドライバ(弱参照)と実際の接続URL
+	 */
+	private static final class CachedDriver extends WeakReference<Driver> {
+		private final String url;
+
+		private CachedDriver(Driver driver, String url) {
+			super(driver);
+			this.url = url;
+		}
+	}
+
+	/**
+	 * 解決済みの実ドライバと実際の接続URL
+	 */
+	private static final class RealDriver {
+		private final Driver driver;
+		private final String url;
+
+		private RealDriver(Driver driver, String url) {
+			this.driver = driver;
+			this.url = url;
 		}
-		return driver;
 	}
 }
@@ -15,15 +15,19 @@
  */
 package info.bunji.jdbc;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import info.bunji.jdbc.logger.JdbcLogger;
 import info.bunji.jdbc.logger.JdbcLoggerFactory;
 import info.bunji.jdbc.specifics.RdbmsSpecifics;
+import info.bunji.jdbc.util.SqlTemplate;
 
 /**
  *
@@ -34,41 +38,146 @@ public abstract class LoggerHelper {
 	/** connection url */
 	protected String url;
 
-	/** このインスタンスが利用するLogger */
-	private JdbcLogger logger;
+	/** このインスタンスが利用するLogger(コネクション毎に解決し、Statementは引き継ぐ) */
+	private final JdbcLogger logger;
 
-	/** クエリの実行開始時間 */
+	/** クエリの実行開始時間(表示用の時刻) */
 	private long _startTime = 0L;
 
+	/** クエリの実行開始時間(経過時間計測用、System.nanoTime()) */
+	private long _startNanos = 0L;
+
 	/** クエリを一意に得意するためのキー */
 	private String _queryId;
 
 	/** 実行SQL */
 	private String _execSql = "";
 
-	/** パラメータを保持するList */
-	private List<ParameterInfo> _paramList = new ArrayList<ParameterInfo>();
+	/** パラメータを保持するバッファ(実行毎に再利用する) */
+	private ParameterBuffer _params = new ParameterBuffer();
+
+	/** addBatch用のSQL(またはSQLとパラメータの組)を保持するList */
+	private List<Object> _batchList = null;
+
+	/** _batchListをスナップショットと共有しているか */
+	private boolean _batchShared = false;
+
+	/** 実行済みのバッチのパラメータ領域(次のaddBatchで再利用する) */
+	private List<ParameterBuffer> _batchPool = null;
 
-	/** addBatch用のSQLを保持するList */
-	private List<String> _batchList = null;
+	/** パラメータ領域を再利用する上限数 */
+	private static final int MAX_BATCH_POOL = 1024;
 
 	private boolean isExecuteBatch = false;
 
-	/** パラメータ置換用の正規表現 */
-	private static final Pattern PARAM_REGEX = Pattern.compile("\\?");
+	/** フェッチの完了までログ出力の判定を保留しているか */
+	private boolean _fetchPending = false;
+
+	/** 実行完了までの時間(フェッチ保留時のみ、ns) */
+	private long _execNanos = 0L;
+
+	/** 取得行数(未計測時は-1) */
+	private long _fetchRows = -1L;
+
+	/** 実行開始から最後のnext()までの時間(ns) */
+	private long _fetchNanos = 0L;
 
 	/** connection id */
 	private final String connectionId;
 
+	/** コネクションの識別キーの採番 */
+	private static final AtomicLong connectionKeys = new AtomicLong();
+
+	/**
+	 * コネクション毎に一意な識別キー(Statementは引き継ぐ).
+	 *
+	 * 表示用のconnection idは循環して重複するため、
+	 * コネクション単位の状態の管理にはこちらを利用する
+	 */
+	private final long connectionKey;
+
+	/** 生成元のコネクション(Statementのみ) */
+	private final LoggerHelper _parent;
+
+	/** フェッチの完了を待っているStatement(コネクションのみ、弱参照) */
+	private Set<LoggerHelper> _pendingStatements = null;
+
 	/**
 	 ********************************************
 	 * @param url execute sql (for PreparedStatement or CallableStatement)
 	 ********************************************
 	 */
 	LoggerHelper(String url, String connId) {
+		this(url, connId, JdbcLoggerFactory.getLogger(url));
+	}
+
+	/**
+	 ********************************************
+	 * @param url connection url
+	 * @param connId connection id
+	 * @param logger resolved logger
+	 ********************************************
+	 */
+	LoggerHelper(String url, String connId, JdbcLogger logger) {
+		this(url, connId, logger, connectionKeys.incrementAndGet());
+	}
+
+	/**
+	 ********************************************
+	 * @param url connection url
+	 * @param connId connection id
+	 * @param logger resolved logger
+	 * @param connKey unique connection key(inherited from connection)
+	 ********************************************
+	 */
+	LoggerHelper(String url, String connId, JdbcLogger logger, long connKey) {
 		this.url = url;
-		logger = JdbcLoggerFactory.getLogger(url);
+		this.logger = logger;
 		connectionId = connId;
+		connectionKey = connKey;
+		_parent = null;
+	}
+
+	/**
+	 ********************************************
+	 * @param parent connection(url, connection id/key and logger are inherited)
+	 * @param sql prepared sql(nullable)
+	 ********************************************
+	 */
+	LoggerHelper(LoggerHelper parent, String sql) {
+		url = parent.url;
+		logger = parent.logger;
+		connectionId = parent.connectionId;
+		connectionKey = parent.connectionKey;
+		_parent = parent;
+		if (sql != null) _execSql = sql;
+	}
+
+	/**
+	 ********************************************
+	 * 実行状態の複製を生成する(スナップショット用).
+	 *
+	 * @param src copy source
+	 ********************************************
+	 */
+	private LoggerHelper(LoggerHelper src) {
+		url = src.url;
+		logger = src.logger;
+		connectionId = src.connectionId;
+		connectionKey = src.connectionKey;
+		_parent = null;
+		_queryId = src._queryId;
+		_startTime = src._startTime;
+		_startNanos = src._startNanos;
+		_execSql = src._execSql;
+		_params = src._params.copy();
+		_batchList = src._batchList != null ? new ArrayList<Object>(src._batchList) : null;
+		// 複製元のパラメータ領域は再利用させない
+		src._batchShared = src._batchList != null;
+		isExecuteBatch = src.isExecuteBatch;
+		_execNanos = src._execNanos;
+		_fetchRows = src._fetchRows;
+		_fetchNanos = src._fetchNanos;
 	}
 
 	/**
@@ -81,6 +190,16 @@ public abstract class LoggerHelper {
 		return url;
 	}
 
+	/**
+	 ********************************************
+	 * get bound logger.
+	 * @return logger
+	 ********************************************
+	 */
+	JdbcLogger getLogger() {
+		return logger;
+	}
+
 	/**
 	 *
 	 * @return
@@ -89,6 +208,15 @@ public abstract class LoggerHelper {
 		return connectionId;
 	}
 
+	/**
+	 * get unique connection key.
+	 *
+	 * @return connection key(unique per connection in this process)
+	 */
+	public long getConnectionKey() {
+		return connectionKey;
+	}
+
 	/**
 	 ********************************************
 	 * get connection logging status
@@ -100,6 +228,28 @@ public abstract class LoggerHelper {
 		return logger.isConnectionLogging();
 	}
 
+	/**
+	 ********************************************
+	 * get proxy type.
+	 *
+	 * @return if use static delegates true, other false(reflection proxy)
+	 ********************************************
+	 */
+	boolean isStaticProxy() {
+		return logger.isStaticProxy();
+	}
+
+	/**
+	 ********************************************
+	 * get fetch logging status.
+	 *
+	 * @return if fetch logging enabled true, other false
+	 ********************************************
+	 */
+	boolean isFetchLogging() {
+		return logger.isFetchLogging();
+	}
+
 	/**
 	 ********************************************
 	 * クエリの開始時に呼び出すメソッド.
@@ -122,8 +272,11 @@ public abstract class LoggerHelper {
 	 ********************************************
 	 */
 	void startExecute() {
-		_queryId = UUID.randomUUID().toString();
+		// 前回の実行のフェッチが未完了の場合は先に出力する
+		flushFetch();
+		_queryId = QueryIdGenerator.next(logger.isUuidQueryId());
 		_startTime = System.currentTimeMillis();
+		_startNanos = System.nanoTime();
 		logger.addExecStatement(this);
 	}
 
@@ -147,27 +300,76 @@ public abstract class LoggerHelper {
 	 */
 	void addBatchList(Object... args) {
 		// SQL文字列を追加する
-		if (_batchList == null) _batchList = new ArrayList<String>();
+		if (_batchList == null) _batchList = new ArrayList<Object>();
 		if (args == null || args.length == 0) {
-			// パラメータ埋め込み後のSQL文字列を追加する
-			_batchList.add(dumpSql());
+			if (logger.isJdbcLoggingEnabled()) {
+				// パラメータの埋め込みは出力時まで遅延させる
+				ParameterBuffer buf = null;
+				if (_batchPool != null && !_batchPool.isEmpty()) {
+					buf = _batchPool.remove(_batchPool.size() - 1);
+				}
+				_batchList.add(new BatchEntry(_execSql, _params.copyTo(buf)));
+			} else {
+				// ログ出力が無効の場合はパラメータを保持しない(件数と集計用のSQLのみ)
+				_batchList.add(_execSql);
+			}
 		} else {
 			_batchList.add((String)args[0]);
 		}
 	}
 
+	/**
+	 ********************************************
+	 * 蓄積したSQLをクリアする.
+	 *
+	 * スナップショットと共有していない場合は、パラメータの領域を
+	 * 次のaddBatchで再利用する
+	 ********************************************
+	 */
 	void clearBatchList() {
+		if (_batchList != null && !_batchShared) {
+			if (_batchPool == null) _batchPool = new ArrayList<ParameterBuffer>();
+			for (Object entry : _batchList) {
+				if (_batchPool.size() >= MAX_BATCH_POOL) break;
+				if (entry instanceof BatchEntry) {
+					ParameterBuffer buf = ((BatchEntry) entry).params;
+					buf.clear();
+					_batchPool.add(buf);
+				}
+			}
+		}
 		_batchList = null;
+		_batchShared = false;
 	}
 
 	void clearParameterList() {
-		_paramList.clear();
+		flushFetch();
+		_params.clear();
 	}
 
 	void reportReturned() {
 		logger.reportReturned(this);
 	}
 
+	/**
+	 ********************************************
+	 * 実行結果に応じて正常終了を報告する.
+	 *
+	 * ResultSetを返す場合(fetchLogging有効時のみ)はログ出力の判定を
+	 * フェッチの完了まで保留し、実行とフェッチの合計時間で判定する
+	 *
+	 * @param ret execute result
+	 ********************************************
+	 */
+	void reportReturned(Object ret) {
+		if ((ret instanceof ResultSet || Boolean.TRUE.equals(ret)) && logger.isFetchLogging()) {
+			_fetchPending = true;
+			_execNanos = getElapsedNanos();
+			if (_parent != null) _parent.addPendingStatement(this);
+		}
+		logger.reportReturned(this);
+	}
+
 	/**
 	 ********************************************
 	 * executeBatch対応
@@ -183,6 +385,89 @@ public abstract class LoggerHelper {
 		}
 	}
 
+	/**
+	 ********************************************
+	 * ResultSetのフェッチ結果を報告する.
+	 *
+	 * 保留中の実行と一致しない場合(再実行済みなど)は何もしない
+	 *
+	 * @param queryId target query id
+	 * @param rows fetched rows
+	 * @param elapsedNanos time from execute to last next()(ns)
+	 ********************************************
+	 */
+	void reportFetched(String queryId, long rows, long elapsedNanos) {
+		if (!_fetchPending || !queryId.equals(_queryId)) return;
+
+		_fetchPending = false;
+		if (_parent != null) _parent.removePendingStatement(this);
+		_fetchRows = rows;
+		_fetchNanos = elapsedNanos;
+		try {
+			logger.reportFetched(this);
+		} finally {
+			_fetchRows = -1L;
+		}
+	}
+
+	/**
+	 ********************************************
+	 * 保留中の実行をフェッチ結果なしで報告する.
+	 *
+	 * 再実行時(SQLやパラメータの変更時)、Statementやコネクションのclose時に呼び出す
+	 ********************************************
+	 */
+	void flushFetch() {
+		if (_fetchPending) {
+			_fetchPending = false;
+			if (_parent != null) _parent.removePendingStatement(this);
+			logger.reportFetched(this);
+		}
+	}
+
+	private synchronized void addPendingStatement(LoggerHelper stmt) {
+		if (_pendingStatements == null) {
+			_pendingStatements = Collections.newSetFromMap(new WeakHashMap<LoggerHelper, Boolean>());
+		}
+		_pendingStatements.add(stmt);
+	}
+
+	private synchronized void removePendingStatement(LoggerHelper stmt) {
+		if (_pendingStatements != null) _pendingStatements.remove(stmt);
+	}
+
+	/**
+	 ********************************************
+	 * フェッチの完了を待っているStatementの実行を報告する.
+	 *
+	 * コネクションのclose時に呼び出す(暗黙的にcloseされるStatement用)
+	 ********************************************
+	 */
+	void flushPendingStatements() {
+		List<LoggerHelper> list;
+		synchronized (this) {
+			if (_pendingStatements == null || _pendingStatements.isEmpty()) return;
+			list = new ArrayList<LoggerHelper>(_pendingStatements);
+			_pendingStatements.clear();
+		}
+		for (LoggerHelper stmt : list) {
+			stmt.flushFetch();
+		}
+	}
+
+	/**
+	 ********************************************
+	 * トランザクションの制御を報告する.
+	 *
+	 * @param event transaction event(JdbcLogger.TX_xxx)
+	 * @param elapsedNanos exec time(ns)
+	 * @param t exception(nullable)
+	 ********************************************
+	 */
+	void reportTransaction(int event, long elapsedNanos, Throwable t) {
+		logger.reportTransaction(this, event, elapsedNanos, t);
+	}
+
 	/**
 	 ********************************************
 	 * logging exception.
@@ -200,6 +485,8 @@ public abstract class LoggerHelper {
 	 ********************************************
 	 */
 	String setSql(String sql) {
+		// 保留中の実行は変更前のSQLで出力する
+		flushFetch();
 		_execSql = sql;
 		return _execSql;
 	}
@@ -216,6 +503,25 @@ public abstract class LoggerHelper {
 		return _startTime;
 	}
 
+	/**
+	 * get execute start nano time.
+	 *
+	 * for elapsed time measurement only (System.nanoTime()).
+	 *
+	 * @return start nano time
+	 */
+	public long getStartNanos() {
+		return _startNanos;
+	}
+
+	/**
+	 * get elapsed time from execute start.
+	 * @return elapsed nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return System.nanoTime() - _startNanos;
+	}
+
 	/**
 	 * get execute sql.
 	 *
@@ -224,44 +530,113 @@ public abstract class LoggerHelper {
 	 * @return sql
 	 */
 	public String dumpSql() {
+		return dumpSql(_execSql, _params);
+	}
+
+	/**
+	 * embed parameters to sql.
+	 *
+	 * @param execSql parameterized sql
+	 * @param params parameters
+	 * @return sql
+	 */
+	private String dumpSql(String execSql, ParameterBuffer params) {
 		try {
+			SqlTemplate template = logger.getSqlTemplate(execSql);
+			int cnt = Math.min(template.getParameterCount(), params.size());
+			if (cnt == 0) {
+				return template.getSql().trim();
+			}
+
 			RdbmsSpecifics spec = logger.getSpecifics();
-			StringBuffer sqlbuf = new StringBuffer();
-			Matcher m = PARAM_REGEX.matcher(_execSql);
-			int paramIdx = 0;
-			while (m.find()) {
-				try {
-					ParameterInfo pi = _paramList.get(paramIdx++);
-					String param = "NULL";
-					if (pi != null) {
-						if (pi.getName() != null) {
-							param = pi.getName() + "=" + spec.formatParameterObject(pi.getValue());
-						} else {
-							param = spec.formatParameterObject(pi.getValue());
-						}
+			String sql = template.getSql();
+			StringBuilder sqlbuf = new StringBuilder(sql.length() + cnt * 16);
+			for (int i = 0; i < cnt; i++) {
+				sqlbuf.append(template.getSegment(i));
+				if (!params.isSet(i)) {
+					sqlbuf.append("NULL");
+				} else {
+					String name = params.getName(i);
+					if (name != null) {
+						sqlbuf.append(name).append('=');
 					}
-					m.appendReplacement(sqlbuf, param);
-				} catch (IndexOutOfBoundsException ioobe) {
-					break;
+					sqlbuf.append(spec.formatParameterObject(params.getValue(i)));
 				}
 			}
-			m.appendTail(sqlbuf);
+			sqlbuf.append(template.getSegment(cnt));
+			if (cnt < template.getParameterCount()) {
+				// パラメータが不足している場合は残りをそのまま出力
+				sqlbuf.append(sql, template.getPosition(cnt), sql.length());
+			}
 			return sqlbuf.toString().trim();
 		} catch (Exception e) {
 			return "SQL Log generate failed.(" + e.getMessage() + ")";
 		}
 	}
 
+	/**
+	 * get bound parameters.
+	 *
+	 * SQLへの埋め込みと同じ形式で返す(未設定はNULL、名前付きは"name=value")
+	 *
+	 * @return parameter list
+	 */
+	public List<String> getParameters() {
+		RdbmsSpecifics spec = logger.getSpecifics();
+		List<String> list = new ArrayList<String>(_params.size());
+		for (int i = 0; i < _params.size(); i++) {
+			if (!_params.isSet(i)) {
+				list.add("NULL");
+			} else {
+				String name = _params.getName(i);
+				String value = spec.formatParameterObject(_params.getValue(i));
+				list.add(name != null ? name + "=" + value : value);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 ********************************************
+	 * 実行SQLとバインドパラメータのハッシュ値を取得する.
+	 *
+	 * 同じSQLの実行で値が異なるかの判定に利用する
+	 *
+	 * @return hash value
+	 ********************************************
+	 */
+	public int getBindHash() {
+		return 31 * (_execSql != null ? _execSql.hashCode() : 0) + _params.hash();
+	}
+
+	/*
+	 * パラメータの変更時は、保留中の実行を変更前のパラメータで出力する
+	 */
 	void addParameter(int index, int type, Object value) {
-		// 必要に応じて領域を確保
-		while (index > _paramList.size()) _paramList.add(null);
-		_paramList.set(index - 1, ParameterInfo.create(type, value));
+		flushFetch();
+		_params.setObject(index, type, value);
+	}
+
+	void addParameter(int index, int type, long value) {
+		flushFetch();
+		_params.setLong(index, type, value);
+	}
+
+	void addParameter(int index, int type, double value) {
+		flushFetch();
+		_params.setDouble(index, type, value);
+	}
+
+	void addParameter(int index, int type, boolean value) {
+		flushFetch();
+		_params.setBoolean(index, type, value);
 	}
 
 	void addParameter(String name, int type, Object value) {
 		// TODO:2回同じパラメータを指定された場合は未考慮
 		// TODO:indexとnameが混在して指定された場合も未考慮
-		_paramList.add(ParameterInfo.create(type, name, value));
+		flushFetch();
+		_params.addNamed(name, type, value);
 	}
 
 	/**
@@ -277,45 +652,150 @@ public abstract class LoggerHelper {
 	 * get batch sql list.
 	 *
 	 * if parameterized sql, embed parameters.
+	 * パラメータの埋め込みは呼び出し毎に行うため、呼び出し側で結果を保持すること
 	 *
 	 * @return batch sql list
 	 */
 	public List<String> getBatchList() {
-		return _batchList;
+		if (_batchList == null) return null;
+
+		List<String> list = new ArrayList<String>(_batchList.size());
+		for (Object entry : _batchList) {
+			if (entry instanceof BatchEntry) {
+				BatchEntry be = (BatchEntry) entry;
+				list.add(dumpSql(be.sql, be.params));
+			} else {
+				list.add((String) entry);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * get parameterized sql (without embedding parameters).
+	 *
+	 * 集計用。バッチ実行時は最初に登録されたSQLを返す
+	 *
+	 * @return sql
+	 */
+	public String getTemplateSql() {
+		if (isExecuteBatch && _batchList != null && !_batchList.isEmpty()) {
+			return getTemplateSql(0);
+		}
+		return _execSql;
+	}
+
+	/**
+	 * get parameterized sql of batch entry (without embedding parameters).
+	 *
+	 * @param index batch index(0 origin)
+	 * @return sql, or null if not exists
+	 */
+	public String getTemplateSql(int index) {
+		if (_batchList == null || index < 0 || index >= _batchList.size()) return null;
+		Object entry = _batchList.get(index);
+		return entry instanceof BatchEntry ? ((BatchEntry) entry).sql : (String) entry;
 	}
 
 	public boolean isExecuteBatch() {
 		return isExecuteBatch;
 	}
 
+	/**
+	 * ログ出力の判定をフェッチの完了まで保留しているか.
+	 *
+	 * @return if pending true
+	 */
+	public boolean isFetchPending() {
+		return _fetchPending;
+	}
+
+	/**
+	 * get execute time of pending execution.
+	 *
+	 * @return elapsed nanoseconds (until execute returned)
+	 */
+	public long getExecNanos() {
+		return _execNanos;
+	}
+
+	/**
+	 * get fetched rows.
+	 *
+	 * @return rows, or -1 if not measured
+	 */
+	public long getFetchRows() {
+		return _fetchRows;
+	}
+
+	/**
+	 * get time from execute start to last next().
+	 *
+	 * @return elapsed nanoseconds
+	 */
+	public long getFetchNanos() {
+		return _fetchNanos;
+	}
+
+	/**
+	 * get immutable copy of current execution.
+	 *
+	 * 非同期ロギング用。SQLやパラメータは呼び出し時点の内容で固定され、
+	 * 以降のStatementの再利用による影響を受けない
+	 *
+	 * @param elapsedNanos fixed elapsed time(ns)
+	 * @return snapshot
+	 */
+	public LoggerHelper snapshot(long elapsedNanos) {
+		return new Snapshot(this, elapsedNanos);
+	}
+
 	/**
 	 ********************************************
-	 * パラメータを保持するクラス
+	 * ロギング対象の処理を実行するためのインターフェース.
+	 *
+	 * 静的ラッパーから実際のJDBCオブジェクトを呼び出す際に利用する
+	 *
+	 * @param <T> return type
 	 ********************************************
 	 */
-	static class ParameterInfo {
-		private int type;
-		private String name;
-		private Object value;
+	interface Execution<T> {
+		T execute() throws SQLException;
+	}
 
-		private ParameterInfo(int type, String name, Object value) {
-			this.type = type;
-			this.name = name;
-			this.value = value;
-		}
+	/**
+	 ********************************************
+	 * 実行状態のスナップショット.
+	 *
+	 * 経過時間は生成時に固定する
+	 ********************************************
+	 */
+	private static final class Snapshot extends LoggerHelper {
+		private final long elapsedNanos;
 
-		public static ParameterInfo create(int type, Object value) {
-			return new ParameterInfo(type, null, value);
+		private Snapshot(LoggerHelper src, long elapsedNanos) {
+			super(src);
+			this.elapsedNanos = elapsedNanos;
 		}
 
-		public static ParameterInfo create(int type, String name, Object value) {
-			return new ParameterInfo(type, name, value);
+		@Override
+		public long getElapsedNanos() {
+			return elapsedNanos;
 		}
+	}
 
-		public String getName() { return name; }
-
-		public int getType() { return type; }
+	/**
+	 ********************************************
+	 * addBatch時のSQLとパラメータを保持するクラス
+	 ********************************************
+	 */
+	private static class BatchEntry {
+		private final String sql;
+		private final ParameterBuffer params;
 
-		public Object getValue() { return value; }
+		private BatchEntry(String sql, ParameterBuffer params) {
+			this.sql = sql;
+			this.params = params;
+		}
 	}
 }
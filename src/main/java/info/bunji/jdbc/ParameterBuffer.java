@@ -0,0 +1,329 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc;
+
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ **********************************************************
+ * バインドパラメータを保持するバッファ.
+ * <pre>
+ * Statement毎に1つ保持し、実行やclearParameters後も領域を再利用する。
+ * 数値・真偽値はプリミティブのまま保持し、ボクシングはログの出力時
+ * ({@link #getValue(int)}の呼び出し時)まで遅延させる。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class ParameterBuffer {
+
+	/** 値の保持形式:未設定 */
+	private static final byte KIND_EMPTY = 0;
+
+	/** 値の保持形式:オブジェクト */
+	private static final byte KIND_OBJECT = 1;
+
+	/** 値の保持形式:整数(byte/short/int/long) */
+	private static final byte KIND_LONG = 2;
+
+	/** 値の保持形式:浮動小数点(float/double) */
+	private static final byte KIND_DOUBLE = 3;
+
+	/** 値の保持形式:真偽値 */
+	private static final byte KIND_BOOLEAN = 4;
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private byte[] kinds;
+	private int[] types;
+	private long[] longs;
+	private double[] doubles;
+	private Object[] objects;
+	private String[] names;
+
+	/** 設定済みのパラメータ数(最大のindex) */
+	private int size = 0;
+
+	ParameterBuffer() {
+		this(INITIAL_CAPACITY);
+	}
+
+	private ParameterBuffer(int capacity) {
+		kinds = new byte[capacity];
+		types = new int[capacity];
+		longs = new long[capacity];
+		doubles = new double[capacity];
+		objects = new Object[capacity];
+		names = null;
+	}
+
+	/**
+	 ********************************************
+	 * 整数値を設定する.
+	 *
+	 * @param index parameter index(1 origin)
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void setLong(int index, int type, long value) {
+		int i = slot(index);
+		kinds[i] = KIND_LONG;
+		types[i] = type;
+		longs[i] = value;
+		objects[i] = null;
+	}
+
+	/**
+	 ********************************************
+	 * 浮動小数点値を設定する.
+	 *
+	 * @param index parameter index(1 origin)
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void setDouble(int index, int type, double value) {
+		int i = slot(index);
+		kinds[i] = KIND_DOUBLE;
+		types[i] = type;
+		doubles[i] = value;
+		objects[i] = null;
+	}
+
+	/**
+	 ********************************************
+	 * 真偽値を設定する.
+	 *
+	 * @param index parameter index(1 origin)
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void setBoolean(int index, int type, boolean value) {
+		int i = slot(index);
+		kinds[i] = KIND_BOOLEAN;
+		types[i] = type;
+		longs[i] = value ? 1L : 0L;
+		objects[i] = null;
+	}
+
+	/**
+	 ********************************************
+	 * オブジェクトを設定する.
+	 *
+	 * @param index parameter index(1 origin)
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void setObject(int index, int type, Object value) {
+		int i = slot(index);
+		kinds[i] = KIND_OBJECT;
+		types[i] = type;
+		objects[i] = value;
+	}
+
+	/**
+	 ********************************************
+	 * 名前付きのパラメータを末尾に追加する.
+	 *
+	 * @param name parameter name
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void addNamed(String name, int type, Object value) {
+		int i = slot(size + 1);
+		kinds[i] = KIND_OBJECT;
+		types[i] = type;
+		objects[i] = value;
+		if (names == null) names = new String[kinds.length];
+		names[i] = name;
+	}
+
+	/**
+	 ********************************************
+	 * 設定内容をクリアする(領域は再利用する).
+	 ********************************************
+	 */
+	void clear() {
+		Arrays.fill(kinds, 0, size, KIND_EMPTY);
+		Arrays.fill(objects, 0, size, null);
+		if (names != null) Arrays.fill(names, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 ********************************************
+	 * 現在の設定内容の複製を生成する.
+	 *
+	 * addBatchや非同期ロギング用
+	 *
+	 * @return copy
+	 ********************************************
+	 */
+	ParameterBuffer copy() {
+		return copyTo(null);
+	}
+
+	/**
+	 ********************************************
+	 * 現在の設定内容を指定したバッファに複製する.
+	 *
+	 * 複製先の領域が不足する場合(またはnullの場合)は新たに生成する
+	 *
+	 * @param buf reusable buffer(nullable)
+	 * @return copy
+	 ********************************************
+	 */
+	ParameterBuffer copyTo(ParameterBuffer buf) {
+		if (buf == null || buf.kinds.length < size) {
+			buf = new ParameterBuffer(Math.max(size, 1));
+		} else {
+			buf.clear();
+		}
+		System.arraycopy(kinds, 0, buf.kinds, 0, size);
+		System.arraycopy(types, 0, buf.types, 0, size);
+		System.arraycopy(longs, 0, buf.longs, 0, size);
+		System.arraycopy(doubles, 0, buf.doubles, 0, size);
+		System.arraycopy(objects, 0, buf.objects, 0, size);
+		if (names != null) {
+			if (buf.names == null) buf.names = new String[buf.kinds.length];
+			System.arraycopy(names, 0, buf.names, 0, size);
+		}
+		buf.size = size;
+		return buf;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 ********************************************
+	 * 設定内容のハッシュ値を取得する.
+	 *
+	 * 値の比較用(ボクシングは行わない)
+	 *
+	 * @return hash value
+	 ********************************************
+	 */
+	int hash() {
+		int h = 1;
+		for (int i = 0; i < size; i++) {
+			switch (kinds[i]) {
+			case KIND_LONG:
+			case KIND_BOOLEAN:
+				h = 31 * h + Long.hashCode(longs[i]);
+				break;
+			case KIND_DOUBLE:
+				h = 31 * h + Double.hashCode(doubles[i]);
+				break;
+			case KIND_OBJECT:
+				h = 31 * h + (objects[i] != null ? objects[i].hashCode() : 0);
+				break;
+			default:
+				h = 31 * h;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 ********************************************
+	 * 値が設定されているかを判定する.
+	 *
+	 * @param i parameter position(0 origin)
+	 * @return if set true
+	 ********************************************
+	 */
+	boolean isSet(int i) {
+		return kinds[i] != KIND_EMPTY;
+	}
+
+	/**
+	 ********************************************
+	 * パラメータ名を取得する.
+	 *
+	 * @param i parameter position(0 origin)
+	 * @return parameter name(null if not named)
+	 ********************************************
+	 */
+	String getName(int i) {
+		return names != null ? names[i] : null;
+	}
+
+	int getType(int i) {
+		return types[i];
+	}
+
+	/**
+	 ********************************************
+	 * 値を取得する.
+	 *
+	 * プリミティブ値は設定時の型でボクシングして返す
+	 *
+	 * @param i parameter position(0 origin)
+	 * @return parameter value
+	 ********************************************
+	 */
+	Object getValue(int i) {
+		switch (kinds[i]) {
+		case KIND_LONG:
+			switch (types[i]) {
+			case Types.TINYINT:  return (byte) longs[i];
+			case Types.SMALLINT: return (short) longs[i];
+			case Types.INTEGER:  return (int) longs[i];
+			default:             return longs[i];
+			}
+		case KIND_DOUBLE:
+			return types[i] == Types.FLOAT ? (Object) (float) doubles[i] : (Object) doubles[i];
+		case KIND_BOOLEAN:
+			return longs[i] != 0L;
+		case KIND_OBJECT:
+			return objects[i];
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 ********************************************
+	 * 指定位置の領域を確保する.
+	 *
+	 * @param index parameter index(1 origin)
+	 * @return array position
+	 ********************************************
+	 */
+	private int slot(int index) {
+		if (index < 1) {
+			throw new IndexOutOfBoundsException("parameter index:" + index);
+		}
+		if (index > kinds.length) {
+			int capacity = Math.max(kinds.length * 2, index);
+			kinds = Arrays.copyOf(kinds, capacity);
+			types = Arrays.copyOf(types, capacity);
+			longs = Arrays.copyOf(longs, capacity);
+			doubles = Arrays.copyOf(doubles, capacity);
+			objects = Arrays.copyOf(objects, capacity);
+			if (names != null) names = Arrays.copyOf(names, capacity);
+		}
+		if (index > size) size = index;
+		return index - 1;
+	}
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Types;
+import java.util.Calendar;
+
+/**
+ **********************************************************
+ * implements PreparedStatement static delegate.
+ *
+ * @author f.kinoshita
+ **********************************************************
+ */
+class PreparedStatementWrapper extends StatementWrapper implements PreparedStatement {
+
+	/** real PreparedStatement */
+	private final PreparedStatement pstmt;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param pstmt real statement
+	 * @param handler logging handler
+	 **********************************************
+	 */
+	PreparedStatementWrapper(PreparedStatement pstmt, StatementProxy handler) {
+		super(pstmt, handler);
+		this.pstmt = pstmt;
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		return handler.wrapResultSet(this, handler.execute(handler.getSql(), false, () -> pstmt.executeQuery()));
+	}
+
+	@Override
+	public int executeUpdate() throws SQLException {
+		return handler.execute(handler.getSql(), false, () -> pstmt.executeUpdate());
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		pstmt.setNull(parameterIndex, sqlType);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		pstmt.setBoolean(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.BOOLEAN, x);
+	}
+
+	@Override
+	public void setByte(int parameterIndex, byte x) throws SQLException {
+		pstmt.setByte(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.TINYINT, x);
+	}
+
+	@Override
+	public void setShort(int parameterIndex, short x) throws SQLException {
+		pstmt.setShort(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.SMALLINT, x);
+	}
+
+	@Override
+	public void setInt(int parameterIndex, int x) throws SQLException {
+		pstmt.setInt(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.INTEGER, x);
+	}
+
+	@Override
+	public void setLong(int parameterIndex, long x) throws SQLException {
+		pstmt.setLong(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.BIGINT, x);
+	}
+
+	@Override
+	public void setFloat(int parameterIndex, float x) throws SQLException {
+		pstmt.setFloat(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.FLOAT, x);
+	}
+
+	@Override
+	public void setDouble(int parameterIndex, double x) throws SQLException {
+		pstmt.setDouble(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.DOUBLE, x);
+	}
+
+	@Override
+	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+		pstmt.setBigDecimal(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.NUMERIC, x);
+	}
+
+	@Override
+	public void setString(int parameterIndex, String x) throws SQLException {
+		pstmt.setString(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.CHAR, x);
+	}
+
+	@Override
+	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		pstmt.setBytes(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.BINARY, x);
+	}
+
+	@Override
+	public void setDate(int parameterIndex, java.sql.Date x) throws SQLException {
+		pstmt.setDate(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.DATE, x);
+	}
+
+	@Override
+	public void setTime(int parameterIndex, java.sql.Time x) throws SQLException {
+		pstmt.setTime(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.TIME, x);
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, java.sql.Timestamp x) throws SQLException {
+		pstmt.setTimestamp(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.TIMESTAMP, x);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		pstmt.setAsciiStream(parameterIndex, x, length);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Deprecated
+	@Override
+	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		pstmt.setUnicodeStream(parameterIndex, x, length);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		pstmt.setBinaryStream(parameterIndex, x, length);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void clearParameters() throws SQLException {
+		pstmt.clearParameters();
+		handler.clearParameterList();
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+		pstmt.setObject(parameterIndex, x, targetSqlType);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x) throws SQLException {
+		pstmt.setObject(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public boolean execute() throws SQLException {
+		return handler.execute(handler.getSql(), false, () -> pstmt.execute());
+	}
+
+	@Override
+	public void addBatch() throws SQLException {
+		pstmt.addBatch();
+		handler.addBatchList();
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+		pstmt.setCharacterStream(parameterIndex, reader, length);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, reader);
+	}
+
+	@Override
+	public void setRef(int parameterIndex, Ref x) throws SQLException {
+		pstmt.setRef(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.REF, x);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, Blob x) throws SQLException {
+		pstmt.setBlob(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.BLOB, x);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Clob x) throws SQLException {
+		pstmt.setClob(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.CLOB, x);
+	}
+
+	@Override
+	public void setArray(int parameterIndex, Array x) throws SQLException {
+		pstmt.setArray(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.ARRAY, x);
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return pstmt.getMetaData();
+	}
+
+	@Override
+	public void setDate(int parameterIndex, java.sql.Date x, Calendar cal) throws SQLException {
+		pstmt.setDate(parameterIndex, x, cal);
+		handler.bindParameter(parameterIndex, Types.DATE, x);
+	}
+
+	@Override
+	public void setTime(int parameterIndex, java.sql.Time x, Calendar cal) throws SQLException {
+		pstmt.setTime(parameterIndex, x, cal);
+		handler.bindParameter(parameterIndex, Types.TIME, x);
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, java.sql.Timestamp x, Calendar cal) throws SQLException {
+		pstmt.setTimestamp(parameterIndex, x, cal);
+		handler.bindParameter(parameterIndex, Types.TIMESTAMP, x);
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		pstmt.setNull(parameterIndex, sqlType, typeName);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setURL(int parameterIndex, URL x) throws SQLException {
+		pstmt.setURL(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public ParameterMetaData getParameterMetaData() throws SQLException {
+		return pstmt.getParameterMetaData();
+	}
+
+	@Override
+	public void setRowId(int parameterIndex, RowId x) throws SQLException {
+		pstmt.setRowId(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.ROWID, x);
+	}
+
+	@Override
+	public void setNString(int parameterIndex, String value) throws SQLException {
+		pstmt.setNString(parameterIndex, value);
+		handler.bindParameter(parameterIndex, Types.NCHAR, value);
+	}
+
+	@Override
+	public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+		pstmt.setNCharacterStream(parameterIndex, value, length);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, NClob value) throws SQLException {
+		pstmt.setNClob(parameterIndex, value);
+		handler.bindParameter(parameterIndex, Types.NCLOB, value);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		pstmt.setClob(parameterIndex, reader, length);
+		handler.bindParameter(parameterIndex, Types.CLOB, reader);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+		pstmt.setBlob(parameterIndex, inputStream, length);
+		handler.bindParameter(parameterIndex, Types.BLOB, inputStream);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		pstmt.setNClob(parameterIndex, reader, length);
+		handler.bindParameter(parameterIndex, Types.NCLOB, reader);
+	}
+
+	@Override
+	public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+		pstmt.setSQLXML(parameterIndex, xmlObject);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+		pstmt.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		pstmt.setAsciiStream(parameterIndex, x, length);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		pstmt.setBinaryStream(parameterIndex, x, length);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+		pstmt.setCharacterStream(parameterIndex, reader, length);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, reader);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+		pstmt.setAsciiStream(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+		pstmt.setBinaryStream(parameterIndex, x);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+		pstmt.setCharacterStream(parameterIndex, reader);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, reader);
+	}
+
+	@Override
+	public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+		pstmt.setNCharacterStream(parameterIndex, value);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, StatementProxy.NULL_VALUE);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Reader reader) throws SQLException {
+		pstmt.setClob(parameterIndex, reader);
+		handler.bindParameter(parameterIndex, Types.CLOB, reader);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+		pstmt.setBlob(parameterIndex, inputStream);
+		handler.bindParameter(parameterIndex, Types.BLOB, inputStream);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+		pstmt.setNClob(parameterIndex, reader);
+		handler.bindParameter(parameterIndex, Types.NCLOB, reader);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+		pstmt.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
+		pstmt.setObject(parameterIndex, x, targetSqlType);
+		handler.bindParameter(parameterIndex, Types.JAVA_OBJECT, x);
+	}
+
+	@Override
+	public long executeLargeUpdate() throws SQLException {
+		return handler.execute(handler.getSql(), false, () -> pstmt.executeLargeUpdate());
+	}
+}
@@ -24,6 +24,12 @@ import java.sql.PreparedStatement;
 import java.sql.Statement;
 
 /**
+ * JDBCオブジェクトのラッパーを生成する.
+ * <pre>
+ * proxyType設定により、以下のいずれかでラップする
+ *  reflect : java.lang.reflect.Proxy による動的プロキシ(デフォルト)
+ *  static  : ロギング対象外のメソッドを直接委譲する静的ラッパー
+ * </pre>
  * @author f.kinoshita
  */
 class ProxyFactory {
@@ -51,27 +57,56 @@ class ProxyFactory {
 
 	/**
 	 ********************************************
+	 * wrap connection obtained from statement.
 	 *
 	 * @param conn real connection
-	 * @param url jdbc url
+	 * @param parent statement(url, connection id and logger are inherited)
 	 * @return wrapperd connection
 	 ********************************************
 	 */
-	static Connection wrapConnection(Connection conn, String url, String connectionId) {
+	static Connection wrapConnection(Connection conn, LoggerHelper parent) {
 		if (conn == null) return null;
-		return factory.newProxyInstance(Connection.class, new ConnectionProxy(conn,  url, connectionId));
+		return wrapConnection(conn, new ConnectionProxy(conn, parent.getUrl(), parent.getConnectionId(), parent.getLogger()));
 	}
 
-	static Statement wrapStatement(Statement conn, String url, String connectionId) {
-		return factory.newProxyInstance(Statement.class, new StatementProxy(conn,  url, connectionId));
+	/**
+	 ********************************************
+	 * wrap connection with proxyType setting.
+	 *
+	 * @param conn real connection
+	 * @param handler connection handler
+	 * @return wrapperd connection
+	 ********************************************
+	 */
+	static Connection wrapConnection(Connection conn, ConnectionProxy handler) {
+		if (handler.isStaticProxy()) {
+			return new ConnectionWrapper(conn, handler);
+		}
+		return factory.newProxyInstance(Connection.class, handler);
+	}
+
+	static Statement wrapStatement(Statement stmt, LoggerHelper parent) {
+		StatementProxy handler = new StatementProxy(stmt, null, parent);
+		if (handler.isStaticProxy()) {
+			return new StatementWrapper(stmt, handler);
+		}
+		return factory.newProxyInstance(Statement.class, handler);
 	}
 
-	static PreparedStatement wrapPreparedStatement(PreparedStatement conn, String url, String sql, String connectionId) {
-		return factory.newProxyInstance(PreparedStatement.class, new StatementProxy(conn,  url, sql, connectionId));
+	static PreparedStatement wrapPreparedStatement(PreparedStatement stmt, String sql, LoggerHelper parent) {
+		StatementProxy handler = new StatementProxy(stmt, sql, parent);
+		if (handler.isStaticProxy()) {
+			return new PreparedStatementWrapper(stmt, handler);
+		}
+		return factory.newProxyInstance(PreparedStatement.class, handler);
 	}
 
-	static CallableStatement wrapCallableStatement(CallableStatement conn, String url, String sql, String connectionId) {
-		return factory.newProxyInstance(CallableStatement.class, new StatementProxy(conn,  url, sql, connectionId));
+	static CallableStatement wrapCallableStatement(CallableStatement stmt, String sql, LoggerHelper parent) {
+		StatementProxy handler = new StatementProxy(stmt, sql, parent);
+		if (handler.isStaticProxy()) {
+			return new CallableStatementWrapper(stmt, handler);
+		}
+		return factory.newProxyInstance(CallableStatement.class, handler);
 	}
 
 	/**
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ **********************************************************
+ * クエリIDの生成.
+ * <pre>
+ * デフォルトは「マシンID + プロセスID + "-" + 通番(16進)」形式のIDを生成する。
+ * 通番はAtomicLongによるロックなしの採番のため、UUIDと比べて生成コストが低い。
+ * マシンIDを含めることで、複数サーバの情報をマージした場合も一意となる。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class QueryIdGenerator {
+
+	/** IDの接頭辞(マシンID + プロセスID) */
+	private static final String PREFIX = DriverEx.MACHINE_ID + DriverEx.BASE_CONN_ID + "-";
+
+	/** 通番 */
+	private static final AtomicLong sequence = new AtomicLong(0);
+
+	private QueryIdGenerator() {
+		// do nothing.
+	}
+
+	/**
+	 **********************************************
+	 * 新しいクエリIDを生成する.
+	 * @param isUuid if use UUID true, other false
+	 * @return query id
+	 **********************************************
+	 */
+	static String next(boolean isUuid) {
+		if (isUuid) {
+			return UUID.randomUUID().toString();
+		}
+		return PREFIX + Long.toHexString(sequence.incrementAndGet());
+	}
+}
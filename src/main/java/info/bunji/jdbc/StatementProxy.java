@@ -27,6 +27,7 @@ import java.sql.Types;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -52,6 +53,9 @@ public class StatementProxy extends LoggerHelper implements InvocationHandler {
 			Arrays.asList("execute", "executeQuery", "executeUpdate",  "executeBatch",
 							"executeLargeUpdate", "executeLargeBatch"));
 
+	/** 型情報を持たないパラメータの出力値 */
+	static final String NULL_VALUE = "NULL";
+
 	private static final Map<String, Integer> paramTypes = new HashMap<String, Integer>() {{
 		// setArray(int parameterIndex, Array x)
 		put("setArray", Types.ARRAY);
@@ -132,6 +136,17 @@ public class StatementProxy extends LoggerHelper implements InvocationHandler {
 		put("setURL", null);
 	}};
 
+	/** 処理区分をキャッシュするメソッドの最大件数(超えた場合はキャッシュしない) */
+	private static final int MAX_METHOD_CACHE_SIZE = 4096;
+
+	/**
+	 * メソッド毎の処理区分のキャッシュ.
+	 *
+	 * Proxyから渡されるMethodはProxyクラス毎に同一のインスタンスのため、
+	 * equals()ではなく参照で比較する。登録時のみ複製して差し替える(読み込みはロックなし)
+	 */
+	private static volatile Map<Method, MethodInfo> methodCache = new IdentityHashMap<Method, MethodInfo>();
+
 	/** プロシージャのパラメータ名を保持するMap */
 	private static Map<String, Map<String,Integer>> procedureInfo = new HashMap<String, Map<String,Integer>>();
 
@@ -159,6 +174,17 @@ public class StatementProxy extends LoggerHelper implements InvocationHandler {
 		setSql(sql);
 	}
 
+	/**
+	 *
+	 * @param instance real statement
+	 * @param sql prepared sql(nullable)
+	 * @param parent connection(url, connection id/key and logger are inherited)
+	 */
+	StatementProxy(Statement instance, String sql, LoggerHelper parent) {
+		super(parent, sql);
+		_stmt = instance;
+	}
+
 	/*
 	 * (非 Javadoc)
 	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
@@ -166,8 +192,10 @@ public class StatementProxy extends LoggerHelper implements InvocationHandler {
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 		Object ret = null;
-		String name = method.getName();
-		if (loggingMethods.contains(name)) {
+		MethodInfo info = getMethodInfo(method);
+		switch (info.type) {
+		case EXECUTE:
+		case EXECUTE_BATCH:
 			String sql = getSql();
 			if (args != null && args.length > 0) {
 				sql = args[0] != null ? args[0].toString() : null;
@@ -175,10 +203,13 @@ public class StatementProxy extends LoggerHelper implements InvocationHandler {
 			try {
 				startExecute(sql);
 				ret = method.invoke(_stmt, args);
-				if(name.endsWith("Batch")) {
+				if (info.type == MethodType.EXECUTE_BATCH) {
 					reportBatchReturned();
 				} else {
-					reportReturned();
+					reportReturned(ret);
+				}
+				if (ret instanceof ResultSet) {
+					ret = wrapResultSet((Statement) proxy, (ResultSet) ret);
 				}
 			} catch(InvocationTargetException e) {
 				reportException(e.getCause(), sql);
@@ -186,58 +217,254 @@ public class StatementProxy extends LoggerHelper implements InvocationHandler {
 			} finally {
 				endExecute();
 			}
-		} else {
+			return ret;
+		default:
+			break;
+		}
+
+		try {
+			ret = method.invoke(_stmt, args);
+		} catch(InvocationTargetException e) {
+			throw e.getCause();
+		}
+
+		switch (info.type) {
+		case ADD_BATCH:
+			addBatchList(args);
+			break;
+		case CLEAR_BATCH:
+			clearBatchList();
+			break;
+		case CLEAR_PARAMETERS:
+			clearParameterList();
+			break;
+/*		case REGISTER_OUT_PARAMETER:
+			int sqlType = (Integer) args[1];
 			try {
-				ret = method.invoke(_stmt, args);
-			} catch(InvocationTargetException e) {
-				throw e.getCause();
+				if (args[0] instanceof String) {
+					//String parameterName = (String) args[0];
+					//addParameter(getParameterIndex(parameterName), sqlType, "(OUT)");
+					addParameter((String) args[0], sqlType, "(OUT)");
+				} else {
+					Integer parameterIndex = (Integer) args[0];
+					addParameter(parameterIndex, sqlType, "(OUT)");
+				}
+			} catch (Exception e) {
+				// do nothing.
 			}
+			break;
+*/
+		case GET_CONNECTION:
+			// 取得したConnectionをラップする
+			ret = wrapConnection((Connection)ret);
+			break;
+		case GET_RESULT_SET:
+			ret = wrapResultSet((Statement) proxy, (ResultSet) ret);
+			break;
+		case CLOSE:
+			flushFetch();
+			break;
+		case SET_PARAMETER:
+			bindParameter((Integer)args[0], info.sqlType, info.hasValue ? args[1] : NULL_VALUE);
+			break;
+		case SET_NAMED_PARAMETER:
+			// CallableStatment用
+			bindParameter((String)args[0], info.sqlType, info.hasValue ? args[1] : NULL_VALUE);
+			break;
+		default:
+			break;
+		}
+		return ret;
+	}
 
-			if (name.equals("addBatch")){
-				addBatchList(args);
-			} else if (name.equals("clearBatch")){
-				clearBatchList();
-			} else if (name.equals("clearParameters")){
-				clearParameterList();
-/*			} else if (name.equals("registerOutParameter")){
-				int sqlType = (Integer) args[1];
-				try {
-					if (args[0] instanceof String) {
-						//String parameterName = (String) args[0];
-						//addParameter(getParameterIndex(parameterName), sqlType, "(OUT)");
-						addParameter((String) args[0], sqlType, "(OUT)");
-					} else {
-						Integer parameterIndex = (Integer) args[0];
-						addParameter(parameterIndex, sqlType, "(OUT)");
-					}
-				} catch (Exception e) {
-					// do nothing.
-				}
-*/			} else if (name.equals("getConnection")){
-				// 取得したConnectionをラップする
-				ret = ProxyFactory.wrapConnection((Connection)ret, url, getConnectionId());
-			} else if (paramTypes.containsKey(name)) {
-				try {
-					Integer type = paramTypes.get(name);
-					Object  value = args[1];
-					if (type == null) {
-						type = Types.JAVA_OBJECT;
-						//value = "(" + name.substring(3) + ")";
-						value = "NULL";
-					}
-
-					if (method.getParameterTypes()[0].equals(String.class)) {
-						// CallableStatment用
-						addParameter(getParameterIndex((String)args[0]), type, value);
-					} else {
-						addParameter((Integer)args[0], type, value);
-					}
-				} catch (Exception e) {
-					// do nothing.
+	/**
+	 ********************************************
+	 * メソッドの処理区分を取得する.
+	 *
+	 * 区分はメソッド毎に初回のみ判定し、以降はキャッシュを利用する
+	 *
+	 * @param method invoked method
+	 * @return method info
+	 ********************************************
+	 */
+	static MethodInfo getMethodInfo(Method method) {
+		MethodInfo info = methodCache.get(method);
+		if (info == null) {
+			info = MethodInfo.resolve(method);
+			synchronized (StatementProxy.class) {
+				Map<Method, MethodInfo> cache = methodCache;
+				if (!cache.containsKey(method) && cache.size() < MAX_METHOD_CACHE_SIZE) {
+					cache = new IdentityHashMap<Method, MethodInfo>(cache);
+					cache.put(method, info);
+					methodCache = cache;
 				}
 			}
 		}
-		return ret;
+		return info;
+	}
+
+	/**
+	 ********************************************
+	 * ロギング対象のメソッドを実行する.
+	 *
+	 * 静的ラッパーから呼び出され、リフレクションを介さずに実行する
+	 *
+	 * @param sql execute sql
+	 * @param isBatch if executeBatch true, other false
+	 * @param exec real execute call
+	 * @return execute result
+	 * @throws SQLException execute failed
+	 ********************************************
+	 */
+	<T> T execute(String sql, boolean isBatch, Execution<T> exec) throws SQLException {
+		try {
+			startExecute(sql);
+			T ret = exec.execute();
+			if (isBatch) {
+				reportBatchReturned();
+			} else {
+				reportReturned(ret);
+			}
+			return ret;
+		} catch (Throwable t) {
+			reportException(t, sql);
+			throw t;
+		} finally {
+			endExecute();
+		}
+	}
+
+	/**
+	 ********************************************
+	 * バインドしたパラメータを記録する.
+	 *
+	 * @param index parameter index
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void bindParameter(int index, int type, Object value) {
+		try {
+			addParameter(index, type, value);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	/**
+	 ********************************************
+	 * バインドしたパラメータを記録する(CallableStatment用).
+	 *
+	 * @param name parameter name
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void bindParameter(String name, int type, Object value) {
+		try {
+			addParameter(getParameterIndex(name), type, value);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	/**
+	 ********************************************
+	 * バインドした整数値を記録する.
+	 *
+	 * 静的ラッパーから呼び出され、ボクシングせずに保持する
+	 *
+	 * @param index parameter index
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void bindParameter(int index, int type, long value) {
+		try {
+			addParameter(index, type, value);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	/**
+	 ********************************************
+	 * バインドした浮動小数点値を記録する.
+	 *
+	 * @param index parameter index
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void bindParameter(int index, int type, double value) {
+		try {
+			addParameter(index, type, value);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	/**
+	 ********************************************
+	 * バインドした真偽値を記録する.
+	 *
+	 * @param index parameter index
+	 * @param type sql type
+	 * @param value parameter value
+	 ********************************************
+	 */
+	void bindParameter(int index, int type, boolean value) {
+		try {
+			addParameter(index, type, value);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	void bindParameter(String name, int type, long value) {
+		try {
+			addParameter(getParameterIndex(name), type, value);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	void bindParameter(String name, int type, double value) {
+		try {
+			addParameter(getParameterIndex(name), type, value);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	void bindParameter(String name, int type, boolean value) {
+		try {
+			addParameter(getParameterIndex(name), type, value);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	/**
+	 ********************************************
+	 * ResultSetをラップする.
+	 *
+	 * fetchLogging有効時のみラップし、無効時はそのまま返す
+	 *
+	 * @param stmt wrapped statement
+	 * @param rs real resultset
+	 * @return wrapped resultset
+	 ********************************************
+	 */
+	ResultSet wrapResultSet(Statement stmt, ResultSet rs) {
+		if (rs == null || !isFetchLogging()) {
+			return rs;
+		}
+		return new ResultSetProxy(rs, stmt, this);
+	}
+
+	Connection wrapConnection(Connection conn) {
+		return ProxyFactory.wrapConnection(conn, this);
 	}
 
 	/**
@@ -294,4 +521,81 @@ public class StatementProxy extends LoggerHelper implements InvocationHandler {
 		}
 		return -1;
 	}
+
+	/**
+	 ********************************************
+	 * メソッドの処理区分.
+	 ********************************************
+	 */
+	enum MethodType {
+		EXECUTE,
+		EXECUTE_BATCH,
+		ADD_BATCH,
+		CLEAR_BATCH,
+		CLEAR_PARAMETERS,
+		GET_CONNECTION,
+		GET_RESULT_SET,
+		CLOSE,
+		SET_PARAMETER,
+		SET_NAMED_PARAMETER,
+		OTHER
+	}
+
+	/**
+	 ********************************************
+	 * メソッドの処理区分とパラメータ型を保持するクラス.
+	 ********************************************
+	 */
+	static class MethodInfo {
+		/** 処理区分 */
+		final MethodType type;
+		/** パラメータのSQL型(パラメータ設定メソッドのみ) */
+		final int sqlType;
+		/** 値をそのまま出力するか(false時はNULL_VALUEを出力) */
+		final boolean hasValue;
+
+		private MethodInfo(MethodType type, int sqlType, boolean hasValue) {
+			this.type = type;
+			this.sqlType = sqlType;
+			this.hasValue = hasValue;
+		}
+
+		private MethodInfo(MethodType type) {
+			this(type, Types.JAVA_OBJECT, false);
+		}
+
+		/**
+		 * メソッド名と引数から処理区分を判定する.
+		 *
+		 * @param method target method
+		 * @return method info
+		 */
+		static MethodInfo resolve(Method method) {
+			String name = method.getName();
+			if (loggingMethods.contains(name)) {
+				return new MethodInfo(name.endsWith("Batch") ? MethodType.EXECUTE_BATCH : MethodType.EXECUTE);
+			} else if (name.equals("addBatch")) {
+				return new MethodInfo(MethodType.ADD_BATCH);
+			} else if (name.equals("clearBatch")) {
+				return new MethodInfo(MethodType.CLEAR_BATCH);
+			} else if (name.equals("clearParameters")) {
+				return new MethodInfo(MethodType.CLEAR_PARAMETERS);
+			} else if (name.equals("getConnection")) {
+				return new MethodInfo(MethodType.GET_CONNECTION);
+			} else if (name.equals("getResultSet")) {
+				return new MethodInfo(MethodType.GET_RESULT_SET);
+			} else if (name.equals("close")) {
+				return new MethodInfo(MethodType.CLOSE);
+			} else if (paramTypes.containsKey(name) && method.getParameterTypes().length > 1) {
+				Integer type = paramTypes.get(name);
+				MethodType methodType = method.getParameterTypes()[0].equals(String.class)
+										? MethodType.SET_NAMED_PARAMETER : MethodType.SET_PARAMETER;
+				if (type == null) {
+					return new MethodInfo(methodType, Types.JAVA_OBJECT, false);
+				}
+				return new MethodInfo(methodType, type, true);
+			}
+			return new MethodInfo(MethodType.OTHER);
+		}
+	}
 }
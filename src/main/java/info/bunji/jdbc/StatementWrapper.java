@@ -0,0 +1,320 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ **********************************************************
+ * implements Statement static delegate.
+ * <pre>
+ * proxyType=static 時に利用する。
+ * ロギング対象外のメソッドはリフレクションを介さず、
+ * 実際のStatementを直接呼び出す。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+class StatementWrapper implements Statement {
+
+	/** real Statement */
+	private final Statement stmt;
+
+	/** logging handler */
+	final StatementProxy handler;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param stmt real statement
+	 * @param handler logging handler
+	 **********************************************
+	 */
+	StatementWrapper(Statement stmt, StatementProxy handler) {
+		this.stmt = stmt;
+		this.handler = handler;
+	}
+
+	@Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		return handler.wrapResultSet(this, handler.execute(sql, false, () -> stmt.executeQuery(sql)));
+	}
+
+	@Override
+	public int executeUpdate(String sql) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.executeUpdate(sql));
+	}
+
+	@Override
+	public void close() throws SQLException {
+		try {
+			stmt.close();
+		} finally {
+			handler.flushFetch();
+		}
+	}
+
+	@Override
+	public int getMaxFieldSize() throws SQLException {
+		return stmt.getMaxFieldSize();
+	}
+
+	@Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		stmt.setMaxFieldSize(max);
+	}
+
+	@Override
+	public int getMaxRows() throws SQLException {
+		return stmt.getMaxRows();
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		stmt.setMaxRows(max);
+	}
+
+	@Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		stmt.setEscapeProcessing(enable);
+	}
+
+	@Override
+	public int getQueryTimeout() throws SQLException {
+		return stmt.getQueryTimeout();
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		stmt.setQueryTimeout(seconds);
+	}
+
+	@Override
+	public void cancel() throws SQLException {
+		stmt.cancel();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return stmt.getWarnings();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		stmt.clearWarnings();
+	}
+
+	@Override
+	public void setCursorName(String name) throws SQLException {
+		stmt.setCursorName(name);
+	}
+
+	@Override
+	public boolean execute(String sql) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.execute(sql));
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return handler.wrapResultSet(this, stmt.getResultSet());
+	}
+
+	@Override
+	public int getUpdateCount() throws SQLException {
+		return stmt.getUpdateCount();
+	}
+
+	@Override
+	public boolean getMoreResults() throws SQLException {
+		return stmt.getMoreResults();
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		stmt.setFetchDirection(direction);
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		return stmt.getFetchDirection();
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		stmt.setFetchSize(rows);
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		return stmt.getFetchSize();
+	}
+
+	@Override
+	public int getResultSetConcurrency() throws SQLException {
+		return stmt.getResultSetConcurrency();
+	}
+
+	@Override
+	public int getResultSetType() throws SQLException {
+		return stmt.getResultSetType();
+	}
+
+	@Override
+	public void addBatch(String sql) throws SQLException {
+		stmt.addBatch(sql);
+		handler.addBatchList(sql);
+	}
+
+	@Override
+	public void clearBatch() throws SQLException {
+		stmt.clearBatch();
+		handler.clearBatchList();
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		return handler.execute(handler.getSql(), true, () -> stmt.executeBatch());
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return handler.wrapConnection(stmt.getConnection());
+	}
+
+	@Override
+	public boolean getMoreResults(int current) throws SQLException {
+		return stmt.getMoreResults(current);
+	}
+
+	@Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return stmt.getGeneratedKeys();
+	}
+
+	@Override
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.executeUpdate(sql, autoGeneratedKeys));
+	}
+
+	@Override
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.executeUpdate(sql, columnIndexes));
+	}
+
+	@Override
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.executeUpdate(sql, columnNames));
+	}
+
+	@Override
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.execute(sql, autoGeneratedKeys));
+	}
+
+	@Override
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.execute(sql, columnIndexes));
+	}
+
+	@Override
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.execute(sql, columnNames));
+	}
+
+	@Override
+	public int getResultSetHoldability() throws SQLException {
+		return stmt.getResultSetHoldability();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return stmt.isClosed();
+	}
+
+	@Override
+	public void setPoolable(boolean poolable) throws SQLException {
+		stmt.setPoolable(poolable);
+	}
+
+	@Override
+	public boolean isPoolable() throws SQLException {
+		return stmt.isPoolable();
+	}
+
+	@Override
+	public void closeOnCompletion() throws SQLException {
+		stmt.closeOnCompletion();
+	}
+
+	@Override
+	public boolean isCloseOnCompletion() throws SQLException {
+		return stmt.isCloseOnCompletion();
+	}
+
+	@Override
+	public long getLargeUpdateCount() throws SQLException {
+		return stmt.getLargeUpdateCount();
+	}
+
+	@Override
+	public void setLargeMaxRows(long max) throws SQLException {
+		stmt.setLargeMaxRows(max);
+	}
+
+	@Override
+	public long getLargeMaxRows() throws SQLException {
+		return stmt.getLargeMaxRows();
+	}
+
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+		return handler.execute(handler.getSql(), true, () -> stmt.executeLargeBatch());
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.executeLargeUpdate(sql));
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.executeLargeUpdate(sql, autoGeneratedKeys));
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.executeLargeUpdate(sql, columnIndexes));
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+		return handler.execute(sql, false, () -> stmt.executeLargeUpdate(sql, columnNames));
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return stmt.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return stmt.isWrapperFor(iface);
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ **********************************************************
+ * 接続URLからDataSource名を解決する.
+ * <pre>
+ * JNDIの一覧の取得はバックグラウンドのスレッドで1度だけ行い、
+ * 結果(接続URLとDataSource名の対応)を保持する。
+ * 解決の問い合わせはブロックせず、未解決の場合はnullを返す。
+ * 走査の完了後に見つからなかったURLは件数を制限して保持し、
+ * 新しいURLの場合のみ一定間隔以上あけて再走査する。
+ * 新たに解決した対応はリスナーに通知する。
+ *
+ * java:comp/envがスレッドに紐づくアプリケーションサーバでは
+ * バックグラウンドのスレッドから参照できないため、
+ * バックグラウンドでの走査に失敗した場合は次の問い合わせ時に
+ * 呼び出し元のスレッドで1度だけ走査する(この場合のみ接続処理を待機させる)。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class DataSourceNameResolver {
+
+	/** 未解決のURLを保持する最大件数(超えた場合は破棄する) */
+	private static final int MAX_NEGATIVE_ENTRIES = 1024;
+
+	/** 再走査の最小間隔(ms) */
+	static final long RESCAN_INTERVAL = 10000L;
+
+	private static final int STATE_IDLE = 0;
+	private static final int STATE_RUNNING = 1;
+	private static final int STATE_DONE = 2;
+
+	/** 接続URLとDataSource名の一覧を取得する処理 */
+	private final Supplier<Map<String, String>> scanner;
+
+	/** 解決した対応の通知先 */
+	private final Consumer<Map<String, String>> listener;
+
+	/** 走査の実行先 */
+	private final Executor executor;
+
+	/** 解決済みの対応(キーは接続URL) */
+	private final ConcurrentMap<String, String> names = new ConcurrentHashMap<String, String>();
+
+	/** 未解決のURL */
+	private final Map<String, Boolean> negatives = new ConcurrentHashMap<String, Boolean>();
+
+	private int state = STATE_IDLE;
+
+	/** 最後に走査を完了した時刻 */
+	private long lastScanned = 0L;
+
+	/** バックグラウンドでの走査に失敗したか(呼び出し元での走査が必要) */
+	private boolean needsFallback = false;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param scanner returns url to datasource name map
+	 * @param listener notified with newly resolved names
+	 **********************************************
+	 */
+	DataSourceNameResolver(Supplier<Map<String, String>> scanner, Consumer<Map<String, String>> listener) {
+		this(scanner, listener, new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				Thread worker = new Thread(task, "log4jdbcex-jndi-scan");
+				worker.setDaemon(true);
+				worker.start();
+			}
+		});
+	}
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param scanner returns url to datasource name map
+	 * @param listener notified with newly resolved names
+	 * @param executor runs background scan
+	 **********************************************
+	 */
+	DataSourceNameResolver(Supplier<Map<String, String>> scanner, Consumer<Map<String, String>> listener,
+							Executor executor) {
+		this.scanner = scanner;
+		this.listener = listener;
+		this.executor = executor;
+	}
+
+	/**
+	 **********************************************
+	 * DataSource名を取得する.
+	 *
+	 * 未走査の場合はバックグラウンドで走査を開始する
+	 *
+	 * @param url connection url
+	 * @return datasource name, or null if not resolved
+	 **********************************************
+	 */
+	String resolve(String url) {
+		String name = names.get(url);
+		if (name != null || negatives.containsKey(url)) return name;
+
+		boolean fallback = false;
+		synchronized (this) {
+			if (state == STATE_DONE) {
+				if (needsFallback) {
+					// バックグラウンドで参照できない場合は呼び出し元で走査する
+					needsFallback = false;
+					state = STATE_RUNNING;
+					fallback = true;
+				} else {
+					// 走査済みで見つからないURL
+					if (negatives.size() >= MAX_NEGATIVE_ENTRIES) negatives.clear();
+					negatives.put(url, Boolean.TRUE);
+					if (System.currentTimeMillis() - lastScanned < RESCAN_INTERVAL) return null;
+				}
+			}
+		}
+		if (fallback) {
+			scan(false);
+			return names.get(url);
+		}
+		start();
+		return null;
+	}
+
+	/**
+	 **********************************************
+	 * バックグラウンドで走査を開始する.
+	 *
+	 * 走査中の場合は何もしない
+	 **********************************************
+	 */
+	void start() {
+		synchronized (this) {
+			if (state == STATE_RUNNING) return;
+			state = STATE_RUNNING;
+		}
+		// 作成元のコンテキストクラスローダーを引き継ぐ(java:comp/envの参照のため)
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					scan(true);
+				}
+			});
+		} catch (Throwable t) {
+			// スレッドを生成できない場合は呼び出し元での走査に切り替える
+			synchronized (this) {
+				state = STATE_DONE;
+				needsFallback = true;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 **********************************************
+	 * 走査を行い、結果を反映する.
+	 *
+	 * @param background if called from background thread true
+	 **********************************************
+	 */
+	void scan(boolean background) {
+		Map<String, String> found = Collections.emptyMap();
+		boolean failed = false;
+		try {
+			found = scanner.get();
+		} catch (Throwable t) {
+			// 走査できない場合は未解決のまま
+			failed = background;
+		}
+
+		Map<String, String> added = new HashMap<String, String>();
+		for (Map.Entry<String, String> entry : found.entrySet()) {
+			if (names.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+				negatives.remove(entry.getKey());
+				added.put(entry.getKey(), entry.getValue());
+			}
+		}
+		try {
+			if (!added.isEmpty()) listener.accept(added);
+		} finally {
+			synchronized (this) {
+				state = STATE_DONE;
+				lastScanned = System.currentTimeMillis();
+				needsFallback = failed;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 **********************************************
+	 * 走査の完了を待機する.
+	 *
+	 * @param timeoutMillis max wait time(ms)
+	 * @return if scan completed true
+	 **********************************************
+	 */
+	synchronized boolean await(long timeoutMillis) {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		try {
+			while (state != STATE_DONE) {
+				long remain = deadline - System.currentTimeMillis();
+				if (state == STATE_IDLE || remain <= 0) return false;
+				wait(remain);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+}
@@ -20,7 +20,10 @@ import java.util.Map;
 
 import info.bunji.jdbc.LoggerHelper;
 import info.bunji.jdbc.logger.impl.QueryInfo;
+import info.bunji.jdbc.logger.impl.SlowQueryInfo;
+import info.bunji.jdbc.logger.impl.TransactionInfo;
 import info.bunji.jdbc.specifics.RdbmsSpecifics;
+import info.bunji.jdbc.util.SqlTemplate;
 
 /**
  * All logger interface.
@@ -32,18 +35,74 @@ public interface JdbcLogger {
 	/** loggerName */
 	public static final String LOGGER_NAME = "jdbclog";
 
+	/** nanoseconds per millisecond */
+	public static final double NANOS_PER_MILLI = 1000000.0;
+
+	/**
+	 * log format (elapsed:long milliseconds)
+	 * @deprecated use {@link #MSG_FORMAT_MICROS}
+	 */
+	@Deprecated
 	public  static final String MSG_FORMAT = "[executed %,4d ms] ";
 
+	/**
+	 * log format with connection id (elapsed:long milliseconds)
+	 * @deprecated use {@link #MSG_FORMAT_WITH_CONN_MICROS}
+	 */
+	@Deprecated
 	public  static final String MSG_FORMAT_WITH_CONN = "[executed %,4d ms] [%s] ";
 
-	/** success log format with connection id */
+	/**
+	 * success log format with connection id (elapsed:long milliseconds)
+	 * @deprecated use {@link #RETURN_MSG_FORMAT_WITH_CONN_MICROS}
+	 */
+	@Deprecated
 	public static final String RETURN_MSG_FORMAT_WITH_CONN = "[executed %,4d ms] [%s] %s";
 
-	/** error log format with connection id */
+	/**
+	 * error log format with connection id (elapsed:long milliseconds)
+	 * @deprecated use {@link #EXCEPTION_MSG_FORMAT_WITH_CONN_MICROS}
+	 */
+	@Deprecated
 	public static final String EXCEPTION_MSG_FORMAT_WITH_CONN = "[executed %,4d ms] [%s] %s";
 
+	/** log format (elapsed:double milliseconds with microsecond precision) */
+	public  static final String MSG_FORMAT_MICROS = "[executed %,8.3f ms] ";
+
+	/** log format with connection id (elapsed:double milliseconds with microsecond precision) */
+	public  static final String MSG_FORMAT_WITH_CONN_MICROS = "[executed %,8.3f ms] [%s] ";
+
+	/** success log format with connection id (elapsed:double milliseconds with microsecond precision) */
+	public static final String RETURN_MSG_FORMAT_WITH_CONN_MICROS = "[executed %,8.3f ms] [%s] %s";
+
+	/** error log format with connection id (elapsed:double milliseconds with microsecond precision) */
+	public static final String EXCEPTION_MSG_FORMAT_WITH_CONN_MICROS = "[executed %,8.3f ms] [%s] %s";
+
+	/** transaction event:commit */
+	public static final int TX_COMMIT = 1;
+
+	/** transaction event:rollback */
+	public static final int TX_ROLLBACK = 2;
+
+	/** transaction event:setAutoCommit(true) */
+	public static final int TX_AUTOCOMMIT_ON = 3;
+
+	/** transaction event:setAutoCommit(false) */
+	public static final int TX_AUTOCOMMIT_OFF = 4;
+
+	/** transaction event:close connection */
+	public static final int TX_CLOSE = 5;
+
 	public RdbmsSpecifics getSpecifics();
 
+	/**
+	 * get parsed sql.
+	 *
+	 * @param sql parameterized sql
+	 * @return parsed sql (cached)
+	 */
+	public SqlTemplate getSqlTemplate(String sql);
+
 	/**
 	 * get connection url.
 	 *
@@ -58,6 +117,15 @@ public interface JdbcLogger {
 	 */
 	public String getDispUrl();
 
+	/**
+	 * set resolved datasource name.
+	 *
+	 * changes display name and logger name of the logger created before resolution.
+	 *
+	 * @param name datasource name
+	 */
+	public void setDataSourceName(String name);
+
 
 	/**
 	 * get logging status
@@ -73,6 +141,27 @@ public interface JdbcLogger {
 	 */
 	public boolean isConnectionLogging();
 
+	/**
+	 * get proxy type
+	 *
+	 * @return if use static delegates true, other false(reflection proxy)
+	 */
+	public boolean isStaticProxy();
+
+	/**
+	 * get query id type
+	 *
+	 * @return if use UUID true, other false(sequence)
+	 */
+	public boolean isUuidQueryId();
+
+	/**
+	 * get fetch logging status
+	 *
+	 * @return if fetch logging enabled true, other false
+	 */
+	public boolean isFetchLogging();
+
 	/**
 	 * output trace log.
 	 * @param msg log message
@@ -133,6 +222,26 @@ public interface JdbcLogger {
 	 */
 	public void reportException(LoggerHelper helper, Throwable t, Object... params);
 
+	/**
+	 * report resultset fetch result.
+	 *
+	 * logging of the execution deferred by reportReturned is decided here
+	 * with execute + fetch time. fetch result is not set if flushed before fetch end.
+	 *
+	 * @param helper executed statement(with fetch result)
+	 */
+	public void reportFetched(LoggerHelper helper);
+
+	/**
+	 * report transaction control(commit/rollback/setAutoCommit/close).
+	 *
+	 * @param helper target connection
+	 * @param event transaction event(TX_xxx)
+	 * @param elapsedNanos exec time(ns)
+	 * @param t exception(null if succeeded)
+	 */
+	public void reportTransaction(LoggerHelper helper, int event, long elapsedNanos, Throwable t);
+
 	/**
 	 * add execute statement.
 	 *
@@ -162,6 +271,56 @@ public interface JdbcLogger {
 	 */
 	public boolean setSetting(Map<String,Object> settings);
 
+	/**
+	 * get setting version.
+	 *
+	 * @return 設定の変更毎に増加する値
+	 */
+	public long getSettingVersion();
+
+	/**
+	 * get runtime status map.
+	 *
+	 * @return 動作状況(キャッシュのヒット率など)
+	 */
+	public Map<String,Object> getStatus();
+
+	/**
+	 * get aggregated statistics per normalized sql.
+	 *
+	 * @return statistics list(order by total time desc)
+	 */
+	public List<Map<String,Object>> getStatistics();
+
+	/**
+	 * clear aggregated statistics.
+	 */
+	public void clearStatistics();
+
+	/**
+	 * get queries captured over captureThreshold.
+	 *
+	 * @return captured queries(newest first)
+	 */
+	public List<SlowQueryInfo> getSlowQueries();
+
+	/**
+	 * clear captured queries.
+	 */
+	public void clearSlowQueries();
+
+	/**
+	 * get transactions over transactionThreshold.
+	 *
+	 * @return finished transactions(newest first)
+	 */
+	public List<TransactionInfo> getTransactions();
+
+	/**
+	 * clear finished transactions.
+	 */
+	public void clearTransactions();
+
 	/**
 	 * get executing sql info list.
 	 * @return query list
@@ -24,9 +24,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.naming.InitialContext;
 import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -77,9 +80,15 @@ public class JdbcLoggerFactory {
 
 	private static final String DEFAULT_LOGGER = "_defaultLogger_";
 
-	private static Map<String,JdbcLogger> loggerCache = new HashMap<String,JdbcLogger>();
+	/** 生成済みのLogger(キーはLogger名) */
+	private static final ConcurrentMap<String,JdbcLogger> loggerCache = new ConcurrentHashMap<String,JdbcLogger>();
 
-	private static Map<String,String> dsNameMap = new HashMap<String,String>();
+	/** 接続URL毎のLogger(取得時の参照用) */
+	private static final ConcurrentMap<String,JdbcLogger> urlLoggerMap = new ConcurrentHashMap<String,JdbcLogger>();
+
+	/** 接続URLからDataSource名の解決(JNDIの走査はバックグラウンドで行う) */
+	private static volatile DataSourceNameResolver resolver =
+			new DataSourceNameResolver(JdbcLoggerFactory::scanDataSources, JdbcLoggerFactory::rebindLoggers);
 
 	private Constructor<?> constructor;
 
@@ -158,41 +167,142 @@ public class JdbcLoggerFactory {
 	 ********************************************
 	 * get loggerName from jdbc url.
 	 *
+	 * DataSource名が未解決の場合はURLを返す(解決を待機しない)
+	 *
 	 * @param url connection url
 	 * @return loggerName(jdbc url or DataSourceName)
 	 ********************************************
 	 */
 	private static String getLoggerName(String url) {
-		if (!dsNameMap.containsKey(url)) {
-			dsNameMap.put(url, url);
-
-			// datasource名の解決を試みる
-			InitialContext ctx = null;
-			try {
-				// JNDIによる名称の取得を試みる
-				ctx = new InitialContext();
-				NamingEnumeration<NameClassPair> ne = ctx.list("java:comp/env/jdbc");
-				while (ne.hasMoreElements()) {
-					NameClassPair nc = ne.nextElement();
+		if (!url.startsWith("jdbc:")) return url;
+		String name = resolver.resolve(url);
+		return name != null ? name : url;
+	}
+
+	/**
+	 ********************************************
+	 * JNDIに登録されたDataSourceの接続URLと名称の一覧を取得する.
+	 *
+	 * java:comp/envを参照できない場合は例外とする
+	 *
+	 * @return connection url to DataSourceName map
+	 * @throws IllegalStateException naming context not available
+	 ********************************************
+	 */
+	private static Map<String,String> scanDataSources() {
+		Map<String,String> result = new HashMap<String,String>();
+		InitialContext ctx = null;
+		try {
+			// JNDIによる名称の取得を試みる
+			ctx = new InitialContext();
+			NamingEnumeration<NameClassPair> ne = ctx.list("java:comp/env/jdbc");
+			while (ne.hasMoreElements()) {
+				NameClassPair nc = ne.nextElement();
+				try {
 					DataSource ds = (DataSource) ctx.lookup("java:comp/env/jdbc/" + nc.getName());
 					// 一般的なDataSourceの実装に含まれるgetUrl()を利用
 					Method method = ds.getClass().getMethod("getUrl");
 					String dsUrl = (String) method.invoke(ds);
-					if (dsUrl.startsWith(DriverEx.DRIVER_URL_PREFIX)) {
+					if (dsUrl != null && dsUrl.startsWith(DriverEx.DRIVER_URL_PREFIX)) {
 						dsUrl = dsUrl.replace(DriverEx.DRIVER_URL_PREFIX, "jdbc:");
-						if (dsUrl.equals(url)) {
-							dsNameMap.put(url, nc.getName());
-							break;
+						// 同じURLの場合は先に見つかったものを利用する
+						if (!result.containsKey(dsUrl)) {
+							result.put(dsUrl, nc.getName());
 						}
 					}
+				} catch (Throwable t) {
+					// getUrl()を持たないDataSourceは対象外
+					printThrowable(t);
 				}
-			} catch (Throwable t) {
-				printThrowable(t);
-			} finally {
-				try { if (ctx != null) ctx.close(); } catch(NamingException e) {}
 			}
+		} catch (NameNotFoundException e) {
+			// DataSourceが登録されていない
+			printThrowable(e);
+		} catch (NamingException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			try { if (ctx != null) ctx.close(); } catch(NamingException e) {}
+		}
+		return result;
+	}
+
+	/**
+	 ********************************************
+	 * 解決前に仮の名称(URL)で生成したLoggerをDataSource名で登録し直す.
+	 *
+	 * 生成済みのLoggerを引き継ぐため、取得済みのコネクションも対象となる
+	 *
+	 * @param resolved newly resolved url to DataSourceName map
+	 ********************************************
+	 */
+	static void rebindLoggers(Map<String,String> resolved) {
+		for (Entry<String,String> entry : resolved.entrySet()) {
+			rebindLogger(entry.getKey(), entry.getValue());
 		}
-		return dsNameMap.get(url);
+	}
+
+	/**
+	 ********************************************
+	 * 仮の名称(URL)で生成したLoggerをDataSource名で登録し直す.
+	 *
+	 * 生成中または未接続の場合は何もしない(登録後にgetLogger()で再確認する)
+	 *
+	 * @param url connection url
+	 * @param name DataSourceName
+	 * @return rebound logger. if not found null
+	 ********************************************
+	 */
+	private static JdbcLogger rebindLogger(String url, String name) {
+		JdbcLogger logger = loggerCache.get(url);
+		if (logger == null || !loggerCache.remove(url, logger)) return null;
+
+		JdbcLogger current = loggerCache.putIfAbsent(name, logger);
+		if (current == null) {
+			logger.setDataSourceName(name);
+			logger.setSetting(settingMap.get(name));
+		} else {
+			// 既にDataSource名のLoggerがある場合はそちらを利用する
+			logger = current;
+		}
+		urlLoggerMap.put(url, logger);
+		return logger;
+	}
+
+	/**
+	 ********************************************
+	 * DataSource名の解決処理を差し替える(テスト用).
+	 *
+	 * @param newResolver resolver
+	 * @return previous resolver
+	 ********************************************
+	 */
+	static DataSourceNameResolver setResolver(DataSourceNameResolver newResolver) {
+		DataSourceNameResolver old = resolver;
+		resolver = newResolver;
+		return old;
+	}
+
+	/**
+	 ********************************************
+	 * DataSource名の解決をバックグラウンドで開始する.
+	 ********************************************
+	 */
+	public static void resolveDataSourceNames() {
+		resolver.start();
+	}
+
+	/**
+	 ********************************************
+	 * DataSource名の解決の完了を待機する.
+	 *
+	 * 接続処理以外(REST APIの初期化時など)から呼び出すこと
+	 *
+	 * @param timeoutMillis max wait time(ms)
+	 * @return if resolved true
+	 ********************************************
+	 */
+	public static boolean awaitDataSourceNames(long timeoutMillis) {
+		return resolver.await(timeoutMillis);
 	}
 
 	/**
@@ -204,34 +314,51 @@ public class JdbcLoggerFactory {
 	 ********************************************
 	 */
 	public static JdbcLogger getLogger(String url) {
-		String name = getLoggerName(url);
-		synchronized (loggerCache) {
-			if (!hasLogger(name)) {
-				try {
-					loggerCache.put(name, getLoggerInstance(name));
-					if (settingMap.containsKey(DEFAULT_SETTING)) {
-						// 事前に共通設定を反映
-						loggerCache.get(name).setSetting(settingMap.get(DEFAULT_SETTING));
+		// 生成済みの場合はロックなしの参照のみ
+		JdbcLogger logger = urlLoggerMap.get(url);
+		if (logger == null) {
+			String name = getLoggerName(url);
+			logger = loggerCache.computeIfAbsent(name, JdbcLoggerFactory::createLogger);
+			if (logger != null) {
+				JdbcLogger current = urlLoggerMap.putIfAbsent(url, logger);
+				if (current != null) logger = current;
+
+				// 生成中に解決した場合は走査側で登録し直せないため、ここで再確認する
+				if (name.equals(url) && url.startsWith("jdbc:")) {
+					String resolved = resolver.resolve(url);
+					if (resolved != null) {
+						JdbcLogger rebound = rebindLogger(url, resolved);
+						logger = rebound != null ? rebound : urlLoggerMap.get(url);
 					}
-					loggerCache.get(name).setSetting(settingMap.get(name));
-				} catch(Throwable t) {
-					printThrowable(t);
 				}
 			}
 		}
-		return loggerCache.get(name);
+		return logger;
 	}
 
 	/**
 	 ********************************************
-	 * 指定URL用のロガーを保持しているかをチェックする
+	 * Loggerを生成し、設定ファイルの設定を反映する.
 	 *
-	 * @param url 接続URL文字列
-	 * @return 保持している場合はtrue，保持していない場合はfalseを返す
+	 * Logger名毎に1度だけ呼び出される
+	 *
+	 * @param name loggerName
+	 * @return logger(null if failed)
 	 ********************************************
 	 */
-	private static boolean hasLogger(String url) {
-		return loggerCache.containsKey(getLoggerName(url));
+	private static JdbcLogger createLogger(String name) {
+		try {
+			JdbcLogger logger = getLoggerInstance(name);
+			if (settingMap.containsKey(DEFAULT_SETTING)) {
+				// 事前に共通設定を反映
+				logger.setSetting(settingMap.get(DEFAULT_SETTING));
+			}
+			logger.setSetting(settingMap.get(name));
+			return logger;
+		} catch(Throwable t) {
+			printThrowable(t);
+			return null;
+		}
 	}
 
 	/**
@@ -25,6 +25,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -34,6 +38,10 @@ import info.bunji.jdbc.specifics.DefaultRdbmsSpecifics;
 import info.bunji.jdbc.specifics.OracleRdbmsSpecifics;
 import info.bunji.jdbc.specifics.RdbmsSpecifics;
 import info.bunji.jdbc.util.FormatUtils;
+import info.bunji.jdbc.util.RingBuffer;
+import info.bunji.jdbc.util.SqlNormalizer;
+import info.bunji.jdbc.util.SqlTemplate;
+import info.bunji.jdbc.util.SqlTemplateCache;
 
 /**
  *
@@ -41,8 +49,35 @@ import info.bunji.jdbc.util.FormatUtils;
  */
 public abstract class AbstractJdbcLogger implements JdbcLogger {
 
-	/** 実行中のStatementオブジェクトを保持する配列 */
-	List<LoggerHelper> activeStatements = Collections.synchronizedList(new ArrayList<LoggerHelper>());
+	/** proxyType:リフレクションによる動的プロキシ */
+	static final String PROXY_REFLECT = "reflect";
+
+	/** proxyType:静的ラッパー */
+	static final String PROXY_STATIC = "static";
+
+	/** queryIdType:通番 */
+	static final String QUERY_ID_SEQUENCE = "sequence";
+
+	/** queryIdType:UUID */
+	static final String QUERY_ID_UUID = "uuid";
+
+	/** filterTarget:パラメータを埋め込んだ実行SQL */
+	static final String FILTER_TARGET_SQL = "sql";
+
+	/** filterTarget:正規化したSQL */
+	static final String FILTER_TARGET_NORMALIZED = "normalized";
+
+	/** 詳細情報として保持するスタックトレースの最大フレーム数 */
+	private static final int MAX_STACK_DEPTH = 32;
+
+	/** デフォルトのログレイアウト */
+	private static final LogLayout LAYOUT = new LogLayout(LogLayout.DEFAULT_LAYOUT);
+
+	/** デフォルトのログレイアウト(コネクションID付き) */
+	private static final LogLayout LAYOUT_WITH_CONN = new LogLayout(LogLayout.DEFAULT_LAYOUT_WITH_CONN);
+
+	/** 実行中のStatementオブジェクトを保持するMap(キーはqueryId) */
+	final ConcurrentMap<String, LoggerHelper> activeStatements = new ConcurrentHashMap<String, LoggerHelper>();
 
 	long timeThreshold = 0L;
 
@@ -52,6 +87,9 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	/** ログの出力対象外とするSQL文字列の正規表現(デフォルトはなし) */
 	Pattern ignorePattern = null;
 
+	/** フィルタを正規化したSQLに適用するか(デフォルト:false[実行SQL]) */
+	boolean isNormalizedFilter = false;
+
 	/** REST API への出力時にSQLを整形するか */
 	boolean isFormat = true;
 
@@ -61,30 +99,118 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	/** コネクション取得・切断時のロギング(デフォルト:false) */
 	boolean isConnectionLogging = false;
 
+	/** 静的ラッパーを利用するか(デフォルト:false[reflect]) */
+	boolean isStaticProxy = false;
+
+	/** クエリIDにUUIDを利用するか(デフォルト:false[sequence]) */
+	boolean isUuidQueryId = false;
+
+	/** ResultSetの取得行数・フェッチ時間を計測するか(デフォルト:false) */
+	boolean isFetchLogging = false;
+
 	/** このLoggerインスタンスが出力対象とする接続URL */
-	String connectUrl;
+	volatile String connectUrl;
 
 	/** このLoggerインスタンスが出力対象とする接続URL */
-	String dispUrl;
+	volatile String dispUrl;
 
 	/** 実行履歴の保持件数(接続URL単位) */
 	int historyCount = 50;
 
 	private final RdbmsSpecifics specifics;
 
-	private List<QueryInfo> queryHistory = new ArrayList<QueryInfo>() {
-		@Override
-		public boolean add(QueryInfo info) {
-			if (historyCount <= 0) return true;
+	/** 解析済みSQLのキャッシュ(デフォルト:500件、lru) */
+	private final SqlTemplateCache sqlCache = new SqlTemplateCache(500, SqlTemplateCache.EVICTION_LRU);
 
-			//info.setDataSource(connectUrl);
-			info.setDataSource(dispUrl);
+	/** 実行履歴 */
+	private final RingBuffer<QueryInfo> queryHistory = new RingBuffer<QueryInfo>(historyCount);
 
-			// 保持件数を超えるものは古いものから削除
-			while(size() >= historyCount) remove(0);
-			return super.add(info);
-		}
-	};
+	/** 詳細情報を取得する実行時間(ms)のしきい値(デフォルト:-1[取得しない]) */
+	long captureThreshold = -1L;
+
+	/** 詳細情報の保持件数 */
+	int captureCount = 50;
+
+	/** 詳細情報を取得したクエリ(実行履歴とは別に保持する) */
+	private final RingBuffer<SlowQueryInfo> slowQueries = new RingBuffer<SlowQueryInfo>(captureCount);
+
+	/** 実行件数(全ての実行が対象) */
+	private final LongAdder execCount = new LongAdder();
+
+	/** 設定の変更回数 */
+	private final AtomicLong settingVersion = new AtomicLong();
+
+	/** エラー件数 */
+	private final LongAdder errorCount = new LongAdder();
+
+	/** 合計実行時間(ns) */
+	private final LongAdder execNanos = new LongAdder();
+
+	/** 詳細情報を取得した件数 */
+	private final LongAdder capturedCount = new LongAdder();
+
+	/** 呼び出し元の対象パッケージ(カンマ区切り、デフォルト:なし[全て]) */
+	String callerInclude = null;
+
+	/** 呼び出し元の除外パッケージ(カンマ区切り) */
+	String callerExclude = CallerFinder.DEFAULT_EXCLUDE;
+
+	/** 呼び出し元の取得(callerCapture無効時はnull) */
+	volatile CallerFinder callerFinder = null;
+
+	/** トランザクションを出力する経過時間(ms)のしきい値(デフォルト:-1[追跡しない]) */
+	long transactionThreshold = -1L;
+
+	/** しきい値を超えたトランザクションの保持件数 */
+	int transactionCount = 50;
+
+	/** トランザクションの追跡 */
+	volatile TransactionTracker transactionTracker = new TransactionTracker();
+
+	/** しきい値を超えたトランザクション */
+	private final RingBuffer<TransactionInfo> transactions = new RingBuffer<TransactionInfo>(transactionCount);
+
+	/** N+1クエリとして検出する実行回数(デフォルト:-1[検出しない]) */
+	int nPlusOneThreshold = -1;
+
+	/** N+1クエリを検出する時間窓(ms) */
+	long nPlusOneWindow = 1000L;
+
+	/** N+1クエリの検出 */
+	volatile NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(nPlusOneThreshold, nPlusOneWindow);
+
+	/** N+1クエリの検出件数 */
+	private final LongAdder nPlusOneCount = new LongAdder();
+
+	/** SQL単位の統計を集計するか(デフォルト:false) */
+	boolean isStatistics = false;
+
+	/** SQL単位の統計(デフォルト:500件) */
+	private final SqlStatistics statistics = new SqlStatistics(500);
+
+	/** samplingModeがratioの場合の間引き率(N件に1件) */
+	int samplingRatio = 10;
+
+	/** samplingModeがrate/fingerprintの場合の1秒あたりの最大件数 */
+	int samplingRate = 100;
+
+	/** ログ出力対象のサンプリング(デフォルト:none) */
+	volatile QuerySampler sampler = new QuerySampler(QuerySampler.MODE_NONE, samplingRatio, samplingRate);
+
+	/** ログ出力のレイアウト(未指定時はnull) */
+	volatile LogLayout customLayout = null;
+
+	/** 非同期ロギング時のキューサイズ */
+	int asyncQueueSize = 8192;
+
+	/** 非同期ロギング時のキュー溢れの動作(drop/block/sample) */
+	String asyncOverflow = AsyncLogWriter.OVERFLOW_DROP;
+
+	/** overflowがsampleの場合の間引き率(N件に1件) */
+	int asyncSampleRate = 10;
+
+	/** 非同期ロギング用のライター(同期時はnull) */
+	volatile AsyncLogWriter asyncWriter = null;
 
 	/**
 	 ********************************************
@@ -136,6 +262,34 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 		return ret ? isConnectionLogging : ret;
 	}
 
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#isStaticProxy()
+	 */
+	@Override
+	public boolean isStaticProxy() {
+		return isStaticProxy;
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#isUuidQueryId()
+	 */
+	@Override
+	public boolean isUuidQueryId() {
+		return isUuidQueryId;
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#isFetchLogging()
+	 */
+	@Override
+	public boolean isFetchLogging() {
+		boolean ret = isJdbcLoggingEnabled();
+		return ret ? isFetchLogging : ret;
+	}
+
 	/*
 	 * (非 Javadoc)
 	 * @see info.bunji.jdbc.logger.JdbcLogger#getSpecifics()
@@ -145,6 +299,15 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 		return specifics;
 	}
 
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#getSqlTemplate(java.lang.String)
+	 */
+	@Override
+	public SqlTemplate getSqlTemplate(String sql) {
+		return sqlCache.get(sql);
+	}
+
 	/*
 	 * (非 Javadoc)
 	 * @see info.bunji.jdbc.logger.JdbcLogger#getConnectUrl()
@@ -159,6 +322,16 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 		return dispUrl;
 	}
 
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#setDataSourceName(java.lang.String)
+	 */
+	@Override
+	public void setDataSourceName(String name) {
+		connectUrl = name;
+		dispUrl = name;
+	}
+
 	/**
 	 * set logging accept conditiion.
 	 *
@@ -197,6 +370,64 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 		}
 	}
 
+	/**
+	 * set proxy type.
+	 *
+	 * @param type "reflect" or "static"
+	 */
+	private void setProxyType(String type) {
+		if (type.equalsIgnoreCase(PROXY_STATIC)) {
+			isStaticProxy = true;
+		} else if (type.equalsIgnoreCase(PROXY_REFLECT)) {
+			isStaticProxy = false;
+		} else {
+			throw new IllegalArgumentException("unknown proxyType.");
+		}
+	}
+
+	/**
+	 * set query id type.
+	 *
+	 * @param type "sequence" or "uuid"
+	 */
+	private void setQueryIdType(String type) {
+		if (type.equalsIgnoreCase(QUERY_ID_UUID)) {
+			isUuidQueryId = true;
+		} else if (type.equalsIgnoreCase(QUERY_ID_SEQUENCE)) {
+			isUuidQueryId = false;
+		} else {
+			throw new IllegalArgumentException("unknown queryIdType.");
+		}
+	}
+
+	/**
+	 * set filter target.
+	 *
+	 * @param target "sql" or "normalized"
+	 */
+	private void setFilterTarget(String target) {
+		if (target.equalsIgnoreCase(FILTER_TARGET_NORMALIZED)) {
+			isNormalizedFilter = true;
+		} else if (target.equalsIgnoreCase(FILTER_TARGET_SQL)) {
+			isNormalizedFilter = false;
+		} else {
+			throw new IllegalArgumentException("unknown filterTarget.");
+		}
+	}
+
+	/**
+	 * get log layout.
+	 *
+	 * 未指定時はconnectionLoggingの設定によりデフォルトを切り替える
+	 *
+	 * @return log layout
+	 */
+	private LogLayout getLayout() {
+		LogLayout layout = customLayout;
+		if (layout != null) return layout;
+		return isConnectionLogging() ? LAYOUT_WITH_CONN : LAYOUT;
+	}
+
 	/**
 	 * set logging thresthold time.
 	 * @param millis threshold milliseconds
@@ -211,7 +442,7 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	 */
 	@Override
 	public void addExecStatement(LoggerHelper statement) {
-		activeStatements.add(statement);
+		activeStatements.put(statement.getQueryId(), statement);
 	}
 
 	/*
@@ -220,7 +451,11 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	 */
 	@Override
 	public void removeExecStatement(LoggerHelper statement) {
-		activeStatements.remove(statement);
+		String queryId = statement.getQueryId();
+		// 未実行(開始前)の場合は登録されていない
+		if (queryId != null) {
+			activeStatements.remove(queryId, statement);
+		}
 	}
 
 	/**
@@ -228,21 +463,99 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	 * It is determined whether the log output target.
 	 *
 	 * @param sql execute sql
-	 * @param elapsed exec time(ms)
+	 * @param elapsedNanos exec time(ns)
 	 * @return if output true, other false
 	 ********************************************
 	 */
-	boolean isLogging(String sql, long elapsed) {
-		if (timeThreshold <= elapsed || elapsed < 0) {
-			if (acceptPattern == null || acceptPattern.matcher(sql).find()) {
-				if (ignorePattern == null || !ignorePattern.matcher(sql).find()) {
-					return true;
-				}
+	boolean isLogging(String sql, long elapsedNanos) {
+		return isOverThreshold(elapsedNanos) && isAccept(sql);
+	}
+
+	/**
+	 ********************************************
+	 * It is determined whether the log output target.
+	 *
+	 * @param sql execute sql
+	 * @param template parsed sql(nullable)
+	 * @param elapsedNanos exec time(ns)
+	 * @return if output true, other false
+	 ********************************************
+	 */
+	boolean isLogging(String sql, SqlTemplate template, long elapsedNanos) {
+		return isOverThreshold(elapsedNanos) && isAccept(sql, template);
+	}
+
+	/**
+	 ********************************************
+	 * It is determined whether the elapsed time exceeds the threshold.
+	 *
+	 * @param elapsedNanos exec time(ns)
+	 * @return if over threshold true, other false
+	 ********************************************
+	 */
+	boolean isOverThreshold(long elapsedNanos) {
+		return timeThreshold * 1000000L <= elapsedNanos || elapsedNanos < 0;
+	}
+
+	/**
+	 ********************************************
+	 * It is determined whether the sql matches filters.
+	 *
+	 * @param sql execute sql
+	 * @return if output true, other false
+	 ********************************************
+	 */
+	boolean isAccept(String sql) {
+		if (acceptPattern == null || acceptPattern.matcher(sql).find()) {
+			if (ignorePattern == null || !ignorePattern.matcher(sql).find()) {
+				return true;
 			}
 		}
 		return false;
 	}
 
+	/**
+	 ********************************************
+	 * It is determined whether the sql matches filters.
+	 *
+	 * filterTargetがnormalizedの場合は正規化したSQLで判定する
+	 *
+	 * @param sql execute sql
+	 * @param template parsed sql(nullable)
+	 * @return if output true, other false
+	 ********************************************
+	 */
+	boolean isAccept(String sql, SqlTemplate template) {
+		if (isNormalizedFilter && template != null) {
+			return isAccept(template.getNormalizedSql());
+		}
+		return isAccept(sql);
+	}
+
+	/**
+	 * get parsed sql.
+	 *
+	 * @param sql parameterized sql(nullable)
+	 * @return parsed sql, or null if sql is null
+	 */
+	private SqlTemplate templateOf(String sql) {
+		return sql != null ? getSqlTemplate(sql) : null;
+	}
+
+	/**
+	 * set fingerprint to query info.
+	 *
+	 * @param info query info
+	 * @param template parsed sql(nullable)
+	 * @return query info
+	 */
+	private static QueryInfo withFingerprint(QueryInfo info, SqlTemplate template) {
+		if (template != null) {
+			info.setFingerprint(SqlNormalizer.toHex(template.getFingerprint()));
+		}
+		return info;
+	}
+
 	/*
 	 * (非 Javadoc)
 	 * @see info.bunji.jdbc.logger.JdbcLogger#reportReturned(info.bunji.jdbc.LoggerHelper, java.lang.Object[])
@@ -251,42 +564,58 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	public void reportReturned(LoggerHelper helper, Object... params) {
 		try {
 			if (isJdbcLoggingEnabled()) {
-				long elapsed = System.currentTimeMillis() - helper.getStartTime();
-				StringBuilder logMsg = new StringBuilder(String.format(MSG_FORMAT, elapsed));
-				if (isConnectionLogging()) {
-					logMsg.append("[").append(helper.getConnectionId()).append("] ");
+				long elapsedNanos = helper.getElapsedNanos();
+				countExecution(elapsedNanos, false);
+				SqlTemplate template = isStatistics ? templateOf(helper.getTemplateSql()) : null;
+				recordStatistics(template, elapsedNanos, false);
+				captureSlowQuery(helper, elapsedNanos, null);
+				recordTransactionStatement(helper, elapsedNanos, false);
+				if (nPlusOneDetector.isEnabled() && !helper.isExecuteBatch()) {
+					if (template == null) template = templateOf(helper.getTemplateSql());
+					detectNPlusOne(helper, template);
 				}
 
-				if (!helper.isExecuteBatch()) {
-					String sql = helper.dumpSql();
-					if (isLogging(sql, elapsed)) {
-						if (limitLength != -1 && limitLength < sql.length()) {
-							sql = sql.substring(0, limitLength) + "...";
-						}
-						debug(logMsg.append(sql).toString());
-						queryHistory.add(new QueryInfo(helper, sql, null));
-					}
-				} else if (helper.getBatchList() != null) {
-					int i = 0;
-					int cnt = helper.getBatchList().size();
-					for (String sql : helper.getBatchList()) {
-						i++;
-						if (isLogging(sql, elapsed)) {
-							if (limitLength != -1 && limitLength < sql.length()) {
-								sql = sql.substring(0, limitLength) + "...";
-							}
-							debug(logMsg + "(" + i + "/" + cnt + ") " + sql);
-							queryHistory.add(new QueryInfo(helper.getStartTime(), -1L, sql, helper.getQueryId(), null));
-						}
-					}
-					//debug(logMsg.append("batch finished. ") + "(" + i + "/" + cnt + ")");
-				}
+				// ResultSetを返す場合はフェッチの完了時に判定する
+				if (helper.isFetchPending()) return;
+
+				emitReturned(helper, elapsedNanos, elapsedNanos, template);
 			}
 		} catch (Throwable t) {
 			// ロギング処理自身による例外は発生させない
 		}
 	}
 
+	/**
+	 ********************************************
+	 * 出力対象の場合に正常終了したクエリのログ出力を行う.
+	 *
+	 * @param helper executed statement
+	 * @param elapsedNanos exec time(ns)
+	 * @param thresholdNanos time to compare with threshold(ns)
+	 * @param template executed sql(nullable)
+	 ********************************************
+	 */
+	private void emitReturned(LoggerHelper helper, long elapsedNanos, long thresholdNanos, SqlTemplate template) {
+		// 閾値に満たない場合はSQLの生成を行わない
+		if (!isOverThreshold(thresholdNanos)) return;
+
+		// サンプリング対象外の場合も同様(ログ・履歴には出力しない)
+		QuerySampler s = sampler;
+		if (s.isEnabled()) {
+			if (template == null) template = templateOf(helper.getTemplateSql());
+			if (!s.sample(template)) return;
+		}
+
+		// 呼び出し元は出力対象のもののみ取得する
+		String caller = findCaller();
+
+		// 非同期時は実行状態を固定してキューに登録するのみ
+		AsyncLogWriter writer = asyncWriter;
+		if (writer != null && writer.publish(helper.snapshot(elapsedNanos), null, caller)) return;
+
+		logReturned(helper, elapsedNanos, caller);
+	}
+
 	/*
 	 * (非 Javadoc)
 	 * @see info.bunji.jdbc.logger.JdbcLogger#reportException(info.bunji.jdbc.LoggerHelper, java.lang.Throwable, java.lang.Object[])
@@ -295,44 +624,361 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	public void reportException(LoggerHelper helper, Throwable t, Object... params) {
 		try {
 			if (isJdbcLoggingEnabled()) {
-				long elapsed = System.currentTimeMillis() - helper.getStartTime();
-				StringBuilder logMsg = new StringBuilder(String.format(MSG_FORMAT, elapsed));
-				if (isConnectionLogging()) {
-					logMsg.append("[").append(helper.getConnectionId()).append("] ");
+				long elapsedNanos = helper.getElapsedNanos();
+				countExecution(elapsedNanos, true);
+				// エラーはサンプリングの対象外(常に出力する)
+				recordStatistics(isStatistics ? templateOf(helper.getTemplateSql()) : null, elapsedNanos, true);
+				captureSlowQuery(helper, elapsedNanos, t);
+				recordTransactionStatement(helper, elapsedNanos, true);
+
+				String caller = findCaller();
+
+				AsyncLogWriter writer = asyncWriter;
+				if (writer != null && writer.publish(helper.snapshot(elapsedNanos), t, caller)) return;
+
+				logException(helper, elapsedNanos, t, caller);
+			}
+		} catch (Throwable e) {
+			// ロギング処理自身による例外は発生させない
+		}
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#reportTransaction(info.bunji.jdbc.LoggerHelper, int, long, java.lang.Throwable)
+	 */
+	@Override
+	public void reportTransaction(LoggerHelper helper, int event, long elapsedNanos, Throwable t) {
+		try {
+			long connKey = helper.getConnectionKey();
+			// N+1クエリの検出はトランザクション単位
+			if (event != TX_AUTOCOMMIT_OFF) {
+				nPlusOneDetector.reset(connKey);
+			}
+
+			TransactionTracker tracker = transactionTracker;
+			if (event == TX_CLOSE) {
+				tracker.close(connKey);
+				return;
+			}
+			if (transactionThreshold < 0 || !isJdbcLoggingEnabled()) return;
+
+			TransactionInfo info;
+			switch (event) {
+			case TX_COMMIT:
+				info = tracker.end(connKey, true, elapsedNanos, t);
+				break;
+			case TX_ROLLBACK:
+				info = tracker.end(connKey, false, elapsedNanos, t);
+				break;
+			default:
+				info = tracker.setAutoCommit(connKey, event == TX_AUTOCOMMIT_ON, elapsedNanos, t);
+				break;
+			}
+			if (info != null) {
+				logTransaction(info);
+			}
+		} catch (Throwable e) {
+			// ロギング処理自身による例外は発生させない
+		}
+	}
+
+	/**
+	 ********************************************
+	 * トランザクション中のSQLの実行を記録する.
+	 *
+	 * @param helper executed statement
+	 * @param elapsedNanos exec time(ns)
+	 * @param isError if failed true
+	 ********************************************
+	 */
+	private void recordTransactionStatement(LoggerHelper helper, long elapsedNanos, boolean isError) {
+		if (transactionThreshold < 0) return;
+		transactionTracker.recordStatement(helper.getConnectionKey(), helper.getConnectionId(), helper.getStartTime(),
+								elapsedNanos, isError, helper.getTemplateSql());
+	}
+
+	/**
+	 ********************************************
+	 * transactionThresholdを超えたトランザクションを出力・保持する.
+	 *
+	 * @param info finished transaction
+	 ********************************************
+	 */
+	private void logTransaction(TransactionInfo info) {
+		long threshold = transactionThreshold;
+		if (threshold < 0 || info.getElapsedMicros() < threshold * 1000L) return;
+
+		SqlTemplate template = templateOf(info.getSlowestSql());
+		if (template != null) {
+			info.setSlowestSql(template.getNormalizedSql());
+		}
+		info.setDataSource(dispUrl);
+		info.setCaller(findCaller());
+		if (transactionCount > 0) {
+			transactions.add(info);
+		}
+
+		StringBuilder buf = new StringBuilder(128);
+		buf.append("[transaction ");
+		LogLayout.appendElapsed(buf, info.getElapsedMicros() * 1000L);
+		buf.append(" ms] [").append(info.getConnectionId()).append("] ").append(info.getResult())
+			.append(String.format(" (statements: %d, db: %,.3f ms, %s: %,.3f ms, slowest: %,.3f ms)",
+					info.getStatements(), info.getDbTimeMicros() / 1000.0, info.getResult(),
+					info.getEndMicros() / 1000.0, info.getSlowestMicros() / 1000.0));
+		if (info.getSlowestSql() != null) buf.append(' ').append(info.getSlowestSql());
+		if (info.getCaller() != null) buf.append(" (at ").append(info.getCaller()).append(')');
+		if (info.isError()) {
+			warn(buf.append(" failed: ").append(info.getErrorMsg()).toString());
+		} else {
+			debug(buf.toString());
+		}
+	}
+
+	/**
+	 ********************************************
+	 * 呼び出し元のフレームを取得する.
+	 *
+	 * スタックの参照のため、実行スレッドで呼び出すこと
+	 *
+	 * @return caller frame(null if callerCapture disabled or not found)
+	 ********************************************
+	 */
+	private String findCaller() {
+		CallerFinder finder = callerFinder;
+		return finder != null ? finder.find() : null;
+	}
+
+	/**
+	 ********************************************
+	 * N+1クエリを検出する.
+	 *
+	 * 同じSQLがバインド値を変えて時間窓内にしきい値の回数
+	 * 実行された場合、1度だけ警告を出力する
+	 *
+	 * @param helper executed statement
+	 * @param template executed sql(nullable)
+	 ********************************************
+	 */
+	private void detectNPlusOne(LoggerHelper helper, SqlTemplate template) {
+		if (template == null) return;
+
+		NPlusOneDetector detector = nPlusOneDetector;
+		long spanNanos = detector.record(helper.getConnectionKey(),
+							template.getFingerprint(), helper.getBindHash(), System.nanoTime());
+		if (spanNanos < 0) return;
+
+		nPlusOneCount.increment();
+		StringBuilder buf = new StringBuilder(128);
+		buf.append("[N+1 detected] executed ").append(detector.getThreshold()).append(" times in ");
+		LogLayout.appendElapsed(buf, spanNanos);
+		buf.append(" ms [").append(helper.getConnectionId()).append("] ")
+			.append(template.getNormalizedSql());
+		String caller = findCaller();
+		if (caller != null) buf.append(" (at ").append(caller).append(')');
+		warn(buf.toString());
+	}
+
+	/**
+	 ********************************************
+	 * 実行件数・時間のカウンタを更新する.
+	 *
+	 * @param elapsedNanos exec time(ns)
+	 * @param isError if failed true
+	 ********************************************
+	 */
+	private void countExecution(long elapsedNanos, boolean isError) {
+		execCount.increment();
+		if (isError) errorCount.increment();
+		if (elapsedNanos > 0) execNanos.add(elapsedNanos);
+	}
+
+	/**
+	 ********************************************
+	 * captureThresholdを超えたクエリの詳細情報を保持する.
+	 *
+	 * スタックトレースの取得のため、実行スレッドで呼び出すこと
+	 *
+	 * @param helper executed statement
+	 * @param elapsedNanos exec time(ns)
+	 * @param t exception(null if succeeded)
+	 ********************************************
+	 */
+	private void captureSlowQuery(LoggerHelper helper, long elapsedNanos, Throwable t) {
+		long threshold = captureThreshold;
+		if (threshold < 0 || elapsedNanos < threshold * 1000000L || captureCount <= 0) return;
+
+		String sql;
+		List<String> params;
+		List<String> batchList;
+		if (helper.isExecuteBatch() && (batchList = helper.getBatchList()) != null) {
+			sql = String.join(";\n", batchList);
+			params = Collections.emptyList();
+		} else {
+			sql = helper.dumpSql();
+			params = helper.getParameters();
+		}
+		SlowQueryInfo info = new SlowQueryInfo(helper, elapsedNanos, sql, t,
+									params, StackCapture.capture(MAX_STACK_DEPTH));
+		withFingerprint(info, templateOf(helper.getTemplateSql()));
+		info.setDataSource(dispUrl);
+		info.setCaller(findCaller());
+		slowQueries.add(info);
+		capturedCount.increment();
+	}
+
+	/**
+	 ********************************************
+	 * SQL単位の統計に実行結果を記録する.
+	 *
+	 * 閾値やフィルタに関わらず、全ての実行を対象とする
+	 *
+	 * @param template executed sql(nullable)
+	 * @param elapsedNanos exec time(ns)
+	 * @param isError if failed true
+	 ********************************************
+	 */
+	private void recordStatistics(SqlTemplate template, long elapsedNanos, boolean isError) {
+		if (isStatistics && template != null) {
+			statistics.record(template, elapsedNanos, isError);
+		}
+	}
+
+	/**
+	 ********************************************
+	 * 正常終了したクエリのログ出力と履歴への追加を行う.
+	 *
+	 * 非同期時は出力スレッドから呼び出される
+	 *
+	 * @param helper executed statement(or snapshot)
+	 * @param elapsedNanos exec time(ns)
+	 * @param caller caller frame(nullable)
+	 ********************************************
+	 */
+	void logReturned(LoggerHelper helper, long elapsedNanos, String caller) {
+		LogLayout layout = getLayout();
+		String connId = helper.getConnectionId();
+		String queryId = helper.getQueryId();
+
+		List<String> batchList;
+		if (!helper.isExecuteBatch()) {
+			String sql = helper.dumpSql();
+			SqlTemplate template = templateOf(helper.getTemplateSql());
+			if (isAccept(sql, template)) {
+				if (limitLength != -1 && limitLength < sql.length()) {
+					sql = sql.substring(0, limitLength) + "...";
 				}
+				debug(layout.format(elapsedNanos, connId, queryId, sql, 0, 0, caller));
+				QueryInfo info = new QueryInfo(helper, elapsedNanos, sql, null);
+				if (helper.getFetchRows() >= 0) {
+					info.setFetchResult(helper.getFetchRows(), helper.getFetchNanos());
+				}
+				addHistory(caller, withFingerprint(info, template));
+			}
+		} else if ((batchList = helper.getBatchList()) != null) {
+			int i = 0;
+			int cnt = batchList.size();
+			for (String sql : batchList) {
+				SqlTemplate template = templateOf(helper.getTemplateSql(i));
+				i++;
+				if (isAccept(sql, template)) {
+					if (limitLength != -1 && limitLength < sql.length()) {
+						sql = sql.substring(0, limitLength) + "...";
+					}
+					debug(layout.format(elapsedNanos, connId, queryId, sql, i, cnt, caller));
+					addHistory(caller, withFingerprint(
+							new QueryInfo(helper.getStartTime(), -1L, sql, helper.getQueryId(), null), template));
+				}
+			}
+			//debug(logMsg.append("batch finished. ") + "(" + i + "/" + cnt + ")");
+		}
+	}
+
+	/**
+	 ********************************************
+	 * 例外終了したクエリのログ出力と履歴への追加を行う.
+	 *
+	 * 非同期時は出力スレッドから呼び出される
+	 *
+	 * @param helper executed statement(or snapshot)
+	 * @param elapsedNanos exec time(ns)
+	 * @param t exception
+	 * @param caller caller frame(nullable)
+	 ********************************************
+	 */
+	void logException(LoggerHelper helper, long elapsedNanos, Throwable t, String caller) {
+		LogLayout layout = getLayout();
+		String connId = helper.getConnectionId();
+		String queryId = helper.getQueryId();
 
-				// バッチ実行時は例外から処理結果を取得して出力
-				if (t instanceof BatchUpdateException) {
-					int[] ret = ((BatchUpdateException)t).getUpdateCounts();
-					List<String> list = helper.getBatchList();
-					int i = 0;
-					for (int errRet : ret) {
-						String sql = list.get(i);
-						i++;
-						if (errRet != Statement.EXECUTE_FAILED) {
-							if (isLogging(sql, -1)) {
-								if (limitLength != -1 && limitLength < sql.length()) {
-									sql = sql.substring(0, limitLength) + "...";
-								}
-								debug(logMsg + "(" + i + "/" + list.size() + ") " + sql);
-								//debug(logMsg + sql);
-							}
-							queryHistory.add(new QueryInfo(helper.getStartTime(), -1L, sql, helper.getQueryId(), null));
-						} else {
-							// エラー時は条件にかかわらず出力
-							error(logMsg + "(" + i + "/" + list.size() + ") " + sql, t);
-							queryHistory.add(new QueryInfo(helper.getStartTime(), -1L, sql, helper.getQueryId(), t));
+		// バッチ実行時は例外から処理結果を取得して出力
+		if (t instanceof BatchUpdateException) {
+			int[] ret = ((BatchUpdateException)t).getUpdateCounts();
+			List<String> list = helper.getBatchList();
+			int i = 0;
+			for (int errRet : ret) {
+				String sql = list.get(i);
+				SqlTemplate template = templateOf(helper.getTemplateSql(i));
+				i++;
+				if (errRet != Statement.EXECUTE_FAILED) {
+					if (isLogging(sql, template, -1)) {
+						if (limitLength != -1 && limitLength < sql.length()) {
+							sql = sql.substring(0, limitLength) + "...";
 						}
+						debug(layout.format(elapsedNanos, connId, queryId, sql, i, list.size(), caller));
+						//debug(logMsg + sql);
 					}
-					//debug(logMsg.append("batch finished. ") + "(" + i + "/" + list.size() + ")");
+					addHistory(caller, withFingerprint(
+							new QueryInfo(helper.getStartTime(), -1L, sql, helper.getQueryId(), null), template));
 				} else {
 					// エラー時は条件にかかわらず出力
-					String sql = helper.dumpSql();
-					error(logMsg.append(sql).toString(), t);
-					queryHistory.add(new QueryInfo(helper, sql, t));
+					error(layout.format(elapsedNanos, connId, queryId, sql, i, list.size(), caller), t);
+					addHistory(caller, withFingerprint(
+							new QueryInfo(helper.getStartTime(), -1L, sql, helper.getQueryId(), t), template));
 				}
 			}
-		} catch (Throwable e) {
+			//debug(logMsg.append("batch finished. ") + "(" + i + "/" + list.size() + ")");
+		} else {
+			// エラー時は条件にかかわらず出力
+			String sql = helper.dumpSql();
+			error(layout.format(elapsedNanos, connId, queryId, sql, 0, 0, caller), t);
+			addHistory(caller, withFingerprint(new QueryInfo(helper, elapsedNanos, sql, t),
+							templateOf(helper.getTemplateSql())));
+		}
+	}
+
+	/**
+	 ********************************************
+	 * 実行履歴に追加する.
+	 *
+	 * 保持件数を超えるものは古いものから上書きされる
+	 *
+	 * @param caller caller frame(nullable)
+	 * @param info query info
+	 ********************************************
+	 */
+	private void addHistory(String caller, QueryInfo info) {
+		if (historyCount <= 0) return;
+
+		info.setDataSource(dispUrl);
+		info.setCaller(caller);
+		queryHistory.add(info);
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#reportFetched(info.bunji.jdbc.LoggerHelper)
+	 */
+	@Override
+	public void reportFetched(LoggerHelper helper) {
+		try {
+			if (isJdbcLoggingEnabled()) {
+				// 閾値は実行とフェッチの合計時間で判定する(表示は実行時間)
+				long execNanos = helper.getExecNanos();
+				long totalNanos = helper.getFetchRows() >= 0 ? Math.max(helper.getFetchNanos(), execNanos) : execNanos;
+				emitReturned(helper, execNanos, totalNanos, null);
+			}
+		} catch (Throwable t) {
 			// ロギング処理自身による例外は発生させない
 		}
 	}
@@ -348,10 +994,36 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 		statusMap.put("timeThreshold", timeThreshold);
 		statusMap.put("acceptFilter", acceptPattern != null? acceptPattern.pattern(): null);
 		statusMap.put("ignoreFilter", ignorePattern != null? ignorePattern.pattern(): null);
+		statusMap.put("filterTarget", isNormalizedFilter ? FILTER_TARGET_NORMALIZED : FILTER_TARGET_SQL);
 		statusMap.put("historyCount", historyCount);
 		statusMap.put("format",       isFormat);
 		statusMap.put("limitLength",  limitLength);
 		statusMap.put("connectionLogging",  isConnectionLogging);
+		statusMap.put("proxyType",    isStaticProxy ? PROXY_STATIC : PROXY_REFLECT);
+		statusMap.put("fetchLogging", isFetchLogging);
+		statusMap.put("queryIdType",  isUuidQueryId ? QUERY_ID_UUID : QUERY_ID_SEQUENCE);
+		statusMap.put("sqlCacheSize", sqlCache.getMaxSize());
+		statusMap.put("sqlCacheEviction", sqlCache.getEviction());
+		statusMap.put("statistics",   isStatistics);
+		statusMap.put("statisticsMaxEntries", statistics.getMaxEntries());
+		statusMap.put("callerCapture", callerFinder != null);
+		statusMap.put("callerInclude", callerInclude);
+		statusMap.put("callerExclude", callerExclude);
+		statusMap.put("transactionThreshold", transactionThreshold);
+		statusMap.put("transactionCount", transactionCount);
+		statusMap.put("nPlusOneThreshold", nPlusOneThreshold);
+		statusMap.put("nPlusOneWindow", nPlusOneWindow);
+		statusMap.put("captureThreshold", captureThreshold);
+		statusMap.put("captureCount", captureCount);
+		QuerySampler s = sampler;
+		statusMap.put("samplingMode", s.getMode());
+		statusMap.put("samplingRatio", samplingRatio);
+		statusMap.put("samplingRate", samplingRate);
+		statusMap.put("logLayout",    customLayout != null ? customLayout.getPattern() : null);
+		statusMap.put("asyncLogging", asyncWriter != null);
+		statusMap.put("asyncQueueSize", asyncQueueSize);
+		statusMap.put("asyncOverflow", asyncOverflow);
+		statusMap.put("asyncSampleRate", asyncSampleRate);
 		//statusMap.put("lastUpdate",   lastUpdate);
 
 		return statusMap;
@@ -365,6 +1037,13 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	public boolean setSetting(Map<String,Object> settings) {
 		if (settings == null) return true;
 
+		Boolean asyncLogging = null;
+		boolean asyncChanged = false;
+		String samplingMode = sampler.getMode();
+		boolean samplingChanged = false;
+		boolean callerCapture = callerFinder != null;
+		boolean callerChanged = false;
+		boolean nPlusOneChanged = false;
 		for (Entry<String,Object> entry : settings.entrySet()) {
 			String key = entry.getKey();
 			Object value = entry.getValue();
@@ -374,10 +1053,13 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 				} else if (key.equalsIgnoreCase("historyCount")) {
 					int val = Integer.parseInt(value.toString());
 					historyCount = (val >= 0 ? val : 0);
+					queryHistory.resize(historyCount);
 				} else if (key.equalsIgnoreCase("acceptFilter")) {
 					setAcceptFilter((String)value);
 				} else if (key.equalsIgnoreCase("ignoreFilter")) {
 					setIgnoreFilter((String)value);
+				} else if (key.equalsIgnoreCase("filterTarget")) {
+					setFilterTarget(value.toString());
 				} else if (key.equalsIgnoreCase("format")) {
 					isFormat = Boolean.valueOf(value.toString());
 				} else if (key.equalsIgnoreCase("limitLength")) {
@@ -385,6 +1067,96 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 					limitLength = (val > 0 ? val : -1);
 				} else if (key.equalsIgnoreCase("connectionLogging")) {
 					isConnectionLogging = Boolean.valueOf(value.toString());
+				} else if (key.equalsIgnoreCase("proxyType")) {
+					setProxyType(value.toString());
+				} else if (key.equalsIgnoreCase("queryIdType")) {
+					setQueryIdType(value.toString());
+				} else if (key.equalsIgnoreCase("fetchLogging")) {
+					isFetchLogging = Boolean.valueOf(value.toString());
+				} else if (key.equalsIgnoreCase("sqlCacheSize")) {
+					sqlCache.configure(Integer.parseInt(value.toString()), sqlCache.getEviction());
+				} else if (key.equalsIgnoreCase("sqlCacheEviction")) {
+					sqlCache.configure(sqlCache.getMaxSize(), value.toString());
+				} else if (key.equalsIgnoreCase("statistics")) {
+					isStatistics = Boolean.valueOf(value.toString());
+				} else if (key.equalsIgnoreCase("statisticsMaxEntries")) {
+					statistics.setMaxEntries(Integer.parseInt(value.toString()));
+				} else if (key.equalsIgnoreCase("callerCapture")) {
+					boolean val = Boolean.valueOf(value.toString());
+					callerChanged |= (val != callerCapture);
+					callerCapture = val;
+				} else if (key.equalsIgnoreCase("callerInclude")) {
+					callerInclude = (value == null || value.toString().trim().isEmpty()) ? null : value.toString();
+					callerChanged = true;
+				} else if (key.equalsIgnoreCase("callerExclude")) {
+					callerExclude = (value == null || value.toString().trim().isEmpty()) ? null : value.toString();
+					callerChanged = true;
+				} else if (key.equalsIgnoreCase("transactionThreshold")) {
+					long val = Long.parseLong(value.toString());
+					val = (val >= 0 ? val : -1L);
+					// 再開時は停止中の状態を破棄する
+					if (transactionThreshold < 0 && val >= 0) {
+						transactionTracker = new TransactionTracker();
+					}
+					transactionThreshold = val;
+				} else if (key.equalsIgnoreCase("transactionCount")) {
+					int val = Integer.parseInt(value.toString());
+					transactionCount = (val >= 0 ? val : 0);
+					transactions.resize(transactionCount);
+				} else if (key.equalsIgnoreCase("nPlusOneThreshold")) {
+					// 初回の実行を含むため2回以上
+					int val = Integer.parseInt(value.toString());
+					val = (val > 0 ? Math.max(val, 2) : -1);
+					nPlusOneChanged |= (val != nPlusOneThreshold);
+					nPlusOneThreshold = val;
+				} else if (key.equalsIgnoreCase("nPlusOneWindow")) {
+					long val = Math.max(Long.parseLong(value.toString()), 1L);
+					nPlusOneChanged |= (val != nPlusOneWindow);
+					nPlusOneWindow = val;
+				} else if (key.equalsIgnoreCase("captureThreshold")) {
+					long val = Long.parseLong(value.toString());
+					captureThreshold = (val >= 0 ? val : -1L);
+				} else if (key.equalsIgnoreCase("captureCount")) {
+					int val = Integer.parseInt(value.toString());
+					captureCount = (val >= 0 ? val : 0);
+					slowQueries.resize(captureCount);
+				} else if (key.equalsIgnoreCase("samplingMode")) {
+					String val = value.toString().toLowerCase();
+					if (!QuerySampler.isValidMode(val)) {
+						throw new IllegalArgumentException("unknown samplingMode.");
+					}
+					samplingChanged |= !val.equals(samplingMode);
+					samplingMode = val;
+				} else if (key.equalsIgnoreCase("samplingRatio")) {
+					int val = Math.max(Integer.parseInt(value.toString()), 1);
+					samplingChanged |= (val != samplingRatio);
+					samplingRatio = val;
+				} else if (key.equalsIgnoreCase("samplingRate")) {
+					int val = Math.max(Integer.parseInt(value.toString()), 1);
+					samplingChanged |= (val != samplingRate);
+					samplingRate = val;
+				} else if (key.equalsIgnoreCase("logLayout")) {
+					customLayout = (value == null || value.toString().isEmpty()) ? null : new LogLayout(value.toString());
+				} else if (key.equalsIgnoreCase("asyncLogging")) {
+					asyncLogging = Boolean.valueOf(value.toString());
+				} else if (key.equalsIgnoreCase("asyncQueueSize")) {
+					int val = Integer.parseInt(value.toString());
+					if (val <= 0) throw new IllegalArgumentException("asyncQueueSize must be positive.");
+					asyncChanged |= (val != asyncQueueSize);
+					asyncQueueSize = val;
+				} else if (key.equalsIgnoreCase("asyncOverflow")) {
+					String val = value.toString().toLowerCase();
+					if (!val.equals(AsyncLogWriter.OVERFLOW_DROP)
+							&& !val.equals(AsyncLogWriter.OVERFLOW_BLOCK)
+							&& !val.equals(AsyncLogWriter.OVERFLOW_SAMPLE)) {
+						throw new IllegalArgumentException("unknown asyncOverflow.");
+					}
+					asyncChanged |= !val.equals(asyncOverflow);
+					asyncOverflow = val;
+				} else if (key.equalsIgnoreCase("asyncSampleRate")) {
+					int val = Math.max(Integer.parseInt(value.toString()), 1);
+					asyncChanged |= (val != asyncSampleRate);
+					asyncSampleRate = val;
 				}
 			} catch (Exception e) {
 				System.out.println(String.format("[%s=%s] setting error.(%s)",
@@ -392,9 +1164,168 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 				return false;
 			}
 		}
+		if (callerChanged) {
+			callerFinder = callerCapture ? new CallerFinder(callerInclude, callerExclude) : null;
+		}
+		if (nPlusOneChanged) {
+			nPlusOneDetector = new NPlusOneDetector(nPlusOneThreshold, nPlusOneWindow);
+		}
+		if (samplingChanged) {
+			sampler = new QuerySampler(samplingMode, samplingRatio, samplingRate);
+		}
+		setAsyncLogging(asyncLogging != null ? asyncLogging : asyncWriter != null, asyncChanged);
+		settingVersion.incrementAndGet();
 		return true;
 	}
 
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#getSettingVersion()
+	 */
+	@Override
+	public long getSettingVersion() {
+		return settingVersion.get();
+	}
+
+	/**
+	 ********************************************
+	 * 非同期ロギングの開始・停止を行う.
+	 *
+	 * 設定が変更された場合はライターを作り直す(残りのイベントは出力してから停止)
+	 *
+	 * @param enabled async logging enabled
+	 * @param changed queue settings changed
+	 ********************************************
+	 */
+	private synchronized void setAsyncLogging(boolean enabled, boolean changed) {
+		AsyncLogWriter current = asyncWriter;
+		if (current != null && (!enabled || changed)) {
+			// 停止中の登録は同期出力に切り替わる
+			asyncWriter = null;
+			current.stop();
+			current = null;
+		}
+		if (enabled && current == null) {
+			AsyncLogWriter writer = new AsyncLogWriter(this, asyncQueueSize, asyncOverflow, asyncSampleRate);
+			writer.start();
+			asyncWriter = writer;
+		}
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#getStatus()
+	 */
+	@Override
+	public Map<String,Object> getStatus() {
+		Map<String,Object> statusMap = new LinkedHashMap<String,Object>();
+
+		statusMap.put("executions",        execCount.sum());
+		statusMap.put("errors",            errorCount.sum());
+		statusMap.put("totalElapsed",      (execNanos.sum() / 1000L) / 1000.0);
+		statusMap.put("captured",          capturedCount.sum());
+		statusMap.put("sqlCacheEntries",   sqlCache.size());
+		statusMap.put("sqlCacheHit",       sqlCache.getHitCount());
+		statusMap.put("sqlCacheMiss",      sqlCache.getMissCount());
+		statusMap.put("sqlCacheEvicted",   sqlCache.getEvictionCount());
+		statusMap.put("statisticsEntries", statistics.size());
+		statusMap.put("nPlusOneDetected",  nPlusOneCount.sum());
+
+		if (transactionThreshold >= 0) {
+			TransactionTracker tracker = transactionTracker;
+			statusMap.put("transactionsActive",    tracker.getActiveCount());
+			statusMap.put("transactionsCommitted", tracker.getCommitCount());
+			statusMap.put("transactionsRolledBack", tracker.getRollbackCount());
+			statusMap.put("commitP50",             tracker.getCommitLatency(50.0));
+			statusMap.put("commitP99",             tracker.getCommitLatency(99.0));
+		}
+
+		QuerySampler s = sampler;
+		if (s.isEnabled()) {
+			statusMap.put("samplingKept",    s.getKeptCount());
+			statusMap.put("samplingSkipped", s.getSkippedCount());
+		}
+
+		AsyncLogWriter writer = asyncWriter;
+		if (writer != null) {
+			statusMap.put("asyncQueueDepth",     writer.getQueueDepth());
+			statusMap.put("asyncQueueCapacity",  writer.getQueueCapacity());
+			statusMap.put("asyncPublished",      writer.getPublishedCount());
+			statusMap.put("asyncDropped",        writer.getDroppedCount());
+			statusMap.put("asyncSampledOut",     writer.getSampledOutCount());
+		}
+
+		return statusMap;
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#getStatistics()
+	 */
+	@Override
+	public List<Map<String,Object>> getStatistics() {
+		return statistics.snapshot();
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#clearStatistics()
+	 */
+	@Override
+	public void clearStatistics() {
+		statistics.clear();
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#getSlowQueries()
+	 */
+	@Override
+	public List<SlowQueryInfo> getSlowQueries() {
+		List<SlowQueryInfo> list = new ArrayList<SlowQueryInfo>();
+		for (SlowQueryInfo qi : slowQueries.snapshot()) {
+			if (isFormat) {
+				qi = qi.clone();
+				qi.setSql(FormatUtils.formatSql(qi.getSql()));
+			}
+			// 新しいものから返す
+			list.add(0, qi);
+		}
+		return list;
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#clearSlowQueries()
+	 */
+	@Override
+	public void clearSlowQueries() {
+		slowQueries.clear();
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#getTransactions()
+	 */
+	@Override
+	public List<TransactionInfo> getTransactions() {
+		List<TransactionInfo> list = new ArrayList<TransactionInfo>();
+		for (TransactionInfo info : transactions.snapshot()) {
+			// 新しいものから返す
+			list.add(0, info.clone());
+		}
+		return list;
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.JdbcLogger#clearTransactions()
+	 */
+	@Override
+	public void clearTransactions() {
+		transactions.clear();
+	}
+
 	/*
 	 * (非 Javadoc)
 	 * @see info.bunji.jdbc.logger.JdbcLogger#getRunningQueries()
@@ -402,14 +1333,13 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	@Override
 	public List<QueryInfo> getRunningQueries() {
 		List<QueryInfo> activeQueries = new ArrayList<QueryInfo>();
-		synchronized (activeStatements) {
-			for (LoggerHelper helper : activeStatements) {
-				QueryInfo qi = new QueryInfo(helper,
-							isFormat ? FormatUtils.formatSql(helper.dumpSql()) : helper.dumpSql(),
-							null);
-				qi.setDataSource(dispUrl);
-				activeQueries.add(qi);
-			}
+		// 弱い整合性のイテレータで参照する(ロックしない)
+		for (LoggerHelper helper : activeStatements.values()) {
+			QueryInfo qi = new QueryInfo(helper,
+						isFormat ? FormatUtils.formatSql(helper.dumpSql()) : helper.dumpSql(),
+						null);
+			qi.setDataSource(dispUrl);
+			activeQueries.add(withFingerprint(qi, templateOf(helper.getTemplateSql())));
 		}
 		return activeQueries;
 	}
@@ -422,15 +1352,13 @@ public abstract class AbstractJdbcLogger implements JdbcLogger {
 	public List<QueryInfo> getHistory() {
 		Set<QueryInfo> tmpList = new TreeSet<QueryInfo>();
 		if (isFormat) {
-			synchronized (queryHistory) {
-				for (QueryInfo qi : queryHistory) {
-					QueryInfo tmpQi = qi.clone();
-					tmpQi.setSql(FormatUtils.formatSql(qi.getSql()));
-					tmpList.add(tmpQi);
-				}
+			for (QueryInfo qi : queryHistory.snapshot()) {
+				QueryInfo tmpQi = qi.clone();
+				tmpQi.setSql(FormatUtils.formatSql(qi.getSql()));
+				tmpList.add(tmpQi);
 			}
 		} else {
-			tmpList.addAll(queryHistory);
+			tmpList.addAll(queryHistory.snapshot());
 		}
 		return new ArrayList<QueryInfo>(tmpList);
 	}
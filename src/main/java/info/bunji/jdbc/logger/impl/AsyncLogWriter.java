@@ -0,0 +1,310 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import info.bunji.jdbc.LoggerHelper;
+import info.bunji.jdbc.util.MpscQueue;
+
+/**
+ **********************************************************
+ * 非同期ロギング用のライター.
+ * <pre>
+ * JDBC呼び出しスレッドは実行状態のスナップショットをキューに登録するのみとし、
+ * SQLの生成・整形、ログ出力、履歴への追加はバックグラウンドスレッドで行う。
+ * キューが溢れた場合の動作はoverflowポリシーで指定する。
+ *   drop   : 登録できないイベントは破棄する
+ *   block  : 空きができるまで呼び出しスレッドを待機させる
+ *   sample : キューが半分以上埋まっている場合はN件に1件のみ登録する
+ *            (エラーは間引かない。満杯の場合は破棄する)
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+class AsyncLogWriter implements Runnable {
+
+	/** overflow:破棄 */
+	static final String OVERFLOW_DROP = "drop";
+
+	/** overflow:待機 */
+	static final String OVERFLOW_BLOCK = "block";
+
+	/** overflow:間引き */
+	static final String OVERFLOW_SAMPLE = "sample";
+
+	/** キューが空の場合の最大待機時間 */
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/** block時の待機時間 */
+	private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	/** 停止時の待機時間(ms) */
+	private static final long STOP_TIMEOUT = 5000L;
+
+	private final AbstractJdbcLogger logger;
+
+	private final MpscQueue<LogEvent> queue;
+
+	private final String overflow;
+
+	private final int sampleRate;
+
+	private final Thread worker;
+
+	private final Thread shutdownHook;
+
+	private volatile boolean running = true;
+
+	/** 消費者スレッドが待機中か */
+	private volatile boolean sleeping = false;
+
+	/** sample時の登録判定用カウンタ */
+	private final AtomicLong sampleCounter = new AtomicLong();
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder sampledOut = new LongAdder();
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param logger output logger
+	 * @param queueSize queue capacity
+	 * @param overflow overflow policy("drop", "block" or "sample")
+	 * @param sampleRate sampling rate(1 in N) for "sample" policy
+	 **********************************************
+	 */
+	AsyncLogWriter(AbstractJdbcLogger logger, int queueSize, String overflow, int sampleRate) {
+		if (!OVERFLOW_DROP.equalsIgnoreCase(overflow)
+				&& !OVERFLOW_BLOCK.equalsIgnoreCase(overflow)
+				&& !OVERFLOW_SAMPLE.equalsIgnoreCase(overflow)) {
+			throw new IllegalArgumentException("unknown asyncOverflow.");
+		}
+		this.logger = logger;
+		this.queue = new MpscQueue<LogEvent>(queueSize);
+		this.overflow = overflow.toLowerCase();
+		this.sampleRate = Math.max(sampleRate, 1);
+
+		worker = new Thread(this, "log4jdbcex-async-" + logger.getDispUrl());
+		worker.setDaemon(true);
+		shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stop();
+			}
+		});
+	}
+
+	/**
+	 **********************************************
+	 * 出力スレッドを開始する.
+	 **********************************************
+	 */
+	void start() {
+		worker.start();
+		try {
+			// 終了時に未出力のイベントを出力する
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+		} catch (Exception e) {
+			// do nothing.
+		}
+	}
+
+	/**
+	 **********************************************
+	 * 出力スレッドを停止する.
+	 *
+	 * キューに残っているイベントは出力してから終了する
+	 **********************************************
+	 */
+	void stop() {
+		running = false;
+		LockSupport.unpark(worker);
+		if (Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (Exception e) {
+				// シャットダウン中は削除できない
+			}
+		}
+		try {
+			worker.join(STOP_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 **********************************************
+	 * イベントを登録する.
+	 *
+	 * @param helper execution snapshot
+	 * @param t exception(null if succeeded)
+	 * @return if accepted(queued or discarded by policy) true,
+	 *          writer stopped false
+	 **********************************************
+	 */
+	boolean publish(LoggerHelper helper, Throwable t) {
+		return publish(helper, t, null);
+	}
+
+	/**
+	 **********************************************
+	 * イベントを登録する(呼び出し元付き).
+	 *
+	 * @param helper execution snapshot
+	 * @param t exception(null if succeeded)
+	 * @param caller caller frame(nullable)
+	 * @return if accepted(queued or discarded by policy) true,
+	 *          writer stopped false
+	 **********************************************
+	 */
+	boolean publish(LoggerHelper helper, Throwable t, String caller) {
+		if (!running) return false;
+
+		if (OVERFLOW_SAMPLE.equals(overflow) && t == null
+				&& queue.size() >= queue.capacity() / 2
+				&& sampleCounter.getAndIncrement() % sampleRate != 0) {
+			sampledOut.increment();
+			return true;
+		}
+
+		LogEvent event = new LogEvent(helper, t, caller);
+		while (!queue.offer(event)) {
+			if (!OVERFLOW_BLOCK.equals(overflow)) {
+				dropped.increment();
+				return true;
+			}
+			if (!running) return false;
+			wakeup();
+			LockSupport.parkNanos(BLOCK_PARK_NANOS);
+		}
+		published.increment();
+		wakeup();
+		return true;
+	}
+
+	/**
+	 **********************************************
+	 * キューが空になるまで待機する.
+	 *
+	 * @param timeoutMillis max wait time(ms)
+	 * @return if queue is empty true
+	 **********************************************
+	 */
+	boolean awaitEmpty(long timeoutMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (!queue.isEmpty() || (!sleeping && worker.isAlive())) {
+			if (System.nanoTime() - deadline > 0) return false;
+			wakeup();
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		return queue.isEmpty();
+	}
+
+	private void wakeup() {
+		if (sleeping) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			LogEvent event = queue.poll();
+			if (event != null) {
+				write(event);
+				continue;
+			}
+			if (!running) {
+				// 停止要求後は登録途中のものを含めて出力し終えてから終了
+				if (queue.isEmpty()) break;
+				Thread.yield();
+				continue;
+			}
+			sleeping = true;
+			if (queue.isEmpty() && running) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+			sleeping = false;
+		}
+	}
+
+	private void write(LogEvent event) {
+		try {
+			if (event.t == null) {
+				logger.logReturned(event.helper, event.helper.getElapsedNanos(), event.caller);
+			} else {
+				logger.logException(event.helper, event.helper.getElapsedNanos(), event.t, event.caller);
+			}
+		} catch (Throwable t) {
+			// ロギング処理自身による例外は発生させない
+		}
+	}
+
+	long getQueueDepth() {
+		return queue.size();
+	}
+
+	int getQueueCapacity() {
+		return queue.capacity();
+	}
+
+	long getPublishedCount() {
+		return published.sum();
+	}
+
+	long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	long getSampledOutCount() {
+		return sampledOut.sum();
+	}
+
+	String getOverflow() {
+		return overflow;
+	}
+
+	int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 ********************************************
+	 * キューに登録するイベント.
+	 ********************************************
+	 */
+	private static final class LogEvent {
+		private final LoggerHelper helper;
+		private final Throwable t;
+		private final String caller;
+
+		private LogEvent(LoggerHelper helper, Throwable t, String caller) {
+			this.helper = helper;
+			this.t = t;
+			this.caller = caller;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ **********************************************************
+ * JDBCを呼び出したアプリケーションのフレームを取得する.
+ * <pre>
+ * 本ライブラリ内部のフレームと除外パッケージ(JDK、コネクションプール、
+ * ORMなどのフレームワーク)を読み飛ばし、最初のアプリケーションのフレームを
+ * "クラス名.メソッド名(ファイル名:行番号)"の形式で返す。
+ * 対象パッケージ(include)が指定された場合は、それに一致するもののみを対象とする。
+ *
+ * Java9以降はStackWalkerで必要なフレームまでのみを参照し、
+ * それ以前はThrowableのスタックトレースを利用する。
+ * StackWalkerのメソッドはクラスの初期化時にMethodHandleとして解決する。
+ * クラス毎の判定結果と呼び出し箇所(クラス名・メソッド名・行番号)毎の
+ * 文字列はキャッシュし、StackTraceElementは初回のみ生成する。
+ * インスタンスは不変(キャッシュを除く)のため、設定変更時は作り直すこと。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class CallerFinder {
+
+	/** デフォルトの除外パッケージ */
+	static final String DEFAULT_EXCLUDE = "java.,javax.,jakarta.,sun.,com.sun.,jdk.,"
+			+ "org.apache.commons.dbcp,org.apache.tomcat.,com.zaxxer.hikari.,com.mchange.,"
+			+ "org.springframework.,org.hibernate.,org.apache.ibatis.,org.mybatis.";
+
+	/** キャッシュの最大件数(超えた場合は破棄する) */
+	private static final int MAX_CACHE_SIZE = 8192;
+
+	/** StackWalker.walk(Java9以降のみ、インスタンスに束縛済み) */
+	private static final MethodHandle WALK;
+	/** StackFrameの各メソッド(引数はObjectに変換済み) */
+	private static final MethodHandle GET_CLASS_NAME;
+	private static final MethodHandle GET_METHOD_NAME;
+	private static final MethodHandle GET_LINE_NUMBER;
+	private static final MethodHandle TO_STACK_TRACE_ELEMENT;
+
+	static {
+		MethodHandle walk = null;
+		MethodHandle getClassName = null;
+		MethodHandle getMethodName = null;
+		MethodHandle getLineNumber = null;
+		MethodHandle toElement = null;
+		try {
+			// walkは呼び出し元を参照するメソッドのため、publicLookup()は利用できない
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+			Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+			Object walker = lookup.findStatic(walkerClass, "getInstance", MethodType.methodType(walkerClass)).invoke();
+			walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+						.bindTo(walker);
+			getClassName = frameMethod(lookup, frameClass, "getClassName", String.class);
+			getMethodName = frameMethod(lookup, frameClass, "getMethodName", String.class);
+			getLineNumber = frameMethod(lookup, frameClass, "getLineNumber", int.class);
+			toElement = frameMethod(lookup, frameClass, "toStackTraceElement", StackTraceElement.class);
+		} catch (Throwable t) {
+			// Java8以前
+			walk = null;
+		}
+		WALK = walk;
+		GET_CLASS_NAME = getClassName;
+		GET_METHOD_NAME = getMethodName;
+		GET_LINE_NUMBER = getLineNumber;
+		TO_STACK_TRACE_ELEMENT = toElement;
+	}
+
+	private static MethodHandle frameMethod(MethodHandles.Lookup lookup, Class<?> frameClass,
+			String name, Class<?> returnType) throws ReflectiveOperationException {
+		return lookup.findVirtual(frameClass, name, MethodType.methodType(returnType))
+					.asType(MethodType.methodType(returnType, Object.class));
+	}
+
+	private final String[] includes;
+
+	private final String[] excludes;
+
+	/** クラス毎の判定結果(trueはアプリケーションのクラス) */
+	private final ConcurrentMap<String, Boolean> classCache = new ConcurrentHashMap<String, Boolean>();
+
+	/** 呼び出し箇所毎の文字列 */
+	private final ConcurrentMap<FrameKey, String> frameCache = new ConcurrentHashMap<FrameKey, String>();
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param include target packages(comma separated, nullable)
+	 * @param exclude excluded packages(comma separated, nullable)
+	 **********************************************
+	 */
+	CallerFinder(String include, String exclude) {
+		this.includes = split(include);
+		this.excludes = split(exclude);
+	}
+
+	private static String[] split(String value) {
+		if (value == null) return new String[0];
+		List<String> list = new ArrayList<String>();
+		for (String s : value.split(",")) {
+			s = s.trim();
+			if (!s.isEmpty()) list.add(s);
+		}
+		return list.toArray(new String[list.size()]);
+	}
+
+	String getInclude() {
+		return includes.length > 0 ? String.join(",", includes) : null;
+	}
+
+	String getExclude() {
+		return excludes.length > 0 ? String.join(",", excludes) : null;
+	}
+
+	static boolean isStackWalkerAvailable() {
+		return WALK != null;
+	}
+
+	/**
+	 **********************************************
+	 * 呼び出し元のフレームを取得する.
+	 *
+	 * @return caller frame, or null if not found
+	 **********************************************
+	 */
+	String find() {
+		if (WALK != null) {
+			return walk();
+		}
+		for (StackTraceElement e : new Throwable().getStackTrace()) {
+			if (isApplication(e.getClassName())) {
+				FrameKey key = new FrameKey(e.getClassName(), e.getMethodName(), e.getLineNumber());
+				String text = frameCache.get(key);
+				if (text == null) {
+					text = cacheText(key, e);
+				}
+				return text;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * StackWalkerで最初のアプリケーションのフレームまでを参照する.
+	 */
+	private String walk() {
+		try {
+			Function<Stream<Object>, Object> fn = s -> s.filter(f -> {
+					String className = classNameOf(f);
+					return className != null && isApplication(className);
+				}).findFirst().orElse(null);
+			Object frame = (Object) WALK.invokeExact(fn);
+			if (frame == null) return null;
+
+			FrameKey key = new FrameKey((String) GET_CLASS_NAME.invokeExact(frame),
+								(String) GET_METHOD_NAME.invokeExact(frame),
+								(int) GET_LINE_NUMBER.invokeExact(frame));
+			String text = frameCache.get(key);
+			if (text == null) {
+				// 初回のみStackTraceElementを生成する
+				text = cacheText(key, (StackTraceElement) TO_STACK_TRACE_ELEMENT.invokeExact(frame));
+			}
+			return text;
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	private static String classNameOf(Object frame) {
+		try {
+			return (String) GET_CLASS_NAME.invokeExact(frame);
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	private String cacheText(FrameKey key, StackTraceElement frame) {
+		if (frameCache.size() >= MAX_CACHE_SIZE) frameCache.clear();
+		String text = frame.toString();
+		frameCache.put(key, text);
+		return text;
+	}
+
+	/**
+	 **********************************************
+	 * アプリケーションのクラスかを判定する.
+	 *
+	 * @param className class name
+	 * @return if application class true
+	 **********************************************
+	 */
+	boolean isApplication(String className) {
+		Boolean ret = classCache.get(className);
+		if (ret == null) {
+			if (classCache.size() >= MAX_CACHE_SIZE) classCache.clear();
+			ret = !StackCapture.isInternal(className)
+					&& (includes.length == 0 || matches(className, includes))
+					&& !matches(className, excludes);
+			classCache.put(className, ret);
+		}
+		return ret;
+	}
+
+	private static boolean matches(String className, String[] packages) {
+		for (String pkg : packages) {
+			if (className.startsWith(pkg)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 呼び出し箇所のキー
+	 */
+	private static final class FrameKey {
+		private final String className;
+		private final String methodName;
+		private final int lineNumber;
+
+		private FrameKey(String className, String methodName, int lineNumber) {
+			this.className = className;
+			this.methodName = methodName;
+			this.lineNumber = lineNumber;
+		}
+
+		@Override
+		public int hashCode() {
+			return (className.hashCode() * 31 + methodName.hashCode()) * 31 + lineNumber;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof FrameKey)) return false;
+			FrameKey other = (FrameKey) obj;
+			return lineNumber == other.lineNumber
+					&& className.equals(other.className)
+					&& methodName.equals(other.methodName);
+		}
+	}
+}
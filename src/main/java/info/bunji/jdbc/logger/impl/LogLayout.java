@@ -0,0 +1,266 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ **********************************************************
+ * 解析済みのログ出力レイアウト.
+ * <pre>
+ * レイアウト文字列は生成時に一度だけ解析し、出力時はスレッド毎に再利用する
+ * StringBuilderに直接書き込む(String.formatは利用しない)。
+ * 利用可能なプレースホルダは以下
+ *   {elapsed} : 実行時間(ms、"%,8.3f"相当)
+ *   {connId}  : コネクションID
+ *   {queryId} : クエリID
+ *   {sql}     : 実行SQL(バッチ時は"(n/件数) "を先頭に付与)
+ *   {caller}  : 呼び出し元(callerCapture有効時のみ、取得できない場合は空)
+ * 上記以外の"{...}"はそのまま出力する。
+ * {caller}を含まないレイアウトで呼び出し元を取得した場合は、末尾に" (at 呼び出し元)"を付与する。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class LogLayout {
+
+	/** デフォルトのレイアウト */
+	static final String DEFAULT_LAYOUT = "[executed {elapsed} ms] {sql}";
+
+	/** デフォルトのレイアウト(コネクションID付き) */
+	static final String DEFAULT_LAYOUT_WITH_CONN = "[executed {elapsed} ms] [{connId}] {sql}";
+
+	private static final int TOKEN_LITERAL = 0;
+	private static final int TOKEN_ELAPSED = 1;
+	private static final int TOKEN_CONN_ID = 2;
+	private static final int TOKEN_QUERY_ID = 3;
+	private static final int TOKEN_SQL = 4;
+	private static final int TOKEN_CALLER = 5;
+
+	/** 再利用するバッファの最大サイズ(これを超えた場合は破棄する) */
+	private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+	/** 出力用のバッファ(スレッド毎に再利用) */
+	private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	private final String pattern;
+
+	private final int[] tokens;
+
+	private final String[] literals;
+
+	/** {caller}を含むか */
+	private final boolean hasCaller;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param pattern layout pattern
+	 **********************************************
+	 */
+	LogLayout(String pattern) {
+		this.pattern = pattern;
+
+		List<Integer> tokenList = new ArrayList<Integer>();
+		List<String> literalList = new ArrayList<String>();
+		StringBuilder literal = new StringBuilder();
+		int pos = 0;
+		while (pos < pattern.length()) {
+			int start = pattern.indexOf('{', pos);
+			int end = start != -1 ? pattern.indexOf('}', start) : -1;
+			if (start == -1 || end == -1) {
+				literal.append(pattern, pos, pattern.length());
+				break;
+			}
+			literal.append(pattern, pos, start);
+			int type = resolve(pattern.substring(start + 1, end));
+			if (type == TOKEN_LITERAL) {
+				// 未知のプレースホルダは文字列として扱う
+				literal.append(pattern, start, end + 1);
+			} else {
+				if (literal.length() > 0) {
+					tokenList.add(TOKEN_LITERAL);
+					literalList.add(literal.toString());
+					literal.setLength(0);
+				}
+				tokenList.add(type);
+				literalList.add(null);
+			}
+			pos = end + 1;
+		}
+		if (literal.length() > 0) {
+			tokenList.add(TOKEN_LITERAL);
+			literalList.add(literal.toString());
+		}
+
+		tokens = new int[tokenList.size()];
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = tokenList.get(i);
+		}
+		literals = literalList.toArray(new String[literalList.size()]);
+		hasCaller = tokenList.contains(TOKEN_CALLER);
+	}
+
+	private static int resolve(String name) {
+		if (name.equals("elapsed")) return TOKEN_ELAPSED;
+		if (name.equals("connId")) return TOKEN_CONN_ID;
+		if (name.equals("queryId")) return TOKEN_QUERY_ID;
+		if (name.equals("sql")) return TOKEN_SQL;
+		if (name.equals("caller")) return TOKEN_CALLER;
+		return TOKEN_LITERAL;
+	}
+
+	String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 **********************************************
+	 * ログメッセージを生成する.
+	 *
+	 * @param elapsedNanos exec time(ns)
+	 * @param connId connection id
+	 * @param queryId query id
+	 * @param sql execute sql
+	 * @return log message
+	 **********************************************
+	 */
+	String format(long elapsedNanos, String connId, String queryId, String sql) {
+		return format(elapsedNanos, connId, queryId, sql, 0, 0);
+	}
+
+	/**
+	 **********************************************
+	 * ログメッセージを生成する(バッチ用).
+	 *
+	 * @param elapsedNanos exec time(ns)
+	 * @param connId connection id
+	 * @param queryId query id
+	 * @param sql execute sql
+	 * @param batchIndex batch index(1 origin, 0 if not batch)
+	 * @param batchCount batch size
+	 * @return log message
+	 **********************************************
+	 */
+	String format(long elapsedNanos, String connId, String queryId, String sql, int batchIndex, int batchCount) {
+		return format(elapsedNanos, connId, queryId, sql, batchIndex, batchCount, null);
+	}
+
+	/**
+	 **********************************************
+	 * ログメッセージを生成する(呼び出し元付き).
+	 *
+	 * @param elapsedNanos exec time(ns)
+	 * @param connId connection id
+	 * @param queryId query id
+	 * @param sql execute sql
+	 * @param batchIndex batch index(1 origin, 0 if not batch)
+	 * @param batchCount batch size
+	 * @param caller caller frame(nullable)
+	 * @return log message
+	 **********************************************
+	 */
+	String format(long elapsedNanos, String connId, String queryId, String sql,
+					int batchIndex, int batchCount, String caller) {
+		StringBuilder buf = BUFFER.get();
+		buf.setLength(0);
+		for (int i = 0; i < tokens.length; i++) {
+			switch (tokens[i]) {
+			case TOKEN_ELAPSED:
+				appendElapsed(buf, elapsedNanos);
+				break;
+			case TOKEN_CONN_ID:
+				buf.append(connId);
+				break;
+			case TOKEN_QUERY_ID:
+				buf.append(queryId);
+				break;
+			case TOKEN_SQL:
+				if (batchIndex > 0) {
+					buf.append('(').append(batchIndex).append('/').append(batchCount).append(") ");
+				}
+				buf.append(sql);
+				break;
+			case TOKEN_CALLER:
+				if (caller != null) buf.append(caller);
+				break;
+			default:
+				buf.append(literals[i]);
+				break;
+			}
+		}
+		if (caller != null && !hasCaller) {
+			buf.append(" (at ").append(caller).append(')');
+		}
+		String msg = buf.toString();
+		if (buf.capacity() > MAX_BUFFER_SIZE) {
+			// 巨大なSQLで拡張されたバッファは保持しない
+			BUFFER.remove();
+		}
+		return msg;
+	}
+
+	/**
+	 **********************************************
+	 * 実行時間をミリ秒で出力する.
+	 *
+	 * String.format("%,8.3f")と同等の書式(桁区切りは常に",")
+	 *
+	 * @param buf output buffer
+	 * @param elapsedNanos exec time(ns)
+	 **********************************************
+	 */
+	static void appendElapsed(StringBuilder buf, long elapsedNanos) {
+		boolean negative = elapsedNanos < 0;
+		// マイクロ秒に四捨五入
+		long micros = (Math.abs(elapsedNanos) + 500L) / 1000L;
+		long millis = micros / 1000L;
+		int fraction = (int) (micros % 1000L);
+
+		int start = buf.length();
+		if (negative) buf.append('-');
+		appendGrouped(buf, millis);
+		buf.append('.');
+		if (fraction < 100) buf.append('0');
+		if (fraction < 10) buf.append('0');
+		buf.append(fraction);
+
+		// 8桁に右寄せ
+		int len = buf.length() - start;
+		for (int i = len; i < 8; i++) {
+			buf.insert(start, ' ');
+		}
+	}
+
+	private static void appendGrouped(StringBuilder buf, long value) {
+		if (value < 1000L) {
+			buf.append(value);
+			return;
+		}
+		appendGrouped(buf, value / 1000L);
+		int rest = (int) (value % 1000L);
+		buf.append(',');
+		if (rest < 100) buf.append('0');
+		if (rest < 10) buf.append('0');
+		buf.append(rest);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ **********************************************************
+ * N+1クエリの検出.
+ * <pre>
+ * コネクション毎に、同じSQL(fingerprint)がバインド値を変えて
+ * 一定時間(window)内に繰り返し実行された回数を数え、
+ * しきい値に達した時点で1度だけ検出として通知する。
+ * 時間窓は最初の実行から計測し、経過後の実行で新たな窓を開始する。
+ * コネクション単位の状態はトランザクションの終了時にリセットする。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class NPlusOneDetector {
+
+	/** 状態を保持するコネクションの最大数(超えた場合は破棄する) */
+	private static final int MAX_CONNECTIONS = 4096;
+
+	/** コネクション毎に保持するSQLの最大数(古いものから破棄する) */
+	private static final int MAX_PATTERNS = 64;
+
+	/** 検出する実行回数(0以下は無効) */
+	private final int threshold;
+
+	/** 時間窓(ns) */
+	private final long windowNanos;
+
+	/** コネクション毎の状態(キーはコネクションの識別キー) */
+	private final ConcurrentMap<Long, Tracker> trackers = new ConcurrentHashMap<Long, Tracker>();
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param threshold detect count(disabled if 0 or less)
+	 * @param windowMillis time window(ms)
+	 **********************************************
+	 */
+	NPlusOneDetector(int threshold, long windowMillis) {
+		this.threshold = threshold;
+		this.windowNanos = Math.max(windowMillis, 1L) * 1000000L;
+	}
+
+	boolean isEnabled() {
+		return threshold > 0;
+	}
+
+	int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 **********************************************
+	 * 実行を記録する.
+	 *
+	 * @param connectionKey unique connection key
+	 * @param fingerprint sql fingerprint
+	 * @param bindHash hash of bind values
+	 * @param nowNanos current time(System.nanoTime())
+	 * @return 検出時は窓の開始からの経過時間(ns)、それ以外は-1
+	 **********************************************
+	 */
+	long record(long connectionKey, long fingerprint, int bindHash, long nowNanos) {
+		if (!isEnabled()) return -1L;
+
+		Tracker tracker = trackers.get(connectionKey);
+		if (tracker == null) {
+			if (trackers.size() >= MAX_CONNECTIONS) trackers.clear();
+			tracker = trackers.computeIfAbsent(connectionKey, k -> new Tracker());
+		}
+		return tracker.record(fingerprint, bindHash, nowNanos);
+	}
+
+	/**
+	 **********************************************
+	 * コネクションの状態を破棄する.
+	 *
+	 * トランザクションの終了やクローズ時に呼び出す
+	 *
+	 * @param connectionKey unique connection key
+	 **********************************************
+	 */
+	void reset(long connectionKey) {
+		trackers.remove(connectionKey);
+	}
+
+	int size() {
+		return trackers.size();
+	}
+
+	/**
+	 ********************************************
+	 * コネクション毎の実行状態.
+	 *
+	 * 通常1コネクションは同時に1スレッドからのみ利用されるため、
+	 * 競合の少ないロックで保護する
+	 ********************************************
+	 */
+	private final class Tracker {
+		private final Map<Long, Pattern> patterns = new LinkedHashMap<Long, Pattern>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Pattern> eldest) {
+				return size() > MAX_PATTERNS;
+			}
+		};
+
+		private synchronized long record(long fingerprint, int bindHash, long nowNanos) {
+			Pattern p = patterns.get(fingerprint);
+			if (p == null || nowNanos - p.startNanos > windowNanos) {
+				patterns.put(fingerprint, new Pattern(nowNanos, bindHash));
+				return -1L;
+			}
+			// 同じバインド値の繰り返しは対象外
+			if (bindHash == p.lastBindHash) return -1L;
+
+			p.lastBindHash = bindHash;
+			if (++p.count == threshold) {
+				return nowNanos - p.startNanos;
+			}
+			return -1L;
+		}
+	}
+
+	/**
+	 * SQL毎の時間窓内の実行回数
+	 */
+	private static final class Pattern {
+		private final long startNanos;
+		private int lastBindHash;
+		private int count = 1;
+
+		private Pattern(long startNanos, int bindHash) {
+			this.startNanos = startNanos;
+			this.lastBindHash = bindHash;
+		}
+	}
+}
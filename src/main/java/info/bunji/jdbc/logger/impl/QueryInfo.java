@@ -24,24 +24,39 @@ import info.bunji.jdbc.LoggerHelper;
 public class QueryInfo implements Cloneable, Comparable<QueryInfo> {
 	private Long time;
 	private Long elapsed;
+	private Long elapsedMicros;
 	private String sql;
+	private String fingerprint = null;
+	private String caller = null;
 	private String queryId = null;
 	private String host = null;
 	private String dataSource = null;
 	private boolean isError = false;
 	private String errorMsg = null;
+	private Long fetchElapsed = null;
+	private Long fetchElapsedMicros = null;
+	private Long rows = null;
 
 	QueryInfo(LoggerHelper helper, String sql) {
 		this(helper, sql, null);
 	}
 
 	QueryInfo(LoggerHelper helper, String sql, Throwable t) {
-		this(helper.getStartTime(), System.currentTimeMillis() - helper.getStartTime(), sql, helper.getQueryId(), t);
+		this(helper, helper.getElapsedNanos(), sql, t);
+	}
+
+	QueryInfo(LoggerHelper helper, long elapsedNanos, String sql, Throwable t) {
+		this(helper.getStartTime(), elapsedNanos / 1000000, elapsedNanos / 1000, sql, helper.getQueryId(), t);
 	}
 
 	QueryInfo(Long time, Long elapsed, String sql, String queryId, Throwable t) {
+		this(time, elapsed, (elapsed != null && elapsed >= 0) ? elapsed * 1000 : elapsed, sql, queryId, t);
+	}
+
+	QueryInfo(Long time, Long elapsed, Long elapsedMicros, String sql, String queryId, Throwable t) {
 		this.time = time;
 		this.elapsed = elapsed;
+		this.elapsedMicros = elapsedMicros;
 		this.sql = sql;
 		this.queryId = queryId;
 		if (t != null) {
@@ -51,17 +66,31 @@ public class QueryInfo implements Cloneable, Comparable<QueryInfo> {
 	}
 
 	public void setSql(String sql) { this.sql = sql; }
+	public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+	public void setCaller(String caller) { this.caller = caller; }
 	public void setHost(String host) { this.host = host; }
 	public void setDataSource(String dataSource) { this.dataSource = dataSource; }
 
+	void setFetchResult(long rows, long fetchElapsedNanos) {
+		this.rows = rows;
+		this.fetchElapsed = fetchElapsedNanos / 1000000;
+		this.fetchElapsedMicros = fetchElapsedNanos / 1000;
+	}
+
 	public Long getTime() { return time; }
 	public Long getElapsed() { return elapsed; }
+	public Long getElapsedMicros() { return elapsedMicros; }
 	public String getSql() { return sql; }
+	public String getFingerprint() { return fingerprint; }
+	public String getCaller() { return caller; }
 	public String getId() { return queryId; }
 	public String getHost() { return host; }
 	public String getDataSource() { return dataSource; }
 	public boolean isError() { return isError; }
 	public String getErrorMsg() { return errorMsg; }
+	public Long getFetchElapsed() { return fetchElapsed; }
+	public Long getFetchElapsedMicros() { return fetchElapsedMicros; }
+	public Long getRows() { return rows; }
 
 	/*
 	 * (非 Javadoc)
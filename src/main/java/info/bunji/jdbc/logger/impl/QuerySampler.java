@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import info.bunji.jdbc.util.SqlTemplate;
+
+/**
+ **********************************************************
+ * ログ出力対象のサンプリング.
+ * <pre>
+ * 正常終了したクエリをログ・履歴に出力するかを判定する(エラーは対象外)。
+ *   none        : 全て出力する
+ *   ratio       : N件に1件を確率的に出力する
+ *   rate        : 接続URL(データソース)単位に1秒あたりの件数を制限する(トークンバケット)
+ *   fingerprint : 正規化したSQL単位に1秒あたりの件数を制限する
+ * 件数の制限はGCRA(トークンバケットと等価)で行い、CAS1回で判定する。
+ * バケットの容量(バースト)は1秒分とする。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class QuerySampler {
+
+	/** mode:サンプリングなし */
+	static final String MODE_NONE = "none";
+
+	/** mode:N件に1件 */
+	static final String MODE_RATIO = "ratio";
+
+	/** mode:データソース単位の流量制限 */
+	static final String MODE_RATE = "rate";
+
+	/** mode:SQL単位の流量制限 */
+	static final String MODE_FINGERPRINT = "fingerprint";
+
+	/** SQL単位の制限を保持する最大数(超えた場合は全て破棄する) */
+	private static final int MAX_LIMITERS = 4096;
+
+	private static final long ONE_SECOND = 1000000000L;
+
+	private final String mode;
+
+	private final int ratio;
+
+	private final int ratePerSecond;
+
+	/** データソース単位の制限 */
+	private final RateLimiter limiter;
+
+	/** SQL単位の制限(キーはフィンガープリント) */
+	private final ConcurrentMap<Long, RateLimiter> limiters = new ConcurrentHashMap<Long, RateLimiter>();
+
+	private final LongAdder keptCount = new LongAdder();
+
+	private final LongAdder skippedCount = new LongAdder();
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param mode sampling mode
+	 * @param ratio sampling ratio(1-in-N)
+	 * @param ratePerSecond max executions per second
+	 **********************************************
+	 */
+	QuerySampler(String mode, int ratio, int ratePerSecond) {
+		this.mode = mode;
+		this.ratio = Math.max(ratio, 1);
+		this.ratePerSecond = Math.max(ratePerSecond, 1);
+		this.limiter = new RateLimiter(this.ratePerSecond);
+	}
+
+	/**
+	 **********************************************
+	 * モード名が有効かを判定する.
+	 * @param mode sampling mode
+	 * @return if valid true
+	 **********************************************
+	 */
+	static boolean isValidMode(String mode) {
+		return MODE_NONE.equals(mode) || MODE_RATIO.equals(mode)
+				|| MODE_RATE.equals(mode) || MODE_FINGERPRINT.equals(mode);
+	}
+
+	String getMode() {
+		return mode;
+	}
+
+	boolean isEnabled() {
+		return !MODE_NONE.equals(mode);
+	}
+
+	/**
+	 **********************************************
+	 * 出力対象とするかを判定する.
+	 *
+	 * @param template executed sql(fingerprintモード以外はnull可)
+	 * @return if sampled true
+	 **********************************************
+	 */
+	boolean sample(SqlTemplate template) {
+		boolean ret;
+		if (MODE_RATIO.equals(mode)) {
+			ret = ratio == 1 || ThreadLocalRandom.current().nextInt(ratio) == 0;
+		} else if (MODE_RATE.equals(mode)) {
+			ret = limiter.tryAcquire(System.nanoTime());
+		} else if (MODE_FINGERPRINT.equals(mode) && template != null) {
+			ret = limiterOf(template.getFingerprint()).tryAcquire(System.nanoTime());
+		} else {
+			return true;
+		}
+		if (ret) {
+			keptCount.increment();
+		} else {
+			skippedCount.increment();
+		}
+		return ret;
+	}
+
+	private RateLimiter limiterOf(long fingerprint) {
+		Long key = fingerprint;
+		RateLimiter rl = limiters.get(key);
+		if (rl == null) {
+			if (limiters.size() >= MAX_LIMITERS) {
+				// SQLの種類が多すぎる場合は作り直す(制限が一時的に緩和されるのみ)
+				limiters.clear();
+			}
+			rl = limiters.computeIfAbsent(key, k -> new RateLimiter(ratePerSecond));
+		}
+		return rl;
+	}
+
+	long getKeptCount() {
+		return keptCount.sum();
+	}
+
+	long getSkippedCount() {
+		return skippedCount.sum();
+	}
+
+	/**
+	 ********************************************
+	 * 流量制限(GCRA).
+	 *
+	 * 次のリクエストの理論到着時刻(TAT)のみを保持する
+	 ********************************************
+	 */
+	static final class RateLimiter {
+		/** 1件あたりの間隔(ns) */
+		private final long interval;
+
+		/** 許容するバースト(ns) */
+		private final long burst;
+
+		private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+
+		RateLimiter(int ratePerSecond) {
+			interval = Math.max(ONE_SECOND / ratePerSecond, 1L);
+			burst = ONE_SECOND - interval;
+		}
+
+		boolean tryAcquire(long now) {
+			while (true) {
+				long cur = tat.get();
+				long base = (cur == Long.MIN_VALUE || cur - now < 0) ? now : cur;
+				if (base - now > burst) {
+					return false;
+				}
+				if (tat.compareAndSet(cur, base + interval)) {
+					return true;
+				}
+			}
+		}
+	}
+}
@@ -25,7 +25,8 @@ import org.slf4j.LoggerFactory;
  */
 public class Slf4jJdbcLogger extends AbstractJdbcLogger {
 
-	private final Logger debugLogger;
+	/** DataSource名の解決時に差し替えるためvolatileとする */
+	private volatile Logger debugLogger;
 
 	public Slf4jJdbcLogger(String url) {
 		super(url);
@@ -33,6 +34,16 @@ public class Slf4jJdbcLogger extends AbstractJdbcLogger {
 		debugLogger = LoggerFactory.getLogger(makeLoggerName(url));
 	}
 
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.impl.AbstractJdbcLogger#setDataSourceName(java.lang.String)
+	 */
+	@Override
+	public void setDataSourceName(String name) {
+		super.setDataSourceName(name);
+		debugLogger = LoggerFactory.getLogger(makeLoggerName(name));
+	}
+
 	/*
 	 * (非 Javadoc)
 	 * @see info.bunji.jdbc.logger.JdbcLogger#isJdbcLoggingEnabled()
@@ -58,8 +69,10 @@ public class Slf4jJdbcLogger extends AbstractJdbcLogger {
 	 */
 	@Override
 	public void debug(String msg, Object... args) {
-		if (debugLogger.isDebugEnabled())
-		debugLogger.debug(msg != null ? String.format(msg, args) : null);
+		if (debugLogger.isDebugEnabled()) {
+			// 引数がない場合は生成済みのメッセージとしてそのまま出力する
+			debugLogger.debug(msg != null && args != null && args.length > 0 ? String.format(msg, args) : msg);
+		}
 	}
 
 	/*
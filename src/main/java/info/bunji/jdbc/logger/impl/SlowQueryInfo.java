@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.util.List;
+
+import info.bunji.jdbc.LoggerHelper;
+
+/**
+ * captureThresholdを超えたクエリの詳細情報
+ *
+ * 実行履歴の内容に加え、コネクションID、バインドパラメータ、
+ * 呼び出し元のスタックトレースを保持する(SQLは文字数の制限を行わない)
+ *
+ * @author f.kinoshita
+ */
+public class SlowQueryInfo extends QueryInfo {
+	private String connectionId;
+	private List<String> parameters;
+	private List<String> stackTrace;
+
+	SlowQueryInfo(LoggerHelper helper, long elapsedNanos, String sql, Throwable t,
+					List<String> parameters, List<String> stackTrace) {
+		super(helper, elapsedNanos, sql, t);
+		this.connectionId = helper.getConnectionId();
+		this.parameters = parameters;
+		this.stackTrace = stackTrace;
+	}
+
+	public String getConnectionId() { return connectionId; }
+	public List<String> getParameters() { return parameters; }
+	public List<String> getStackTrace() { return stackTrace; }
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.logger.impl.QueryInfo#clone()
+	 */
+	@Override
+	public SlowQueryInfo clone() {
+		return (SlowQueryInfo) super.clone();
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import info.bunji.jdbc.util.LatencyHistogram;
+import info.bunji.jdbc.util.SqlNormalizer;
+import info.bunji.jdbc.util.SqlTemplate;
+
+/**
+ **********************************************************
+ * 正規化したSQL単位の実行統計.
+ * <pre>
+ * 実行回数、エラー回数、合計・最小・最大の実行時間と実行時間の分布を
+ * ロックなしで集計する。
+ * 集計対象のSQL数が上限に達した場合、以降の新しいSQLは"(other)"にまとめる。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+class SqlStatistics {
+
+	/** 上限を超えたSQLの集計キー */
+	static final String OTHER_KEY = "(other)";
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/** 集計対象とするSQLの最大数 */
+	private volatile int maxEntries;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param maxEntries max sql count
+	 **********************************************
+	 */
+	SqlStatistics(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 **********************************************
+	 * 実行結果を記録する.
+	 *
+	 * @param template executed sql
+	 * @param elapsedNanos exec time(ns)
+	 * @param isError if failed true
+	 **********************************************
+	 */
+	void record(SqlTemplate template, long elapsedNanos, boolean isError) {
+		String sql = template.getNormalizedSql();
+		Entry entry = entries.get(sql);
+		if (entry == null) {
+			if (entries.size() < maxEntries) {
+				String fingerprint = SqlNormalizer.toHex(template.getFingerprint());
+				entry = entries.computeIfAbsent(sql, k -> new Entry(k, fingerprint));
+			} else {
+				entry = entries.computeIfAbsent(OTHER_KEY, k -> new Entry(k, null));
+			}
+		}
+		entry.record(elapsedNanos, isError);
+	}
+
+	/**
+	 **********************************************
+	 * 集計結果を取得する.
+	 *
+	 * 合計実行時間の降順で返す
+	 *
+	 * @return statistics list
+	 **********************************************
+	 */
+	List<Map<String, Object>> snapshot() {
+		List<Map<String, Object>> result = new ArrayList<Map<String, Object>>(entries.size());
+		for (Entry entry : entries.values()) {
+			result.add(entry.toMap());
+		}
+
+		// 集計中も値は変化するため、取得済みの値で並べ替える
+		Collections.sort(result, new Comparator<Map<String, Object>>() {
+			@Override
+			public int compare(Map<String, Object> o1, Map<String, Object> o2) {
+				return Double.compare((Double) o2.get("total"), (Double) o1.get("total"));
+			}
+		});
+		return result;
+	}
+
+	void setMaxEntries(int maxEntries) {
+		this.maxEntries = Math.max(maxEntries, 0);
+	}
+
+	int getMaxEntries() {
+		return maxEntries;
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	void clear() {
+		entries.clear();
+	}
+
+	/**
+	 ********************************************
+	 * SQL毎の集計値.
+	 ********************************************
+	 */
+	static final class Entry {
+		private final String sql;
+		private final String fingerprint;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong maxNanos = new AtomicLong(Long.MIN_VALUE);
+		private final LatencyHistogram histogram = new LatencyHistogram();
+
+		private Entry(String sql, String fingerprint) {
+			this.sql = sql;
+			this.fingerprint = fingerprint;
+		}
+
+		private void record(long elapsedNanos, boolean isError) {
+			count.increment();
+			if (isError) errors.increment();
+			totalNanos.add(elapsedNanos);
+			long cur = minNanos.get();
+			while (elapsedNanos < cur && !minNanos.compareAndSet(cur, elapsedNanos)) {
+				cur = minNanos.get();
+			}
+			cur = maxNanos.get();
+			while (elapsedNanos > cur && !maxNanos.compareAndSet(cur, elapsedNanos)) {
+				cur = maxNanos.get();
+			}
+			histogram.record(elapsedNanos / 1000L);
+		}
+
+		private Map<String, Object> toMap() {
+			long cnt = count.sum();
+			long total = totalNanos.sum();
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			map.put("sql",    sql);
+			map.put("fingerprint", fingerprint);
+			map.put("count",  cnt);
+			map.put("errors", errors.sum());
+			map.put("total",  toMillis(total));
+			map.put("mean",   cnt > 0 ? toMillis(total / cnt) : 0.0);
+			map.put("min",    cnt > 0 ? toMillis(minNanos.get()) : 0.0);
+			map.put("max",    cnt > 0 ? toMillis(maxNanos.get()) : 0.0);
+			map.put("p50",    histogram.getValueAtPercentile(50.0) / 1000.0);
+			map.put("p90",    histogram.getValueAtPercentile(90.0) / 1000.0);
+			map.put("p99",    histogram.getValueAtPercentile(99.0) / 1000.0);
+			return map;
+		}
+
+		/** ナノ秒をミリ秒(マイクロ秒精度)に変換する */
+		private static double toMillis(long nanos) {
+			return (nanos / 1000L) / 1000.0;
+		}
+	}
+}
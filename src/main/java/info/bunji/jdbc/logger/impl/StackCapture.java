@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ **********************************************************
+ * 呼び出し元のスタックトレースを取得するユーティリティ.
+ * <pre>
+ * 先頭から本ライブラリ内部(ロガー、プロキシ、ラッパー)と
+ * リフレクション・動的プロキシのフレームを除去し、
+ * JDBCを呼び出したアプリケーションのフレームから出力する。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class StackCapture {
+
+	/** 内部クラスとして除去するパッケージ */
+	private static final String[] INTERNAL_PACKAGES = {
+		"info.bunji.jdbc.logger.",
+		"info.bunji.jdbc.util.",
+		"info.bunji.jdbc.specifics.",
+		"java.lang.reflect.",
+		"sun.reflect.",
+		"jdk.internal.reflect.",
+		"com.sun.proxy.",
+		"jdk.proxy",
+	};
+
+	/** 内部クラスとして除去するクラス */
+	private static final Set<String> INTERNAL_CLASSES = new HashSet<String>(Arrays.asList(
+		"info.bunji.jdbc.LoggerHelper",
+		"info.bunji.jdbc.ConnectionProxy",
+		"info.bunji.jdbc.ConnectionWrapper",
+		"info.bunji.jdbc.StatementProxy",
+		"info.bunji.jdbc.StatementWrapper",
+		"info.bunji.jdbc.PreparedStatementWrapper",
+		"info.bunji.jdbc.CallableStatementWrapper",
+		"info.bunji.jdbc.ResultSetProxy",
+		"info.bunji.jdbc.ProxyFactory",
+		"info.bunji.jdbc.DriverEx",
+		"info.bunji.jdbc.DriverProxy"
+	));
+
+	private StackCapture() {
+		// do nothing.
+	}
+
+	/**
+	 **********************************************
+	 * 呼び出し元のスタックトレースを取得する.
+	 *
+	 * @param maxDepth max frames
+	 * @return stack trace(internal frames removed)
+	 **********************************************
+	 */
+	static List<String> capture(int maxDepth) {
+		StackTraceElement[] frames = new Throwable().getStackTrace();
+		int start = 0;
+		while (start < frames.length && isInternal(frames[start].getClassName())) {
+			start++;
+		}
+		int end = Math.min(frames.length, start + maxDepth);
+		List<String> list = new ArrayList<String>(end - start);
+		for (int i = start; i < end; i++) {
+			list.add(frames[i].toString());
+		}
+		return list;
+	}
+
+	/**
+	 **********************************************
+	 * 内部クラスのフレームかを判定する.
+	 *
+	 * @param className class name
+	 * @return if internal true
+	 **********************************************
+	 */
+	static boolean isInternal(String className) {
+		int pos = className.indexOf('$');
+		String outer = pos != -1 ? className.substring(0, pos) : className;
+		if (INTERNAL_CLASSES.contains(outer) || className.contains("$Proxy")) {
+			return true;
+		}
+		for (String pkg : INTERNAL_PACKAGES) {
+			if (className.startsWith(pkg)) return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+/**
+ * 終了したトランザクションの情報
+ *
+ * 開始(autoCommit無効後の最初の実行)から終了(commit/rollback)までの
+ * 経過時間、SQLの実行時間の合計と件数、commit/rollbackの所要時間、
+ * 最も時間のかかったSQLを保持する
+ *
+ * @author f.kinoshita
+ */
+public class TransactionInfo implements Cloneable {
+	private long time;
+	private long elapsed;
+	private long elapsedMicros;
+	private long dbTimeMicros;
+	private long endMicros;
+	private int statements;
+	private int errors;
+	private String result;
+	private String errorMsg = null;
+	private String connectionId;
+	private String slowestSql;
+	private long slowestMicros;
+	private String caller = null;
+	private String host = null;
+	private String dataSource = null;
+
+	TransactionInfo(long time, long elapsedNanos, long dbNanos, long endNanos, int statements, int errors,
+					String result, Throwable t, String connectionId, String slowestSql, long slowestNanos) {
+		this.time = time;
+		this.elapsed = elapsedNanos / 1000000;
+		this.elapsedMicros = elapsedNanos / 1000;
+		this.dbTimeMicros = dbNanos / 1000;
+		this.endMicros = endNanos / 1000;
+		this.statements = statements;
+		this.errors = errors;
+		this.result = result;
+		if (t != null) this.errorMsg = t.getMessage();
+		this.connectionId = connectionId;
+		this.slowestSql = slowestSql;
+		this.slowestMicros = slowestNanos / 1000;
+	}
+
+	public void setSlowestSql(String slowestSql) { this.slowestSql = slowestSql; }
+	public void setCaller(String caller) { this.caller = caller; }
+	public void setHost(String host) { this.host = host; }
+	public void setDataSource(String dataSource) { this.dataSource = dataSource; }
+
+	public long getTime() { return time; }
+	public long getElapsed() { return elapsed; }
+	public long getElapsedMicros() { return elapsedMicros; }
+	public long getDbTimeMicros() { return dbTimeMicros; }
+	public long getEndMicros() { return endMicros; }
+	public int getStatements() { return statements; }
+	public int getErrors() { return errors; }
+	public String getResult() { return result; }
+	public boolean isError() { return errorMsg != null; }
+	public String getErrorMsg() { return errorMsg; }
+	public String getConnectionId() { return connectionId; }
+	public String getSlowestSql() { return slowestSql; }
+	public long getSlowestMicros() { return slowestMicros; }
+	public String getCaller() { return caller; }
+	public String getHost() { return host; }
+	public String getDataSource() { return dataSource; }
+
+	/*
+	 * (非 Javadoc)
+	 * @see java.lang.Object#clone()
+	 */
+	@Override
+	public TransactionInfo clone() {
+		try {
+			// shallow copy
+			return (TransactionInfo) super.clone();
+		} catch (CloneNotSupportedException cnse) {
+			throw new InternalError(cnse.getMessage());
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.logger.impl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import info.bunji.jdbc.util.LatencyHistogram;
+
+/**
+ **********************************************************
+ * コネクション毎のトランザクションの追跡.
+ * <pre>
+ * autoCommitを無効にしたコネクションで最初にSQLを実行した時点で
+ * トランザクションを開始し、commit/rollback(またはautoCommitの有効化)で終了する。
+ * 実行中はSQLの実行時間の合計と件数、最も時間のかかったSQLを集計し、
+ * 終了時にcommit/rollbackの所要時間と合わせて{@link TransactionInfo}を生成する。
+ * 終了件数とcommitの所要時間の分布はロックなしで集計する。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+final class TransactionTracker {
+
+	/** 終了種別:commit */
+	static final String RESULT_COMMIT = "commit";
+
+	/** 終了種別:rollback */
+	static final String RESULT_ROLLBACK = "rollback";
+
+	/** 状態を保持するコネクションの最大数(超えた場合は破棄する) */
+	private static final int MAX_CONNECTIONS = 4096;
+
+	/** autoCommitが無効なコネクション(コネクションの識別キー) */
+	private final Set<Long> manualConnections = ConcurrentHashMap.newKeySet();
+
+	/** 実行中のトランザクション(キーはコネクションの識別キー) */
+	private final ConcurrentMap<Long, Span> activeSpans = new ConcurrentHashMap<Long, Span>();
+
+	private final LongAdder commitCount = new LongAdder();
+
+	private final LongAdder rollbackCount = new LongAdder();
+
+	/** commitの所要時間(us)の分布 */
+	private final LatencyHistogram commitLatency = new LatencyHistogram();
+
+	/**
+	 **********************************************
+	 * autoCommitの変更を記録する.
+	 *
+	 * 有効化時は実行中のトランザクションをcommitとして終了する
+	 *
+	 * @param connectionKey unique connection key
+	 * @param autoCommit new autoCommit
+	 * @param elapsedNanos exec time of setAutoCommit(ns)
+	 * @param t exception(nullable)
+	 * @return finished transaction, or null if not started
+	 **********************************************
+	 */
+	TransactionInfo setAutoCommit(long connectionKey, boolean autoCommit, long elapsedNanos, Throwable t) {
+		if (!autoCommit) {
+			if (manualConnections.size() >= MAX_CONNECTIONS) manualConnections.clear();
+			manualConnections.add(connectionKey);
+			return null;
+		}
+		manualConnections.remove(connectionKey);
+		return finish(connectionKey, true, elapsedNanos, t);
+	}
+
+	/**
+	 **********************************************
+	 * SQLの実行を記録する.
+	 *
+	 * autoCommitが無効なコネクションでは、最初の実行でトランザクションを開始する
+	 *
+	 * @param connectionKey unique connection key
+	 * @param connectionId connection id(for display)
+	 * @param startTime start time of sql(ms)
+	 * @param elapsedNanos exec time(ns)
+	 * @param isError if failed true
+	 * @param sql parameterized sql
+	 **********************************************
+	 */
+	void recordStatement(long connectionKey, String connectionId, long startTime,
+							long elapsedNanos, boolean isError, String sql) {
+		if (!manualConnections.contains(connectionKey)) return;
+
+		Span span = activeSpans.get(connectionKey);
+		if (span == null) {
+			if (activeSpans.size() >= MAX_CONNECTIONS) activeSpans.clear();
+			long startNanos = System.nanoTime() - Math.max(elapsedNanos, 0L);
+			span = activeSpans.computeIfAbsent(connectionKey, k -> new Span(connectionId, startTime, startNanos));
+		}
+		span.add(elapsedNanos, isError, sql);
+	}
+
+	/**
+	 **********************************************
+	 * トランザクションを終了する(commit/rollback).
+	 *
+	 * commit/rollbackはautoCommitが無効な場合のみ可能なため、
+	 * 以降の実行もトランザクションとして扱う
+	 *
+	 * @param connectionKey unique connection key
+	 * @param isCommit commit:true, rollback:false
+	 * @param elapsedNanos exec time of commit/rollback(ns)
+	 * @param t exception(nullable)
+	 * @return finished transaction, or null if not started
+	 **********************************************
+	 */
+	TransactionInfo end(long connectionKey, boolean isCommit, long elapsedNanos, Throwable t) {
+		if (!manualConnections.contains(connectionKey) && t == null) {
+			if (manualConnections.size() >= MAX_CONNECTIONS) manualConnections.clear();
+			manualConnections.add(connectionKey);
+		}
+		return finish(connectionKey, isCommit, elapsedNanos, t);
+	}
+
+	private TransactionInfo finish(long connectionKey, boolean isCommit, long elapsedNanos, Throwable t) {
+		Span span = activeSpans.remove(connectionKey);
+		if (span == null) return null;
+
+		if (isCommit) {
+			commitCount.increment();
+			commitLatency.record(elapsedNanos / 1000L);
+		} else {
+			rollbackCount.increment();
+		}
+		return span.finish(isCommit ? RESULT_COMMIT : RESULT_ROLLBACK, elapsedNanos, t);
+	}
+
+	/**
+	 **********************************************
+	 * コネクションの状態を破棄する(クローズ時).
+	 *
+	 * @param connectionKey unique connection key
+	 **********************************************
+	 */
+	void close(long connectionKey) {
+		manualConnections.remove(connectionKey);
+		activeSpans.remove(connectionKey);
+	}
+
+	int getActiveCount() {
+		return activeSpans.size();
+	}
+
+	long getCommitCount() {
+		return commitCount.sum();
+	}
+
+	long getRollbackCount() {
+		return rollbackCount.sum();
+	}
+
+	/**
+	 * commitの所要時間のパーセンタイル値(ms)を取得する.
+	 *
+	 * @param percentile percentile(0-100)
+	 * @return latency(ms)
+	 */
+	double getCommitLatency(double percentile) {
+		return commitLatency.getValueAtPercentile(percentile) / 1000.0;
+	}
+
+	/**
+	 ********************************************
+	 * 実行中のトランザクション.
+	 *
+	 * 通常1コネクションは同時に1スレッドからのみ利用されるため、
+	 * 競合の少ないロックで保護する
+	 ********************************************
+	 */
+	private static final class Span {
+		private final String connectionId;
+		private final long startTime;
+		private final long startNanos;
+		private long dbNanos = 0L;
+		private int statements = 0;
+		private int errors = 0;
+		private long slowestNanos = -1L;
+		private String slowestSql = null;
+
+		private Span(String connectionId, long startTime, long startNanos) {
+			this.connectionId = connectionId;
+			this.startTime = startTime;
+			this.startNanos = startNanos;
+		}
+
+		private synchronized void add(long elapsedNanos, boolean isError, String sql) {
+			statements++;
+			if (isError) errors++;
+			if (elapsedNanos > 0) dbNanos += elapsedNanos;
+			if (elapsedNanos > slowestNanos) {
+				slowestNanos = elapsedNanos;
+				slowestSql = sql;
+			}
+		}
+
+		private synchronized TransactionInfo finish(String result, long endNanos, Throwable t) {
+			long elapsedNanos = System.nanoTime() - startNanos;
+			return new TransactionInfo(startTime, elapsedNanos, dbNanos, endNanos, statements, errors,
+								result, t, connectionId, slowestSql, Math.max(slowestNanos, 0L));
+		}
+	}
+}
@@ -43,6 +43,9 @@ import info.bunji.jdbc.logger.JdbcLoggerFactory;
 @WebServlet(name="RestApiServlet",urlPatterns={"/log4jdbcex"})
 public class RestApiServlet extends HttpServlet {
 
+	/** データソース名の解決を待機する最大時間(ms) */
+	private static final long DATASOURCE_SCAN_TIMEOUT = 5000L;
+
 	protected JdbcLogger logger = JdbcLoggerFactory.getLogger();
 
 	/** 呼び出し可能なAPIクラスのマッピング */
@@ -59,6 +62,11 @@ public class RestApiServlet extends HttpServlet {
 
 		ServletContext context = getServletContext();
 
+		// 接続URLとデータソース名の対応を解決しておく
+		// (接続処理では解決を待機しないため、ここで完了を待つ)
+		JdbcLoggerFactory.resolveDataSourceNames();
+		JdbcLoggerFactory.awaitDataSourceNames(DATASOURCE_SCAN_TIMEOUT);
+
 		// データソース初期化のため、一旦コネクションを取得する
 		// 未接続のデータソースのタブを表示するための対策
 		try {
@@ -81,6 +89,10 @@ public class RestApiServlet extends HttpServlet {
 		apiList.add(new ResourceApi(context));
 		apiList.add(new RunningQueriesApi(context));
 		apiList.add(new SettingApi(context));
+		apiList.add(new StatusApi(context));
+		apiList.add(new StatsApi(context));
+		apiList.add(new SlowQueriesApi(context));
+		apiList.add(new TransactionsApi(context));
 		apiList.forEach(api -> {
 			try {
 				api.init();
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.rest;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import info.bunji.jdbc.logger.JdbcLogger;
+import info.bunji.jdbc.logger.JdbcLoggerFactory;
+import info.bunji.jdbc.logger.impl.SlowQueryInfo;
+import net.arnx.jsonic.JSON;
+
+/**
+ * captureThresholdを超えたクエリの詳細情報を返すAPI
+ *
+ * GETで新しいものから返し、DELETEでクリアする
+ *
+ * @author f.kinoshita
+ */
+class SlowQueriesApi extends AbstractApi {
+
+	public SlowQueriesApi(ServletContext context) {
+		super(context);
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.rest.RestApi#getApiName()
+	 */
+	@Override
+	public String getApiName() {
+		return "slow";
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse res)
+										throws ServletException, IOException {
+		BufferedOutputStream bos = null;
+		try {
+			bos = new BufferedOutputStream(res.getOutputStream());
+			res.setContentType("application/json; charset=UTF-8");
+
+			String host = hostName + ":" + req.getServerPort();
+
+			// response format
+			// {
+			//   jdbcurl1 : [
+			//     { time: xxx, elapsed: xxx, sql : "select xxxx", connectionId: xxx,
+			//       parameters: [ ... ], stackTrace: [ ... ], ... },
+			//     ...
+			//   ],
+			//   ...
+			// }
+			//
+			Map<String, List<SlowQueryInfo>> tmpMap = new TreeMap<String, List<SlowQueryInfo>>();
+			for (JdbcLogger log : JdbcLoggerFactory.getLoggers()) {
+				List<SlowQueryInfo> qiList = log.getSlowQueries();
+				for (SlowQueryInfo qi : qiList) {
+					qi.setHost(host);
+				}
+				tmpMap.put(log.getDispUrl(), qiList);
+			}
+			JSON.encode(tmpMap, bos, false);
+
+			res.setStatus(HttpServletResponse.SC_OK);
+			bos.flush();
+		} catch(Exception e) {
+			logger.error(e.getMessage(), e);
+			res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	@Override
+	protected void doDelete(HttpServletRequest req, HttpServletResponse res)
+										throws ServletException, IOException {
+		try {
+			for (JdbcLogger log : JdbcLoggerFactory.getLoggers()) {
+				log.clearSlowQueries();
+			}
+			res.setStatus(HttpServletResponse.SC_OK);
+		} catch(Exception e) {
+			logger.error(e.getMessage(), e);
+			res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	protected Map<String, List<Object>> postMergeProcess(Map<String, List<Object>> result) {
+		// 複数サーバの結果を開始時刻の降順に並べ直す
+		for (Entry<String, List<Object>> entry : result.entrySet()) {
+			Collections.sort(entry.getValue(), new Comparator<Object>() {
+				@Override
+				public int compare(Object o1, Object o2) {
+					return Long.compare(getTime(o2), getTime(o1));
+				}
+			});
+		}
+		return result;
+	}
+
+	private static long getTime(Object qi) {
+		if (qi instanceof Map) {
+			Object time = ((Map<?, ?>) qi).get("time");
+			if (time instanceof Number) {
+				return ((Number) time).longValue();
+			}
+		}
+		return 0L;
+	}
+}
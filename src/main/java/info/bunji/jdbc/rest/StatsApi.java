@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.rest;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import info.bunji.jdbc.logger.JdbcLogger;
+import info.bunji.jdbc.logger.JdbcLoggerFactory;
+import net.arnx.jsonic.JSON;
+
+/**
+ * 正規化したSQL単位の実行統計を返すAPI
+ *
+ * GETで合計実行時間の降順に返し(limitパラメータで件数を指定可能)、
+ * DELETEで集計をクリアする
+ *
+ * @author f.kinoshita
+ */
+class StatsApi extends AbstractApi {
+
+	public StatsApi(ServletContext context) {
+		super(context);
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.rest.RestApi#getApiName()
+	 */
+	@Override
+	public String getApiName() {
+		return "stats";
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse res)
+										throws ServletException, IOException {
+		BufferedOutputStream bos = null;
+		try {
+			bos = new BufferedOutputStream(res.getOutputStream());
+			res.setContentType("application/json; charset=UTF-8");
+
+			String host = hostName + ":" + req.getServerPort();
+			int limit = -1;
+			String limitParam = req.getParameter("limit");
+			if (limitParam != null && !limitParam.isEmpty()) {
+				limit = Integer.parseInt(limitParam);
+			}
+
+			// response format
+			// {
+			//   jdbcurl1 : [
+			//     { host: xxx, sql: "select ... where id = ?", count: xxx, total: xxx, ... },
+			//     ...
+			//   ],
+			//   ...
+			// }
+			//
+			Map<String, List<Map<String, Object>>> tmpMap = new TreeMap<String, List<Map<String, Object>>>();
+			for (JdbcLogger log : JdbcLoggerFactory.getLoggers()) {
+				List<Map<String, Object>> stats = log.getStatistics();
+				if (limit >= 0 && stats.size() > limit) {
+					stats = stats.subList(0, limit);
+				}
+				for (Map<String, Object> stat : stats) {
+					stat.put("host", host);
+				}
+				tmpMap.put(log.getDispUrl(), stats);
+			}
+			JSON.encode(tmpMap, bos, false);
+
+			res.setStatus(HttpServletResponse.SC_OK);
+			bos.flush();
+		} catch(NumberFormatException e) {
+			res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+		} catch(Exception e) {
+			logger.error(e.getMessage(), e);
+			res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	@Override
+	protected void doDelete(HttpServletRequest req, HttpServletResponse res)
+										throws ServletException, IOException {
+		try {
+			for (JdbcLogger log : JdbcLoggerFactory.getLoggers()) {
+				log.clearStatistics();
+			}
+			res.setStatus(HttpServletResponse.SC_OK);
+		} catch(Exception e) {
+			logger.error(e.getMessage(), e);
+			res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	protected Map<String, List<Object>> postMergeProcess(Map<String, List<Object>> result) {
+		// 複数サーバの結果を合計実行時間の降順に並べ直す
+		for (Entry<String, List<Object>> entry : result.entrySet()) {
+			Collections.sort(entry.getValue(), new Comparator<Object>() {
+				@Override
+				public int compare(Object o1, Object o2) {
+					return Double.compare(getTotal(o2), getTotal(o1));
+				}
+			});
+		}
+		return result;
+	}
+
+	private static double getTotal(Object stat) {
+		if (stat instanceof Map) {
+			Object total = ((Map<?, ?>) stat).get("total");
+			if (total instanceof Number) {
+				return ((Number) total).doubleValue();
+			}
+		}
+		return 0.0;
+	}
+}
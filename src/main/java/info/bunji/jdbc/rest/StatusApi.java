@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.rest;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import info.bunji.jdbc.logger.JdbcLogger;
+import info.bunji.jdbc.logger.JdbcLoggerFactory;
+import net.arnx.jsonic.JSON;
+
+/**
+ * 動作状況(キャッシュのヒット率など)を返すAPI
+ *
+ * @author f.kinoshita
+ */
+class StatusApi extends AbstractApi {
+
+	public StatusApi(ServletContext context) {
+		super(context);
+	}
+
+	/*
+	 * (非 Javadoc)
+	 * @see info.bunji.jdbc.rest.RestApi#getApiName()
+	 */
+	@Override
+	public String getApiName() {
+		return "status";
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse res)
+										throws ServletException, IOException {
+		BufferedOutputStream bos = null;
+		try {
+			bos = new BufferedOutputStream(res.getOutputStream());
+			res.setContentType("application/json; charset=UTF-8");
+
+			String host = hostName + ":" + req.getServerPort();
+
+			// response format
+			// {
+			//   jdbcurl1 : [
+			//     { host: xxx, sqlCacheHit: xxx, sqlCacheMiss: xxx, ... },
+			//   ],
+			//   ...
+			// }
+			//
+			Map<String, List<Map<String, Object>>> tmpMap = new TreeMap<String, List<Map<String, Object>>>();
+			for (JdbcLogger log : JdbcLoggerFactory.getLoggers()) {
+				Map<String, Object> status = log.getStatus();
+				status.put("host", host);
+				tmpMap.put(log.getDispUrl(), Arrays.asList(status));
+			}
+			JSON.encode(tmpMap, bos, false);
+
+			res.setStatus(HttpServletResponse.SC_OK);
+			bos.flush();
+		} catch(Exception e) {
+			logger.error(e.getMessage(), e);
+			res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+	}
+}
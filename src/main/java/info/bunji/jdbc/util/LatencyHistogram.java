@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ **********************************************************
+ * 実行時間の分布を保持するヒストグラム.
+ * <pre>
+ * HDR Histogramと同様の対数・線形の2段階のバケットで値を保持する。
+ * 値はマイクロ秒単位で、16未満はそのままの値、16以上は2のべき乗毎に
+ * 8分割したバケット(相対誤差12.5%以内)に集計する。
+ * 記録はロックなし(AtomicLongArray)で行い、百分位数は参照時に算出する。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+public class LatencyHistogram {
+
+	/** 2のべき乗毎の分割数(2^SUB_BITS) */
+	private static final int SUB_BITS = 3;
+
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	/** 値をそのまま保持する範囲 */
+	private static final int LINEAR_COUNT = SUB_COUNT * 2;
+
+	/** バケット数(long値の全範囲を保持できる数) */
+	private static final int BUCKET_COUNT = LINEAR_COUNT + (63 - (SUB_BITS + 1)) * SUB_COUNT;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 **********************************************
+	 * 値を記録する.
+	 *
+	 * @param micros elapsed time(μs)
+	 **********************************************
+	 */
+	public void record(long micros) {
+		buckets.incrementAndGet(indexOf(Math.max(micros, 0L)));
+	}
+
+	/**
+	 **********************************************
+	 * 百分位数を取得する.
+	 *
+	 * @param percentile percentile(0.0 - 100.0)
+	 * @return value(μs, バケットの上限値), or 0 if empty
+	 **********************************************
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) return 0L;
+
+		long target = (long) Math.ceil(total * Math.min(Math.max(percentile, 0.0), 100.0) / 100.0);
+		target = Math.max(target, 1L);
+		long sum = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			sum += counts[i];
+			if (sum >= target) {
+				return upperBoundOf(i);
+			}
+		}
+		return upperBoundOf(BUCKET_COUNT - 1);
+	}
+
+	/**
+	 **********************************************
+	 * 記録した件数を取得する.
+	 * @return count
+	 **********************************************
+	 */
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			total += buckets.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 **********************************************
+	 * 記録した内容をクリアする.
+	 **********************************************
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0L);
+		}
+	}
+
+	/**
+	 * 値に対応するバケットの位置を取得する.
+	 *
+	 * @param value value(>= 0)
+	 * @return bucket index
+	 */
+	static int indexOf(long value) {
+		if (value < LINEAR_COUNT) {
+			return (int) value;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		return LINEAR_COUNT + (exp - (SUB_BITS + 1)) * SUB_COUNT + sub;
+	}
+
+	/**
+	 * バケットに含まれる最大値を取得する.
+	 *
+	 * @param index bucket index
+	 * @return max value of bucket
+	 */
+	static long upperBoundOf(int index) {
+		if (index < LINEAR_COUNT) {
+			return index;
+		}
+		int exp = (index - LINEAR_COUNT) / SUB_COUNT + SUB_BITS + 1;
+		int sub = (index - LINEAR_COUNT) % SUB_COUNT;
+		long lower = (1L << exp) + ((long) sub << (exp - SUB_BITS));
+		return lower + (1L << (exp - SUB_BITS)) - 1;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ **********************************************************
+ * 固定長の複数生産者・単一消費者キュー.
+ * <pre>
+ * 生産者(複数スレッド)はロックなしで追加でき、満杯の場合は即座にfalseを返す。
+ * 取り出し({@link #poll()})は単一の消費者スレッドからのみ呼び出すこと。
+ * 容量は指定値以上の2のべき乗に切り上げる。
+ * </pre>
+ * @param <E> element type
+ * @author f.kinoshita
+ **********************************************************
+ */
+public class MpscQueue<E> {
+
+	/** 最大容量 */
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	/** 要素を保持する配列 */
+	private final AtomicReferenceArray<E> buffer;
+
+	/** スロット毎の状態(書込み可能な通番、または読込み可能な通番+1) */
+	private final AtomicLongArray sequences;
+
+	private final int mask;
+
+	/** 次に書き込む位置(生産者間で共有) */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** 次に読み込む位置(消費者のみが更新する) */
+	private volatile long head = 0L;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param capacity queue capacity
+	 **********************************************
+	 */
+	public MpscQueue(int capacity) {
+		int size = 1;
+		while (size < Math.min(Math.max(capacity, 1), MAX_CAPACITY)) {
+			size <<= 1;
+		}
+		buffer = new AtomicReferenceArray<E>(size);
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 **********************************************
+	 * 要素を追加する.
+	 *
+	 * @param e element(not null)
+	 * @return if added true, queue is full false
+	 **********************************************
+	 */
+	public boolean offer(E e) {
+		if (e == null) throw new NullPointerException();
+
+		while (true) {
+			long pos = tail.get();
+			int idx = (int) (pos & mask);
+			long diff = sequences.get(idx) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					buffer.set(idx, e);
+					// 書込み完了を消費者に公開する
+					sequences.set(idx, pos + 1);
+					return true;
+				}
+			} else if (diff < 0) {
+				// 消費者が追いついていない(満杯)
+				return false;
+			}
+			// 他の生産者と競合した場合は再試行
+		}
+	}
+
+	/**
+	 **********************************************
+	 * 先頭の要素を取り出す(消費者スレッド専用).
+	 *
+	 * @return element, or null if empty
+	 **********************************************
+	 */
+	public E poll() {
+		long pos = head;
+		int idx = (int) (pos & mask);
+		if (sequences.get(idx) != pos + 1) {
+			// 空、または生産者が書込み中
+			return null;
+		}
+		E e = buffer.get(idx);
+		buffer.set(idx, null);
+		// スロットを次の周回の書込み用に解放する
+		sequences.set(idx, pos + mask + 1);
+		head = pos + 1;
+		return e;
+	}
+
+	/**
+	 **********************************************
+	 * 保持している要素数(概算)を取得する.
+	 * @return element count
+	 **********************************************
+	 */
+	public int size() {
+		long size = tail.get() - head;
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	/**
+	 **********************************************
+	 * 空かどうかを判定する(概算).
+	 * @return if empty true
+	 **********************************************
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 **********************************************
+	 * 容量を取得する.
+	 * @return capacity
+	 **********************************************
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+}
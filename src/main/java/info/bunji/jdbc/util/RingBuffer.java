@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ **********************************************************
+ * 固定長のリングバッファ.
+ * <pre>
+ * 複数スレッドからロックなしでO(1)の追加が可能で、
+ * 容量を超えた場合は古いものから上書きされる。
+ * 参照時は追加順のスナップショットを返す。
+ * 容量の変更時は新しいものから容量分を引き継ぐが、
+ * 変更中に追加された要素は失われる場合がある。
+ * </pre>
+ * @param <E> element type
+ * @author f.kinoshita
+ **********************************************************
+ */
+public class RingBuffer<E> {
+
+	/** 追加した要素の通番 */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/** 要素を保持する配列 */
+	private volatile AtomicReferenceArray<Node<E>> slots;
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param capacity buffer capacity
+	 **********************************************
+	 */
+	public RingBuffer(int capacity) {
+		slots = new AtomicReferenceArray<Node<E>>(Math.max(capacity, 0));
+	}
+
+	/**
+	 **********************************************
+	 * 要素を追加する.
+	 *
+	 * 容量が0の場合は何もしない
+	 *
+	 * @param e element
+	 **********************************************
+	 */
+	public void add(E e) {
+		AtomicReferenceArray<Node<E>> buf = slots;
+		int capacity = buf.length();
+		if (capacity == 0) return;
+
+		long seq = sequence.getAndIncrement();
+		buf.set((int) (seq % capacity), new Node<E>(seq, e));
+	}
+
+	/**
+	 **********************************************
+	 * 保持している要素を追加順(古いものから)に取得する.
+	 * @return snapshot list
+	 **********************************************
+	 */
+	public List<E> snapshot() {
+		AtomicReferenceArray<Node<E>> buf = slots;
+		int capacity = buf.length();
+		List<E> list = new ArrayList<E>(capacity);
+		if (capacity == 0) return list;
+
+		long end = sequence.get();
+		for (long seq = Math.max(end - capacity, 0); seq < end; seq++) {
+			Node<E> node = buf.get((int) (seq % capacity));
+			// 書き込み前または上書き済みのものは除く
+			if (node != null && node.seq == seq) {
+				list.add(node.value);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 **********************************************
+	 * 容量を変更する.
+	 *
+	 * 新しいものから変更後の容量分の要素を引き継ぐ
+	 *
+	 * @param capacity new capacity
+	 **********************************************
+	 */
+	public synchronized void resize(int capacity) {
+		capacity = Math.max(capacity, 0);
+		if (capacity == slots.length()) return;
+
+		List<E> list = snapshot();
+		AtomicReferenceArray<Node<E>> buf = new AtomicReferenceArray<Node<E>>(capacity);
+		long end = sequence.get();
+		int cnt = Math.min(list.size(), capacity);
+		for (int i = 0; i < cnt; i++) {
+			long seq = end - cnt + i;
+			buf.set((int) (seq % capacity), new Node<E>(seq, list.get(list.size() - cnt + i)));
+		}
+		slots = buf;
+	}
+
+	/**
+	 **********************************************
+	 * 保持している要素を全て破棄する.
+	 *
+	 * 容量は変更しない
+	 **********************************************
+	 */
+	public synchronized void clear() {
+		slots = new AtomicReferenceArray<Node<E>>(slots.length());
+	}
+
+	/**
+	 **********************************************
+	 * get capacity.
+	 * @return capacity
+	 **********************************************
+	 */
+	public int capacity() {
+		return slots.length();
+	}
+
+	/**
+	 * 通番付きの要素
+	 */
+	private static class Node<E> {
+		private final long seq;
+		private final E value;
+
+		private Node(long seq, E value) {
+			this.seq = seq;
+			this.value = value;
+		}
+	}
+}
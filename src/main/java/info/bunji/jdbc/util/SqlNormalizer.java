@@ -0,0 +1,443 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.util;
+
+/**
+ **********************************************************
+ * SQLを集計用に正規化するユーティリティ.
+ * <pre>
+ * SQLを1パスでトークンに分解し、以下の変換を行うことで
+ * リテラルのみが異なるSQLを同一視できるようにする。
+ *  ・リテラル(文字列、数値、16進数)およびバインド変数(?、:name、$1)を"?"に置換
+ *  ・コメントを除去し、トークン間の空白を正規化
+ *    (基本は空白1つ、"("の後、")"と","の前、"."の前後は空白なし)
+ *  ・引用符で囲まれていない部分を小文字に変換
+ *  ・IN句のリスト(in (?, ?, ...))を"in (?)"にまとめる
+ * 以下の方言に対応する。
+ *  ・文字列の接頭辞(N'...'、E'...'、X'...'、B'...'、U&amp;'...')
+ *  ・Oracleの代替引用符(q'[...]'など)
+ *  ・PostgreSQLのドル引用符($$...$$、$tag$...$tag$)、型キャスト(::)
+ *  ・引用符付き識別子("..."、`...`、[...])はそのまま出力
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+public final class SqlNormalizer {
+
+	/** FNV-1a(64bit)の初期値 */
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	/** FNV-1a(64bit)の乗数 */
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/** 出力済みのトークン種別 */
+	private static final int T_NONE = 0;
+	private static final int T_WORD = 1;
+	private static final int T_VALUE = 2;
+	private static final int T_OPEN = 3;
+	private static final int T_CLOSE = 4;
+	private static final int T_COMMA = 5;
+	private static final int T_DOT = 6;
+	private static final int T_OTHER = 7;
+
+	/** IN句の解析状態 */
+	private static final int IN_NONE = 0;
+	private static final int IN_KEYWORD = 1;
+	private static final int IN_OPEN = 2;
+	private static final int IN_VALUE = 3;
+	private static final int IN_COMMA = 4;
+
+	private SqlNormalizer() {
+		// do nothing.
+	}
+
+	/**
+	 **********************************************
+	 * SQLを正規化する.
+	 *
+	 * @param sql target sql
+	 * @return normalized sql
+	 **********************************************
+	 */
+	public static String normalize(String sql) {
+		if (sql == null) return "";
+		return new Tokenizer(sql).normalize();
+	}
+
+	/**
+	 **********************************************
+	 * 正規化したSQLのフィンガープリント(64bit)を算出する.
+	 *
+	 * @param normalizedSql normalized sql
+	 * @return fingerprint(FNV-1a)
+	 **********************************************
+	 */
+	public static long fingerprint(String normalizedSql) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < normalizedSql.length(); i++) {
+			char c = normalizedSql.charAt(i);
+			hash ^= (c & 0xff);
+			hash *= FNV_PRIME;
+			hash ^= (c >>> 8);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 **********************************************
+	 * フィンガープリントを16進数の文字列に変換する.
+	 *
+	 * @param fingerprint fingerprint
+	 * @return 16 digits hex string
+	 **********************************************
+	 */
+	public static String toHex(long fingerprint) {
+		String hex = Long.toHexString(fingerprint);
+		if (hex.length() == 16) return hex;
+		StringBuilder buf = new StringBuilder(16);
+		for (int i = hex.length(); i < 16; i++) buf.append('0');
+		return buf.append(hex).toString();
+	}
+
+	/**
+	 ********************************************
+	 * 正規化用のトークナイザ.
+	 ********************************************
+	 */
+	private static final class Tokenizer {
+		private final String sql;
+		private final int len;
+		private final StringBuilder out;
+
+		/** 直前に出力したトークンの種別 */
+		private int last = T_NONE;
+
+		/** IN句の解析状態と、リストの開始位置 */
+		private int inState = IN_NONE;
+		private int inListStart = -1;
+
+		private Tokenizer(String sql) {
+			this.sql = sql;
+			this.len = sql.length();
+			this.out = new StringBuilder(len);
+		}
+
+		private String normalize() {
+			int i = 0;
+			while (i < len) {
+				char c = sql.charAt(i);
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (c == '-' && next(i) == '-') {
+					int end = sql.indexOf('\n', i + 2);
+					i = (end == -1 ? len : end + 1);
+				} else if (c == '/' && next(i) == '*') {
+					int end = sql.indexOf("*/", i + 2);
+					i = (end == -1 ? len : end + 2);
+				} else if (c == '\'') {
+					i = skipQuoted(i, '\'', false);
+					emitValue();
+				} else if (c == '"' || c == '`') {
+					int end = skipQuoted(i, c, false);
+					emit(T_WORD, sql, i, end);
+					i = end;
+				} else if (c == '[') {
+					// SQLServerの引用符付き識別子
+					int end = sql.indexOf(']', i + 1);
+					end = (end == -1 ? len : end + 1);
+					emit(T_WORD, sql, i, end);
+					i = end;
+				} else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next(i)))) {
+					i = skipNumber(i);
+					emitValue();
+				} else if ((c == '-' || c == '+') && Character.isDigit(next(i))
+						&& (last == T_OTHER || last == T_OPEN || last == T_COMMA)) {
+					// 演算子・区切りの直後の符号は数値リテラルに含める
+					i = skipNumber(i + 1);
+					emitValue();
+				} else if (Character.isLetter(c) || c == '_') {
+					i = word(i);
+				} else if (c == '?') {
+					i++;
+					emitValue();
+				} else if (c == ':' && next(i) != ':' && isWordStart(next(i))) {
+					// 名前付きバインド変数(:name)
+					i = skipWord(i + 1);
+					emitValue();
+				} else if (c == '$') {
+					i = dollar(i);
+				} else if (c == '(') {
+					i++;
+					emit(T_OPEN, "(");
+				} else if (c == ')') {
+					i++;
+					emit(T_CLOSE, ")");
+				} else if (c == ',') {
+					i++;
+					emit(T_COMMA, ",");
+				} else if (c == '.') {
+					i++;
+					emit(T_DOT, ".");
+				} else if (c == ';') {
+					i++;
+					emit(T_OTHER, ";");
+				} else {
+					i = operator(i);
+				}
+			}
+			return out.toString();
+		}
+
+		private char next(int i) {
+			return (i + 1 < len ? sql.charAt(i + 1) : 0);
+		}
+
+		private static boolean isWordStart(char c) {
+			return Character.isLetter(c) || c == '_';
+		}
+
+		private static boolean isWordPart(char c) {
+			return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+		}
+
+		private int skipWord(int i) {
+			while (i < len && isWordPart(sql.charAt(i))) i++;
+			return i;
+		}
+
+		/**
+		 * 識別子・キーワード、または接頭辞付きの文字列リテラル.
+		 */
+		private int word(int start) {
+			int end = skipWord(start);
+			if (end < len && sql.charAt(end) == '\'') {
+				String prefix = sql.substring(start, end).toLowerCase();
+				if (prefix.equals("q") || prefix.equals("nq")) {
+					// Oracleの代替引用符(q'[...]')
+					return emitValueAt(skipAlternativeQuoted(end));
+				} else if (prefix.equals("e")) {
+					// PostgreSQLのエスケープ文字列(E'...')
+					return emitValueAt(skipQuoted(end, '\'', true));
+				} else if (prefix.equals("n") || prefix.equals("x") || prefix.equals("b")) {
+					return emitValueAt(skipQuoted(end, '\'', false));
+				}
+			} else if (end + 1 < len && sql.charAt(end) == '&' && sql.charAt(end + 1) == '\''
+					&& end - start == 1 && Character.toLowerCase(sql.charAt(start)) == 'u') {
+				// Unicode文字列(U&'...')
+				return emitValueAt(skipQuoted(end + 1, '\'', false));
+			}
+			emitLower(start, end);
+			return end;
+		}
+
+		private int emitValueAt(int end) {
+			emitValue();
+			return end;
+		}
+
+		/**
+		 * ドル引用符($$...$$)、または位置指定のバインド変数($1).
+		 */
+		private int dollar(int start) {
+			if (Character.isDigit(next(start))) {
+				int i = start + 1;
+				while (i < len && Character.isDigit(sql.charAt(i))) i++;
+				emitValue();
+				return i;
+			}
+			int i = start + 1;
+			while (i < len && sql.charAt(i) != '$') {
+				char c = sql.charAt(i);
+				if (!isWordStart(c) && !(i > start + 1 && Character.isDigit(c))) {
+					emit(T_OTHER, "$");
+					return start + 1;
+				}
+				i++;
+			}
+			if (i >= len) {
+				emit(T_OTHER, "$");
+				return start + 1;
+			}
+			String tag = sql.substring(start, i + 1);
+			int end = sql.indexOf(tag, i + 1);
+			emitValue();
+			return (end == -1 ? len : end + tag.length());
+		}
+
+		/**
+		 * 演算子(連続する記号を1トークンとする).
+		 */
+		private int operator(int start) {
+			int i = start + 1;
+			while (i < len) {
+				char c = sql.charAt(i);
+				if ("<>=!|&+-*/%^~:@#".indexOf(c) == -1) break;
+				// "--"、"/*"はコメント、符号は数値の前で区切る
+				if ((c == '-' && next(i) == '-') || (c == '/' && next(i) == '*')) break;
+				if ((c == '-' || c == '+') && (Character.isDigit(next(i)) || next(i) == '.')) break;
+				i++;
+			}
+			emit(T_OTHER, sql, start, i);
+			return i;
+		}
+
+		private int skipQuoted(int start, char quote, boolean backslash) {
+			int i = start + 1;
+			while (i < len) {
+				char c = sql.charAt(i);
+				if (backslash && c == '\\') {
+					i += 2;
+					continue;
+				}
+				if (c == quote) {
+					if (i + 1 < len && sql.charAt(i + 1) == quote) {
+						i += 2;
+						continue;
+					}
+					return i + 1;
+				}
+				i++;
+			}
+			return len;
+		}
+
+		private int skipAlternativeQuoted(int quotePos) {
+			if (quotePos + 1 >= len) return len;
+			char open = sql.charAt(quotePos + 1);
+			char close;
+			switch (open) {
+			case '[': close = ']'; break;
+			case '{': close = '}'; break;
+			case '<': close = '>'; break;
+			case '(': close = ')'; break;
+			default:  close = open; break;
+			}
+			int i = quotePos + 2;
+			while (i + 1 < len) {
+				if (sql.charAt(i) == close && sql.charAt(i + 1) == '\'') {
+					return i + 2;
+				}
+				i++;
+			}
+			return len;
+		}
+
+		private int skipNumber(int start) {
+			int i = start;
+			if (sql.charAt(i) == '0' && (next(i) == 'x' || next(i) == 'X')) {
+				i += 2;
+				while (i < len && Character.digit(sql.charAt(i), 16) != -1) i++;
+				return i;
+			}
+			while (i < len) {
+				char c = sql.charAt(i);
+				if (Character.isDigit(c) || c == '.') {
+					i++;
+				} else if ((c == 'e' || c == 'E') && i + 1 < len
+						&& (Character.isDigit(sql.charAt(i + 1))
+							|| ((sql.charAt(i + 1) == '-' || sql.charAt(i + 1) == '+')
+									&& i + 2 < len && Character.isDigit(sql.charAt(i + 2))))) {
+					i += 2;
+				} else {
+					break;
+				}
+			}
+			// 数値の直後の型接尾辞(1L、1.5fなど)
+			while (i < len && Character.isLetter(sql.charAt(i))) i++;
+			return i;
+		}
+
+		private void emitValue() {
+			emit(T_VALUE, "?");
+		}
+
+		private void emitLower(int start, int end) {
+			space(T_WORD);
+			int pos = out.length();
+			for (int i = start; i < end; i++) {
+				out.append(Character.toLowerCase(sql.charAt(i)));
+			}
+			updateInState(T_WORD, pos);
+			last = T_WORD;
+		}
+
+		private void emit(int type, String token) {
+			space(type);
+			int pos = out.length();
+			out.append(token);
+			updateInState(type, pos);
+			last = type;
+		}
+
+		private void emit(int type, String src, int start, int end) {
+			space(type);
+			int pos = out.length();
+			out.append(src, start, end);
+			updateInState(type, pos);
+			last = type;
+		}
+
+		/**
+		 * トークン間の空白を出力する.
+		 */
+		private void space(int type) {
+			if (last == T_NONE || last == T_OPEN || last == T_DOT) return;
+			if (type == T_CLOSE || type == T_COMMA || type == T_DOT) return;
+			out.append(' ');
+		}
+
+		/**
+		 * IN句のリストをまとめる.
+		 */
+		private void updateInState(int type, int pos) {
+			switch (inState) {
+			case IN_KEYWORD:
+				if (type == T_OPEN) {
+					inState = IN_OPEN;
+					inListStart = out.length();
+					return;
+				}
+				break;
+			case IN_OPEN:
+			case IN_COMMA:
+				if (type == T_VALUE) {
+					inState = IN_VALUE;
+					return;
+				}
+				break;
+			case IN_VALUE:
+				if (type == T_COMMA) {
+					inState = IN_COMMA;
+					return;
+				} else if (type == T_CLOSE) {
+					out.setLength(inListStart);
+					out.append("?)");
+					inState = IN_NONE;
+					return;
+				}
+				break;
+			default:
+				break;
+			}
+			inState = IN_NONE;
+			if (type == T_WORD && out.length() - pos == 2
+					&& out.charAt(pos) == 'i' && out.charAt(pos + 1) == 'n') {
+				inState = IN_KEYWORD;
+			}
+		}
+	}
+}
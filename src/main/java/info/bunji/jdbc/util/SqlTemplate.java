@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.util;
+
+import java.util.Arrays;
+
+/**
+ **********************************************************
+ * プレースホルダ(?)の位置を解析したSQL.
+ * <pre>
+ * SQLをプレースホルダで分割した文字列を保持し、
+ * パラメータとの結合のみで出力用のSQLを生成できるようにする。
+ * インスタンスは不変のため、スレッド間で共有可能。
+
+ * 以下はプレースホルダとして扱わない。
+ *  ・文字列リテラル('...')、引用符付き識別子("..."、`...`)
+ *  ・PostgreSQLのドル引用符($$...$$、$tag$...$tag$)
+ *  ・コメント(-- ...、/* ... *&#47;)
+ *  ・PostgreSQLの演算子(?|、?&amp;)およびエスケープ(??)
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+public final class SqlTemplate {
+
+	/** 元のSQL */
+	private final String sql;
+
+	/** プレースホルダの位置 */
+	private final int[] positions;
+
+	/** プレースホルダで分割したSQL(プレースホルダ数 + 1) */
+	private final String[] segments;
+
+	/** 正規化したSQL(初回参照時に生成する) */
+	private volatile String normalizedSql = null;
+
+	/** 正規化したSQLのフィンガープリント(normalizedSqlの設定前に算出する) */
+	private long fingerprint;
+
+	private SqlTemplate(String sql, int[] positions) {
+		this.sql = sql;
+		this.positions = positions;
+		this.segments = new String[positions.length + 1];
+		int last = 0;
+		for (int i = 0; i < positions.length; i++) {
+			segments[i] = sql.substring(last, positions[i]);
+			last = positions[i] + 1;
+		}
+		segments[positions.length] = sql.substring(last);
+	}
+
+	/**
+	 **********************************************
+	 * SQLを解析する.
+	 * @param sql parameterized sql
+	 * @return parsed sql
+	 **********************************************
+	 */
+	public static SqlTemplate parse(String sql) {
+		if (sql == null) sql = "";
+
+		int[] pos = new int[8];
+		int cnt = 0;
+		int len = sql.length();
+		int i = 0;
+		while (i < len) {
+			char c = sql.charAt(i);
+			switch (c) {
+			case '\'':
+			case '"':
+			case '`':
+				i = skipQuoted(sql, i, c);
+				break;
+			case '-':
+				if (i + 1 < len && sql.charAt(i + 1) == '-') {
+					int end = sql.indexOf('\n', i + 2);
+					i = (end == -1 ? len : end + 1);
+				} else {
+					i++;
+				}
+				break;
+			case '/':
+				if (i + 1 < len && sql.charAt(i + 1) == '*') {
+					int end = sql.indexOf("*/", i + 2);
+					i = (end == -1 ? len : end + 2);
+				} else {
+					i++;
+				}
+				break;
+			case '$':
+				i = skipDollarQuoted(sql, i);
+				break;
+			case '?':
+				char next = (i + 1 < len ? sql.charAt(i + 1) : 0);
+				if (next == '?') {
+					// ??(エスケープされた演算子)
+					i += 2;
+				} else if (next == '&' || (next == '|' && (i + 2 >= len || sql.charAt(i + 2) != '|'))) {
+					// ?& ?| (jsonb演算子)
+					i += 2;
+				} else {
+					if (cnt == pos.length) pos = Arrays.copyOf(pos, cnt * 2);
+					pos[cnt++] = i;
+					i++;
+				}
+				break;
+			default:
+				i++;
+				break;
+			}
+		}
+		return new SqlTemplate(sql, Arrays.copyOf(pos, cnt));
+	}
+
+	/**
+	 * 引用符で囲まれた範囲を読み飛ばす.
+	 *
+	 * 引用符の連続("''")はエスケープとして扱う
+	 *
+	 * @param sql sql
+	 * @param start start quote position
+	 * @param quote quote char
+	 * @return next position
+	 */
+	private static int skipQuoted(String sql, int start, char quote) {
+		int len = sql.length();
+		int i = start + 1;
+		while (i < len) {
+			if (sql.charAt(i) == quote) {
+				if (i + 1 < len && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return len;
+	}
+
+	/**
+	 * ドル引用符で囲まれた範囲を読み飛ばす.
+	 *
+	 * 識別子の一部($を含む識別子や$1など)の場合は1文字のみ進める
+	 *
+	 * @param sql sql
+	 * @param start start position
+	 * @return next position
+	 */
+	private static int skipDollarQuoted(String sql, int start) {
+		if (start > 0 && Character.isJavaIdentifierPart(sql.charAt(start - 1))) {
+			return start + 1;
+		}
+		int len = sql.length();
+		int i = start + 1;
+		while (i < len && sql.charAt(i) != '$') {
+			char c = sql.charAt(i);
+			if (!Character.isLetter(c) && c != '_' && !(i > start + 1 && Character.isDigit(c))) {
+				return start + 1;
+			}
+			i++;
+		}
+		if (i >= len) return len;
+
+		String tag = sql.substring(start, i + 1);
+		int end = sql.indexOf(tag, i + 1);
+		return (end == -1 ? len : end + tag.length());
+	}
+
+	/**
+	 **********************************************
+	 * get original sql.
+	 * @return sql
+	 **********************************************
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 **********************************************
+	 * get normalized sql.
+	 *
+	 * リテラルを除去した集計用のSQLを返す(初回のみ生成)
+	 *
+	 * @return normalized sql
+	 * @see SqlNormalizer#normalize(String)
+	 **********************************************
+	 */
+	public String getNormalizedSql() {
+		String normalized = normalizedSql;
+		if (normalized == null) {
+			normalized = SqlNormalizer.normalize(sql);
+			// volatileの書込みによりfingerprintも公開される
+			fingerprint = SqlNormalizer.fingerprint(normalized);
+			normalizedSql = normalized;
+		}
+		return normalized;
+	}
+
+	/**
+	 **********************************************
+	 * get fingerprint.
+	 *
+	 * 正規化したSQLの64bitハッシュを返す(初回のみ算出)
+	 *
+	 * @return fingerprint
+	 * @see SqlNormalizer#fingerprint(String)
+	 **********************************************
+	 */
+	public long getFingerprint() {
+		getNormalizedSql();
+		return fingerprint;
+	}
+
+	/**
+	 **********************************************
+	 * get placeholder count.
+	 * @return placeholder count
+	 **********************************************
+	 */
+	public int getParameterCount() {
+		return positions.length;
+	}
+
+	/**
+	 **********************************************
+	 * get placeholder position.
+	 * @param index placeholder index(0 origin)
+	 * @return position in sql
+	 **********************************************
+	 */
+	public int getPosition(int index) {
+		return positions[index];
+	}
+
+	/**
+	 **********************************************
+	 * get sql segment.
+	 *
+	 * index番目のプレースホルダの直前までの文字列を返す。
+	 * index=プレースホルダ数の場合は最後のプレースホルダ以降の文字列を返す。
+	 *
+	 * @param index segment index(0 origin)
+	 * @return sql segment
+	 **********************************************
+	 */
+	public String getSegment(int index) {
+		return segments[index];
+	}
+}
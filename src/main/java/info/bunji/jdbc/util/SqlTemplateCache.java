@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 Fumiharu Kinoshita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.bunji.jdbc.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ **********************************************************
+ * 解析済みSQLのキャッシュ.
+ * <pre>
+ * SQL文字列をキーにSqlTemplateを保持する。
+ * 保持件数を超えた場合は、以下のいずれかの方式で削除する。
+ *  lru  : 長く参照されていないもの(CLOCK方式による近似)
+ *  fifo : 最も古く登録されたもの
+ * 保持件数に0以下を指定した場合はキャッシュしない。
+ *
+ * lruは登録順のキューと参照ビットで管理し、削除時は先頭から
+ * 参照済みのものを末尾に戻して(参照ビットはクリア)未参照のものを削除する。
+ * 参照時は参照ビットが未設定の場合のみ書き込むため、頻繁に参照されるSQLでも
+ * 書き込みが競合せず、削除は償却O(1)で行える。
+ * 登録後に参照されないSQL(リテラルを埋め込んだSQLなど)は
+ * 参照済みのSQLより先に削除される。
+ * </pre>
+ * @author f.kinoshita
+ **********************************************************
+ */
+public class SqlTemplateCache {
+
+	/** eviction:最も長く参照されていないものから削除 */
+	public static final String EVICTION_LRU = "lru";
+
+	/** eviction:最も古く登録されたものから削除 */
+	public static final String EVICTION_FIFO = "fifo";
+
+	private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+	/** 登録順(lru時は参照済みのものを末尾に戻す) */
+	private final Queue<CacheEntry> insertionOrder = new ConcurrentLinkedQueue<CacheEntry>();
+
+	private volatile int maxSize;
+
+	private volatile boolean isLru;
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 **********************************************
+	 * constractor
+	 * @param maxSize max cache entries
+	 * @param eviction "lru" or "fifo"
+	 **********************************************
+	 */
+	public SqlTemplateCache(int maxSize, String eviction) {
+		this.maxSize = maxSize;
+		this.isLru = isLru(eviction);
+	}
+
+	private static boolean isLru(String eviction) {
+		if (EVICTION_LRU.equalsIgnoreCase(eviction)) {
+			return true;
+		} else if (EVICTION_FIFO.equalsIgnoreCase(eviction)) {
+			return false;
+		}
+		throw new IllegalArgumentException("unknown eviction.");
+	}
+
+	/**
+	 **********************************************
+	 * 解析済みのSQLを取得する.
+	 *
+	 * キャッシュに存在しない場合は解析して登録する
+	 *
+	 * @param sql parameterized sql
+	 * @return parsed sql
+	 **********************************************
+	 */
+	public SqlTemplate get(String sql) {
+		if (sql == null || maxSize <= 0) {
+			missCount.increment();
+			return SqlTemplate.parse(sql);
+		}
+
+		CacheEntry entry = cache.get(sql);
+		if (entry != null) {
+			hitCount.increment();
+			// 変化する場合のみ書き込む
+			if (isLru && !entry.referenced) entry.referenced = true;
+			return entry.template;
+		}
+
+		missCount.increment();
+		SqlTemplate template = SqlTemplate.parse(sql);
+		entry = new CacheEntry(sql, template);
+		if (cache.putIfAbsent(sql, entry) == null) {
+			insertionOrder.add(entry);
+			evict();
+		}
+		return template;
+	}
+
+	/**
+	 * 保持件数を超えた分を削除する.
+	 */
+	private void evict() {
+		int size = cache.size();
+		if (size <= maxSize) return;
+
+		// 参照済みのものを全て戻した場合でも1周で未参照のものが見つかる
+		// (キューのsize()は全件を走査するため、保持件数から上限を求める)
+		int limit = size * 2 + 1;
+		while (cache.size() > maxSize && limit-- > 0) {
+			CacheEntry entry = insertionOrder.poll();
+			if (entry == null) break;
+			if (cache.get(entry.key) != entry) continue;	// 削除済み
+
+			if (isLru && entry.referenced) {
+				// 参照済みのものは末尾に戻す
+				entry.referenced = false;
+				insertionOrder.add(entry);
+			} else if (cache.remove(entry.key, entry)) {
+				evictionCount.increment();
+			}
+		}
+	}
+
+	/**
+	 **********************************************
+	 * 保持件数と削除方式を変更する.
+	 *
+	 * 削除方式が変更された場合はキャッシュをクリアする
+	 *
+	 * @param maxSize max cache entries
+	 * @param eviction "lru" or "fifo"
+	 **********************************************
+	 */
+	public synchronized void configure(int maxSize, String eviction) {
+		boolean lru = isLru(eviction);
+		if (lru != isLru || maxSize <= 0) {
+			this.isLru = lru;
+			clear();
+		}
+		this.maxSize = maxSize;
+		evict();
+	}
+
+	/**
+	 **********************************************
+	 * キャッシュをクリアする.
+	 **********************************************
+	 */
+	public void clear() {
+		cache.clear();
+		insertionOrder.clear();
+	}
+
+	public int getMaxSize() { return maxSize; }
+
+	public String getEviction() { return isLru ? EVICTION_LRU : EVICTION_FIFO; }
+
+	public int size() { return cache.size(); }
+
+	public long getHitCount() { return hitCount.sum(); }
+
+	public long getMissCount() { return missCount.sum(); }
+
+	public long getEvictionCount() { return evictionCount.sum(); }
+
+	/**
+	 * キャッシュのエントリ
+	 */
+	private static class CacheEntry {
+		private final String key;
+		private final SqlTemplate template;
+		/** 参照ビット(lru時のみ利用) */
+		private volatile boolean referenced = false;
+
+		private CacheEntry(String key, SqlTemplate template) {
+			this.key = key;
+			this.template = template;
+		}
+	}
+}
@@ -15,6 +15,7 @@ app.controller("appCtrl", function($scope, $http, $q, $interval, hotkeys) {
 	$scope.allQueriesTab = "[ALL]";
 
 	$scope.historyMap = {};
+	$scope.historyFingerprint = null;
 	$scope.runningMap = {};
 	$scope.settings = {};
 	$scope.servers = "";
@@ -162,6 +163,19 @@ app.controller("appCtrl", function($scope, $http, $q, $interval, hotkeys) {
 		return defer.promise;
 	}
 
+	/**
+	 **********************************
+	 * 正規化したSQL(フィンガープリント)による絞り込みの切替
+	 **********************************
+	 */
+	$scope.toggleFingerprint = function(fingerprint) {
+		$scope.historyFingerprint = ($scope.historyFingerprint == fingerprint ? null : fingerprint);
+	}
+
+	$scope.fingerprintFilter = function(elem) {
+		return $scope.historyFingerprint == null || elem.fingerprint == $scope.historyFingerprint;
+	}
+
 	/**
 	 **********************************
 	 * 実行中SQLのロード
@@ -6,6 +6,8 @@ package info.bunji.jdbc;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -17,6 +19,8 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import info.bunji.jdbc.logger.JdbcLogger;
+
 /**
  * @author f.kinoshita
  *
@@ -58,6 +62,25 @@ public class ConnectionProxyTest extends AbstractTest {
 		assertThat(proxy.getConnectionId(), is("testId"));
 	}
 
+	@Test
+	public void testInheritLogger() {
+		JdbcLogger logger = mock(JdbcLogger.class);
+		ConnectionProxy proxy = new ConnectionProxy(conn, REAL_URL, "testId", logger);
+		assertThat(proxy.getLogger(), is(sameInstance(logger)));
+
+		// Statementはコネクションのロガーを引き継ぐ
+		StatementProxy stmt = new StatementProxy(null, "select 1", proxy);
+		assertThat(stmt.getLogger(), is(sameInstance(logger)));
+		assertThat(stmt.getUrl(), is(REAL_URL));
+		assertThat(stmt.getConnectionId(), is("testId"));
+		assertThat(stmt.getSql(), is("select 1"));
+		assertThat(stmt.getConnectionKey(), is(proxy.getConnectionKey()));
+
+		// 識別キーは表示用のIDが同じでもコネクション毎に異なる
+		ConnectionProxy other = new ConnectionProxy(conn, REAL_URL, "testId", logger);
+		assertThat(other.getConnectionKey() != proxy.getConnectionKey(), is(true));
+	}
+
 	/**
 	 * @throws Exception 意図しない例外
 	 */
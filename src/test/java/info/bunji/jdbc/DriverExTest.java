@@ -5,6 +5,12 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
 
 import java.sql.Driver;
 import java.sql.DriverManager;
@@ -15,6 +21,9 @@ import java.util.Properties;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import info.bunji.jdbc.logger.JdbcLogger;
+import info.bunji.jdbc.logger.JdbcLoggerFactory;
+
 /**
  * @author f.kinoshita
  */
@@ -54,6 +63,128 @@ public class DriverExTest extends AbstractTest {
 		assertThat(driver.connect(REAL_URL, new Properties()), is(nullValue()));
 	}
 
+	@Test
+	public void testDeregisteredDriver() throws Exception {
+		String url = DriverEx.DRIVER_URL_PREFIX + "dummy:test";
+		Driver dummy = new DummyDriver();
+		DriverManager.registerDriver(dummy);
+		try {
+			assertThat(driver.acceptsURL(url), is(true));
+		} finally {
+			DriverManager.deregisterDriver(dummy);
+		}
+
+		// 登録解除された実ドライバは破棄される
+		DriverProxy.invalidateDrivers();
+		try {
+			driver.acceptsURL(url);
+			fail();
+		} catch (SQLException e) {
+			// no suitable driver
+		}
+		assertThat(driver.acceptsURL(ACCEPT_URL), is(true));
+	}
+
+	@Test
+	public void testConnectFailed() throws Exception {
+		String url = DriverEx.DRIVER_URL_PREFIX + "dummy:failed";
+		Driver dummy = new FailedDriver();
+		DriverManager.registerDriver(dummy);
+		try {
+			assertThat(driver.acceptsURL(url), is(true));
+		} finally {
+			DriverManager.deregisterDriver(dummy);
+		}
+
+		try {
+			driver.connect(url, new Properties());
+			fail();
+		} catch (SQLException e) {
+			assertThat(e.getMessage(), is("connect failed"));
+		}
+
+		// 接続に失敗した時点で登録解除された実ドライバは破棄される
+		try {
+			driver.acceptsURL(url);
+			fail();
+		} catch (SQLException e) {
+			// no suitable driver
+		}
+	}
+
+	@Test
+	public void testCollectedDriver() throws Exception {
+		String url = DriverEx.DRIVER_URL_PREFIX + "dummy:collected";
+		Driver dummy = new DummyDriver();
+		WeakReference<Driver> ref = new WeakReference<Driver>(dummy);
+		DriverManager.registerDriver(dummy);
+		try {
+			assertThat(driver.acceptsURL(url), is(true));
+		} finally {
+			DriverManager.deregisterDriver(dummy);
+		}
+
+		// 解決済みの実ドライバを保持し続けない
+		dummy = null;
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assumeThat(ref.get(), is(nullValue()));
+
+		try {
+			driver.acceptsURL(url);
+			fail();
+		} catch (SQLException e) {
+			// no suitable driver
+		}
+		assertThat(driver.getMajorVersion() > 0, is(true));
+	}
+
+	@Test
+	public void testLoggingSettings() throws Exception {
+		String url = DriverEx.DRIVER_URL_PREFIX + "h2:mem:settingTest";
+		Properties p = new Properties();
+		p.setProperty("user", "sa");
+		p.setProperty("logging.historyCount", "7");
+		try (Connection conn = driver.connect(url, p)) {
+			// ロギング設定は実ドライバに渡さない
+			assertThat(p.containsKey("logging.historyCount"), is(false));
+			assertThat(p.getProperty("user"), is("sa"));
+		}
+		JdbcLogger logger = JdbcLoggerFactory.getLogger("jdbc:h2:mem:settingTest");
+		assertThat(logger.getSetting().get("historyCount"), is((Object) 7));
+
+		// 同じ設定の場合は再適用しない
+		long version = logger.getSettingVersion();
+		p.setProperty("logging.historyCount", "7");
+		try (Connection conn = driver.connect(url, p)) {}
+		assertThat(logger.getSettingVersion(), is(version));
+
+		// Loggerの設定が変更された場合は再適用する
+		logger.setSetting(Collections.singletonMap("historyCount", (Object) 3));
+		p.setProperty("logging.historyCount", "7");
+		try (Connection conn = driver.connect(url, p)) {}
+		assertThat(logger.getSetting().get("historyCount"), is((Object) 7));
+
+		// 設定が変わった場合は適用する
+		p.setProperty("logging.historyCount", "9");
+		try (Connection conn = driver.connect(url, p)) {}
+		assertThat(logger.getSetting().get("historyCount"), is((Object) 9));
+	}
+
+	@Test
+	public void testExtractSettings() {
+		Properties p = new Properties();
+		p.setProperty("user", "sa");
+		assertThat(DriverProxy.extractSettings(p).isEmpty(), is(true));
+		assertThat(p.size(), is(1));
+
+		p.setProperty("logging.format", "true");
+		assertThat(DriverProxy.extractSettings(p), is(Collections.singletonMap("format", (Object) "true")));
+		assertThat(p.size(), is(1));
+	}
+
 	@Test
 	public void testConnect2() throws Exception {
 		Driver d = new DriverEx();
@@ -125,4 +256,18 @@ public class DriverExTest extends AbstractTest {
 		d.getParentLogger();
 		fail();
 	}
+
+	public static class DummyDriver extends org.h2.Driver {
+		@Override
+		public boolean acceptsURL(String url) {
+			return url != null && url.startsWith("jdbc:dummy:");
+		}
+	}
+
+	public static class FailedDriver extends DummyDriver {
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+			throw new SQLException("connect failed");
+		}
+	}
 }
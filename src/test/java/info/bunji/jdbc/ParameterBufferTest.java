@@ -0,0 +1,119 @@
+package info.bunji.jdbc;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.sql.Types;
+
+import org.junit.Test;
+
+public class ParameterBufferTest {
+
+	@Test
+	public void testPrimitiveValue() {
+		ParameterBuffer buf = new ParameterBuffer();
+		buf.setLong(1, Types.INTEGER, 10);
+		buf.setLong(2, Types.BIGINT, 20L);
+		buf.setLong(3, Types.SMALLINT, 30);
+		buf.setDouble(4, Types.FLOAT, 1.1f);
+		buf.setDouble(5, Types.DOUBLE, 1.1d);
+		buf.setBoolean(6, Types.BOOLEAN, true);
+		buf.setObject(7, Types.CHAR, "abc");
+
+		assertThat(buf.size(), is(7));
+		// 出力時に設定時の型でボクシングする
+		assertThat(buf.getValue(0), is(instanceOf(Integer.class)));
+		assertThat(buf.getValue(0), is((Object) 10));
+		assertThat(buf.getValue(1), is((Object) 20L));
+		assertThat(buf.getValue(2), is((Object) (short) 30));
+		assertThat(buf.getValue(3).toString(), is("1.1"));
+		assertThat(buf.getValue(4), is((Object) 1.1d));
+		assertThat(buf.getValue(5), is((Object) true));
+		assertThat(buf.getValue(6), is((Object) "abc"));
+	}
+
+	@Test
+	public void testClearAndReuse() {
+		ParameterBuffer buf = new ParameterBuffer();
+		for (int i = 1; i <= 50; i++) {
+			buf.setLong(i, Types.INTEGER, i);
+		}
+		assertThat(buf.size(), is(50));
+
+		buf.clear();
+		assertThat(buf.size(), is(0));
+
+		// 間のパラメータが未設定の場合
+		buf.setObject(3, Types.CHAR, "c");
+		assertThat(buf.size(), is(3));
+		assertThat(buf.isSet(0), is(false));
+		assertThat(buf.getValue(0), is(nullValue()));
+		assertThat(buf.getValue(2), is((Object) "c"));
+	}
+
+	@Test
+	public void testCopy() {
+		ParameterBuffer buf = new ParameterBuffer();
+		buf.setLong(1, Types.INTEGER, 1);
+		buf.addNamed("p2", Types.CHAR, "b");
+		ParameterBuffer copy = buf.copy();
+
+		// 複製元の変更は影響しない
+		buf.setLong(1, Types.INTEGER, 2);
+		buf.clear();
+		assertThat(copy.size(), is(2));
+		assertThat(copy.getValue(0), is((Object) 1));
+		assertThat(copy.getName(1), is("p2"));
+		assertThat(copy.getValue(1), is((Object) "b"));
+	}
+
+	@Test
+	public void testCopyTo() {
+		ParameterBuffer buf = new ParameterBuffer();
+		buf.addNamed("p1", Types.CHAR, "a");
+		buf.setLong(2, Types.INTEGER, 2);
+		ParameterBuffer reuse = buf.copy();
+
+		buf.clear();
+		buf.setLong(1, Types.INTEGER, 1);
+		// 領域が足りる場合は複製先を再利用する
+		ParameterBuffer copy = buf.copyTo(reuse);
+		assertThat(copy == reuse, is(true));
+		assertThat(copy.size(), is(1));
+		assertThat(copy.getName(0), is(nullValue()));
+		assertThat(copy.getValue(0), is((Object) 1));
+
+		// 領域が不足する場合は新たに生成する
+		for (int i = 1; i <= 20; i++) {
+			buf.setLong(i, Types.INTEGER, i);
+		}
+		copy = buf.copyTo(reuse);
+		assertThat(copy == reuse, is(false));
+		assertThat(copy.size(), is(20));
+		assertThat(copy.getValue(19), is((Object) 20));
+	}
+
+	@Test
+	public void testHash() {
+		ParameterBuffer buf1 = new ParameterBuffer();
+		buf1.setLong(1, Types.INTEGER, 1);
+		buf1.setObject(2, Types.VARCHAR, "a");
+		ParameterBuffer buf2 = buf1.copy();
+		assertThat(buf1.hash() == buf2.hash(), is(true));
+
+		buf2.setLong(1, Types.INTEGER, 2);
+		assertThat(buf1.hash() == buf2.hash(), is(false));
+
+		buf2.clear();
+		buf2.setLong(1, Types.INTEGER, 1);
+		buf2.setObject(2, Types.VARCHAR, "a");
+		assertThat(buf1.hash() == buf2.hash(), is(true));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidIndex() {
+		new ParameterBuffer().setLong(0, Types.INTEGER, 1);
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ *
+ */
+package info.bunji.jdbc;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+/**
+ * @author f.kinoshita
+ */
+public class QueryIdGeneratorTest {
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testNext() throws Exception {
+		String id1 = QueryIdGenerator.next(false);
+		String id2 = QueryIdGenerator.next(false);
+		assertThat(id1.startsWith(DriverEx.MACHINE_ID + DriverEx.BASE_CONN_ID + "-"), is(true));
+		assertThat(id1, is(not(id2)));
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testNextUuid() throws Exception {
+		String id = QueryIdGenerator.next(true);
+		assertThat(UUID.fromString(id).toString(), is(id));
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testConcurrentNext() throws Exception {
+		final Set<String> ids = ConcurrentHashMap.newKeySet();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) ids.add(QueryIdGenerator.next(false));
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) t.join();
+		assertThat(ids.size(), is(40000));
+	}
+}
@@ -6,11 +6,18 @@ package info.bunji.jdbc;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
 import java.sql.BatchUpdateException;
 import java.sql.CallableStatement;
 import java.sql.Connection;
@@ -21,12 +28,24 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import info.bunji.jdbc.StatementProxy.MethodInfo;
+import info.bunji.jdbc.StatementProxy.MethodType;
+import info.bunji.jdbc.logger.JdbcLogger;
+import info.bunji.jdbc.logger.JdbcLoggerFactory;
+import info.bunji.jdbc.logger.impl.QueryInfo;
+import info.bunji.jdbc.specifics.DefaultRdbmsSpecifics;
+import info.bunji.jdbc.util.SqlTemplate;
+
 /**
  * @author f.kinoshita
  *
@@ -61,6 +80,178 @@ public class StatementProxyTest extends AbstractTest {
 		super.tearDown();
 	}
 
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testFetchLogging() throws Exception {
+		JdbcLogger logger = JdbcLoggerFactory.getLogger(REAL_URL);
+		logger.setSetting(Collections.<String, Object>singletonMap("fetchLogging", true));
+		try {
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery("SELECT * from test where aaa is not null");
+			assertThat(rs.getStatement(), is(sameInstance(stmt)));
+			long rows = 0;
+			while (rs.next()) rows++;
+			rs.close();
+
+			QueryInfo qi = findHistory(logger, "SELECT * from test where aaa is not null");
+			assertThat(qi, is(notNullValue()));
+			assertThat(qi.getRows(), is(rows));
+			assertThat(qi.getFetchElapsed() >= 0, is(true));
+
+			// 途中でcloseした場合もcloseまでの結果を記録する
+			PreparedStatement pstmt = conn.prepareStatement("SELECT * from test where aaa is null or aaa is not null");
+			rs = pstmt.executeQuery();
+			rs.next();
+			rs.close();
+			qi = findHistory(logger, "SELECT * from test where aaa is null or aaa is not null");
+			assertThat(qi.getRows(), is(1L));
+		} finally {
+			logger.setSetting(Collections.<String, Object>singletonMap("fetchLogging", false));
+		}
+
+		// 無効時は計測しない
+		ResultSet rs = conn.createStatement().executeQuery("SELECT aaa from test");
+		while (rs.next());
+		rs.close();
+		assertThat(findHistory(logger, "SELECT aaa from test").getRows(), is(nullValue()));
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testFetchLoggingThreshold() throws Exception {
+		JdbcLogger logger = JdbcLoggerFactory.getLogger(REAL_URL);
+		Object threshold = logger.getSetting().get("timeThreshold");
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put("fetchLogging", true);
+		settings.put("timeThreshold", 50);
+		logger.setSetting(settings);
+		try {
+			// 実行は閾値未満でもフェッチを含めて閾値を超えた場合は出力する
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery("SELECT aaa, 'slow fetch' from test");
+			long rows = 0;
+			while (rs.next()) {
+				rows++;
+				Thread.sleep(60);
+			}
+			rs.close();
+			QueryInfo qi = findHistory(logger, "SELECT aaa, 'slow fetch' from test");
+			assertThat(qi, is(notNullValue()));
+			assertThat(qi.getRows(), is(rows));
+			assertThat(qi.getFetchElapsed() >= 50, is(true));
+
+			// 実行・フェッチともに閾値未満の場合は出力しない
+			rs = stmt.executeQuery("SELECT aaa, 'fast fetch' from test");
+			while (rs.next());
+			rs.close();
+			assertThat(findHistory(logger, "SELECT aaa, 'fast fetch' from test"), is(nullValue()));
+
+			// フェッチせずにStatementをcloseした場合は実行時間で判定する
+			settings.put("timeThreshold", 0);
+			logger.setSetting(settings);
+			stmt.executeQuery("SELECT aaa, 'not fetched' from test");
+			stmt.close();
+			qi = findHistory(logger, "SELECT aaa, 'not fetched' from test");
+			assertThat(qi, is(notNullValue()));
+			assertThat(qi.getRows(), is(nullValue()));
+		} finally {
+			settings.put("fetchLogging", false);
+			settings.put("timeThreshold", threshold);
+			logger.setSetting(settings);
+		}
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testFetchLoggingReexecute() throws Exception {
+		JdbcLogger logger = JdbcLoggerFactory.getLogger(REAL_URL);
+		Object threshold = logger.getSetting().get("timeThreshold");
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put("fetchLogging", true);
+		settings.put("timeThreshold", 0);
+		logger.setSetting(settings);
+		try {
+			// フェッチせずに再実行した場合は、保留中の実行を実行時のSQLで出力する
+			Statement stmt = conn.createStatement();
+			stmt.executeQuery("SELECT aaa, 'reexec1' from test");
+			stmt.executeQuery("SELECT aaa, 'reexec2' from test");
+			stmt.close();
+			QueryInfo qi1 = findHistory(logger, "SELECT aaa, 'reexec1' from test");
+			QueryInfo qi2 = findHistory(logger, "SELECT aaa, 'reexec2' from test");
+			assertThat(qi1, is(notNullValue()));
+			assertThat(qi2, is(notNullValue()));
+			assertThat(qi1.getId().equals(qi2.getId()), is(false));
+
+			// パラメータの変更時も変更前のパラメータで出力する
+			PreparedStatement pstmt = conn.prepareStatement("SELECT aaa, 'reexec3' from test where aaa = ?");
+			pstmt.setString(1, "p1");
+			pstmt.executeQuery();
+			pstmt.setString(1, "p2");
+			pstmt.executeQuery();
+			qi1 = findHistory(logger, "SELECT aaa, 'reexec3' from test where aaa = 'p1'");
+			assertThat(qi1, is(notNullValue()));
+
+			// コネクションのclose時に暗黙的にcloseされるStatementも出力する
+			Connection conn2 = DriverManager.getConnection(ACCEPT_URL, "sa", "");
+			conn2.createStatement().executeQuery("SELECT aaa, 'implicit close' from test");
+			assertThat(findHistory(logger, "SELECT aaa, 'implicit close' from test"), is(nullValue()));
+			conn2.close();
+			assertThat(findHistory(logger, "SELECT aaa, 'implicit close' from test"), is(notNullValue()));
+			pstmt.close();
+			assertThat(findHistory(logger, "SELECT aaa, 'reexec3' from test where aaa = 'p2'"), is(notNullValue()));
+		} finally {
+			settings.put("fetchLogging", false);
+			settings.put("timeThreshold", threshold);
+			logger.setSetting(settings);
+		}
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testDumpSql() throws Exception {
+		StatementProxy helper = new StatementProxy(null, REAL_URL,
+				"select '?' /* ? */, ? from test where a = ? and b = ?", "test");
+		helper.addParameter(1, Types.CHAR, "$1\\b");
+		helper.addParameter(2, Types.INTEGER, 10);
+		assertThat(helper.dumpSql(), is("select '?' /* ? */, '$1\\b' from test where a = 10 and b = ?"));
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testSnapshot() throws Exception {
+		StatementProxy helper = new StatementProxy(null, REAL_URL, "select * from test where a = ?", "test");
+		helper.startExecute();
+		helper.addParameter(1, Types.INTEGER, 10);
+		LoggerHelper snapshot = helper.snapshot(123L);
+
+		// 元のStatementを再利用してもスナップショットは変化しない
+		helper.addParameter(1, Types.INTEGER, 20);
+		helper.startExecute();
+		assertThat(snapshot.dumpSql(), is("select * from test where a = 10"));
+		assertThat(snapshot.getElapsedNanos(), is(123L));
+		assertThat(snapshot.getQueryId().equals(helper.getQueryId()), is(false));
+		helper.endExecute();
+	}
+
+	private QueryInfo findHistory(JdbcLogger logger, String sql) {
+		for (QueryInfo qi : logger.getHistory()) {
+			if (qi.getSql().replaceAll("\\s+", " ").equalsIgnoreCase(sql)) {
+				return qi;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * @throws Exception 意図しない例外
 	 */
@@ -209,6 +400,109 @@ public class StatementProxyTest extends AbstractTest {
 		assertThat(ret, is(equalTo(val)));
 	}
 
+	@Test
+	public void testMethodInfo() throws Exception {
+		// パラメータ設定
+		assertMethodInfo(PreparedStatement.class.getMethod("setString", int.class, String.class),
+				MethodType.SET_PARAMETER, Types.CHAR, true);
+		assertMethodInfo(PreparedStatement.class.getMethod("setInt", int.class, int.class),
+				MethodType.SET_PARAMETER, Types.INTEGER, true);
+		assertMethodInfo(PreparedStatement.class.getMethod("setBigDecimal", int.class, BigDecimal.class),
+				MethodType.SET_PARAMETER, Types.NUMERIC, true);
+		assertMethodInfo(PreparedStatement.class.getMethod("setObject", int.class, Object.class, int.class),
+				MethodType.SET_PARAMETER, Types.JAVA_OBJECT, true);
+		assertMethodInfo(PreparedStatement.class.getMethod("setNull", int.class, int.class),
+				MethodType.SET_PARAMETER, Types.JAVA_OBJECT, false);
+		assertMethodInfo(PreparedStatement.class.getMethod("setNull", int.class, int.class, String.class),
+				MethodType.SET_PARAMETER, Types.JAVA_OBJECT, false);
+
+		// 名前付きパラメータ
+		assertMethodInfo(CallableStatement.class.getMethod("setString", String.class, String.class),
+				MethodType.SET_NAMED_PARAMETER, Types.CHAR, true);
+		assertMethodInfo(CallableStatement.class.getMethod("setTimestamp", String.class, Timestamp.class),
+				MethodType.SET_NAMED_PARAMETER, Types.TIMESTAMP, true);
+		assertMethodInfo(CallableStatement.class.getMethod("setNull", String.class, int.class),
+				MethodType.SET_NAMED_PARAMETER, Types.JAVA_OBJECT, false);
+
+		// 実行
+		assertMethodInfo(Statement.class.getMethod("execute", String.class), MethodType.EXECUTE);
+		assertMethodInfo(Statement.class.getMethod("execute", String.class, int.class), MethodType.EXECUTE);
+		assertMethodInfo(Statement.class.getMethod("executeQuery", String.class), MethodType.EXECUTE);
+		assertMethodInfo(Statement.class.getMethod("executeUpdate", String.class, String[].class), MethodType.EXECUTE);
+		assertMethodInfo(Statement.class.getMethod("executeLargeUpdate", String.class), MethodType.EXECUTE);
+		assertMethodInfo(PreparedStatement.class.getMethod("execute"), MethodType.EXECUTE);
+		assertMethodInfo(PreparedStatement.class.getMethod("executeQuery"), MethodType.EXECUTE);
+		assertMethodInfo(PreparedStatement.class.getMethod("executeUpdate"), MethodType.EXECUTE);
+		assertMethodInfo(Statement.class.getMethod("executeBatch"), MethodType.EXECUTE_BATCH);
+		assertMethodInfo(Statement.class.getMethod("executeLargeBatch"), MethodType.EXECUTE_BATCH);
+
+		// その他
+		assertMethodInfo(Statement.class.getMethod("addBatch", String.class), MethodType.ADD_BATCH);
+		assertMethodInfo(PreparedStatement.class.getMethod("addBatch"), MethodType.ADD_BATCH);
+		assertMethodInfo(Statement.class.getMethod("clearBatch"), MethodType.CLEAR_BATCH);
+		assertMethodInfo(PreparedStatement.class.getMethod("clearParameters"), MethodType.CLEAR_PARAMETERS);
+		assertMethodInfo(Statement.class.getMethod("getConnection"), MethodType.GET_CONNECTION);
+		assertMethodInfo(Statement.class.getMethod("getResultSet"), MethodType.GET_RESULT_SET);
+		assertMethodInfo(Statement.class.getMethod("close"), MethodType.CLOSE);
+		assertMethodInfo(Statement.class.getMethod("getMaxRows"), MethodType.OTHER);
+		assertMethodInfo(CallableStatement.class.getMethod("getString", int.class), MethodType.OTHER);
+
+		// 同じインスタンスのメソッドはキャッシュした区分を返す
+		Method m = PreparedStatement.class.getMethod("setLong", int.class, long.class);
+		assertThat(StatementProxy.getMethodInfo(m), is(sameInstance(StatementProxy.getMethodInfo(m))));
+	}
+
+	private static void assertMethodInfo(Method method, MethodType type) {
+		assertThat(method.toString(), StatementProxy.getMethodInfo(method).type, is(type));
+	}
+
+	private static void assertMethodInfo(Method method, MethodType type, int sqlType, boolean hasValue) {
+		MethodInfo info = StatementProxy.getMethodInfo(method);
+		assertThat(method.toString(), info.type, is(type));
+		assertThat(method.toString(), info.sqlType, is(sqlType));
+		assertThat(method.toString(), info.hasValue, is(hasValue));
+	}
+
+	@Test
+	public void testAddBatchParameterCapture() {
+		JdbcLogger logger = mock(JdbcLogger.class);
+		when(logger.getSqlTemplate(anyString())).thenAnswer(inv -> SqlTemplate.parse(inv.getArgument(0)));
+		when(logger.getSpecifics()).thenReturn(new DefaultRdbmsSpecifics());
+		LoggerHelper helper = new LoggerHelper("jdbc:h2:mem:batch", "1", logger) {};
+		helper.setSql("INSERT into test values(?)");
+
+		// ログ出力が無効の場合はパラメータを保持しない
+		helper.addParameter(1, Types.INTEGER, 1L);
+		helper.addBatchList();
+		assertThat(helper.getBatchList(), is(Collections.singletonList("INSERT into test values(?)")));
+		assertThat(helper.getTemplateSql(0), is("INSERT into test values(?)"));
+		helper.clearBatchList();
+
+		when(logger.isJdbcLoggingEnabled()).thenReturn(true);
+		helper.addBatchList();
+		helper.addParameter(1, Types.INTEGER, 2L);
+		helper.addBatchList();
+		assertThat(helper.getBatchList().get(0), is("INSERT into test values(1)"));
+		assertThat(helper.getBatchList().get(1), is("INSERT into test values(2)"));
+
+		// スナップショットと共有中の領域は再利用しない
+		LoggerHelper snapshot = helper.snapshot(0L);
+		helper.clearBatchList();
+		helper.addParameter(1, Types.INTEGER, 3L);
+		helper.addBatchList();
+		List<String> list = snapshot.getBatchList();
+		assertThat(list.get(0), is("INSERT into test values(1)"));
+		assertThat(list.get(1), is("INSERT into test values(2)"));
+
+		// 実行済みの領域は再利用しても内容は変わらない
+		helper.clearBatchList();
+		helper.addBatchList();
+		helper.addParameter(1, Types.INTEGER, 4L);
+		helper.addBatchList();
+		assertThat(helper.getBatchList().get(0), is("INSERT into test values(3)"));
+		assertThat(helper.getBatchList().get(1), is("INSERT into test values(4)"));
+	}
+
 	/**
 	 * @throws Exception 意図しない例外
 	 */
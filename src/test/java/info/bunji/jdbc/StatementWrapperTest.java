@@ -0,0 +1,171 @@
+/**
+ *
+ */
+package info.bunji.jdbc;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.sql.BatchUpdateException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import info.bunji.jdbc.logger.JdbcLoggerFactory;
+
+/**
+ * proxyType=static のテスト
+ *
+ * @author f.kinoshita
+ */
+public class StatementWrapperTest extends AbstractTest {
+
+	Connection conn;
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		AbstractTest.setUpBeforeClass();
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		Properties props = new Properties();
+		props.setProperty("user", "sa");
+		props.setProperty("password", "");
+		props.setProperty("logging.proxyType", "static");
+		conn = DriverManager.getConnection(ACCEPT_URL, props);
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@After
+	public void tearDown() throws Exception {
+		conn.close();
+		// 他のテストに影響しないよう元に戻す
+		JdbcLoggerFactory.getLogger(REAL_URL).setSetting(
+				Collections.<String, Object>singletonMap("proxyType", "reflect"));
+		super.tearDown();
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testWrapperType() throws Exception {
+		assertThat(conn, is(instanceOf(ConnectionWrapper.class)));
+		assertThat(conn.createStatement(), is(instanceOf(StatementWrapper.class)));
+		assertThat(conn.prepareStatement("SELECT * from test"), is(instanceOf(PreparedStatementWrapper.class)));
+		assertThat(conn.prepareCall("call proctest(?, ?)"), is(instanceOf(CallableStatementWrapper.class)));
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testCreateStatement() throws Exception {
+		Statement stmt = conn.createStatement();
+		ResultSet rs = stmt.executeQuery("SELECT * from test");
+		assertThat(rs, is(notNullValue()));
+		assertThat(stmt.getConnection(), is(notNullValue()));
+		stmt.close();
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testPrepareStatement() throws Exception {
+		PreparedStatement stmt = conn.prepareStatement("SELECT * from test where aaa=?");
+		stmt.setString(1, "sample");
+		ResultSet rs = stmt.executeQuery();
+		assertThat(rs.next(), is(true));
+		assertThat(rs.getString(1), is("sample"));
+		stmt.clearParameters();
+		stmt.close();
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testPrepareCall() throws Exception {
+		CallableStatement stmt = conn.prepareCall("call proctest(?, ?)");
+		stmt.setString(1, "TestString");
+		stmt.setInt(2, 4);
+
+		ResultSet rs = stmt.executeQuery();
+		assertThat(rs.next(), is(true));
+		assertThat(rs.getString(1), is("Test"));
+		stmt.close();
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test
+	public void testAddBatchExecute() throws Exception {
+		PreparedStatement stmt = conn.prepareStatement("INSERT into test values(?)");
+		stmt.setString(1, "ccc");
+		stmt.addBatch();
+		stmt.setNull(1, Types.VARCHAR);
+		stmt.addBatch();
+		int[] ret = stmt.executeBatch();
+		int[] val = { 1, 1 };
+		assertThat(ret, is(equalTo(val)));
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test(expected=BatchUpdateException.class)
+	public void testAddBatchException() throws Exception {
+		Statement stmt = conn.createStatement();
+		stmt.clearBatch();
+		stmt.addBatch("INSERT into test values('aaa')");
+		stmt.addBatch("INSERT into unknown values('bbb')");
+		stmt.executeBatch();
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test(expected=SQLException.class)
+	public void testException() throws Exception {
+		Statement stmt = conn.createStatement();
+		stmt.executeQuery("SELECT * from bbb");
+		fail();
+	}
+
+	/**
+	 * @throws Exception 意図しない例外
+	 */
+	@Test(expected=SQLException.class)
+	public void testPrepareException() throws Exception {
+		conn.prepareStatement("SELECT * from bbb");
+		fail();
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ */
+package info.bunji.jdbc.logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * @author f.kinoshita
+ *
+ */
+public class DataSourceNameResolverTest {
+
+	@Test
+	public void testResolve() {
+		final AtomicInteger scanCount = new AtomicInteger();
+		final List<Map<String, String>> notified = new ArrayList<Map<String, String>>();
+		DataSourceNameResolver resolver = new DataSourceNameResolver(
+			new Supplier<Map<String, String>>() {
+				@Override
+				public Map<String, String> get() {
+					scanCount.incrementAndGet();
+					Map<String, String> map = new HashMap<String, String>();
+					map.put("jdbc:h2:mem:resolver1", "ds1");
+					return map;
+				}
+			},
+			new Consumer<Map<String, String>>() {
+				@Override
+				public void accept(Map<String, String> added) {
+					notified.add(added);
+				}
+			});
+
+		// 未走査の場合は待機せずnullを返す
+		assertThat(resolver.await(0L), is(false));
+		assertThat(resolver.resolve("jdbc:h2:mem:resolver1"), is(nullValue()));
+		assertThat(resolver.await(5000L), is(true));
+
+		assertThat(resolver.resolve("jdbc:h2:mem:resolver1"), is("ds1"));
+		assertThat(notified, is(Collections.singletonList(Collections.singletonMap("jdbc:h2:mem:resolver1", "ds1"))));
+
+		// 見つからないURLは再走査の間隔内では走査しない
+		assertThat(resolver.resolve("jdbc:h2:mem:unknown"), is(nullValue()));
+		assertThat(resolver.resolve("jdbc:h2:mem:unknown"), is(nullValue()));
+		assertThat(scanCount.get(), is(1));
+	}
+
+	@Test
+	public void testScanError() {
+		final List<Map<String, String>> notified = new ArrayList<Map<String, String>>();
+		DataSourceNameResolver resolver = new DataSourceNameResolver(
+			new Supplier<Map<String, String>>() {
+				@Override
+				public Map<String, String> get() {
+					throw new IllegalStateException("no jndi");
+				}
+			},
+			new Consumer<Map<String, String>>() {
+				@Override
+				public void accept(Map<String, String> added) {
+					notified.add(added);
+				}
+			});
+
+		resolver.scan(false);
+		assertThat(resolver.await(0L), is(true));
+		assertThat(resolver.resolve("jdbc:h2:mem:resolver2"), is(nullValue()));
+		assertThat(notified.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testFallbackScan() {
+		// バックグラウンドのスレッドからはJNDIを参照できない環境
+		final String caller = Thread.currentThread().getName();
+		DataSourceNameResolver resolver = new DataSourceNameResolver(
+			new Supplier<Map<String, String>>() {
+				@Override
+				public Map<String, String> get() {
+					if (!Thread.currentThread().getName().equals(caller)) {
+						throw new IllegalStateException("java:comp not bound");
+					}
+					return Collections.singletonMap("jdbc:h2:mem:resolver3", "ds3");
+				}
+			},
+			new Consumer<Map<String, String>>() {
+				@Override
+				public void accept(Map<String, String> added) {
+				}
+			});
+
+		assertThat(resolver.resolve("jdbc:h2:mem:resolver3"), is(nullValue()));
+		assertThat(resolver.await(5000L), is(true));
+
+		// 次の問い合わせ時に呼び出し元のスレッドで走査する
+		assertThat(resolver.resolve("jdbc:h2:mem:resolver3"), is("ds3"));
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ *
+ */
+package info.bunji.jdbc.logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * @author f.kinoshita
+ *
+ */
+public class JdbcLoggerFactoryTest {
+
+	@Test
+	public void testGetLogger() {
+		JdbcLogger logger = JdbcLoggerFactory.getLogger("jdbc:h2:mem:factoryTest1");
+		assertThat(logger, is(notNullValue()));
+		assertThat(JdbcLoggerFactory.getLogger("jdbc:h2:mem:factoryTest1"), is(sameInstance(logger)));
+		assertThat(JdbcLoggerFactory.getLoggers().contains(logger), is(true));
+	}
+
+	@Test
+	public void testResolveBeforeRegistration() {
+		final String url = "jdbc:h2:mem:factoryTest3";
+		// 走査を同期で行い、名称の問い合わせ後・Loggerの登録前に走査を完了させる
+		DataSourceNameResolver resolver = new DataSourceNameResolver(
+			new Supplier<Map<String, String>>() {
+				@Override
+				public Map<String, String> get() {
+					return Collections.singletonMap(url, "factoryTestDs");
+				}
+			},
+			JdbcLoggerFactory::rebindLoggers,
+			new Executor() {
+				@Override
+				public void execute(Runnable task) {
+					task.run();
+				}
+			});
+		DataSourceNameResolver old = JdbcLoggerFactory.setResolver(resolver);
+		try {
+			JdbcLogger logger = JdbcLoggerFactory.getLogger(url);
+			assertThat(logger.getDispUrl(), is("factoryTestDs"));
+			assertThat(logger.getConnectUrl(), is("factoryTestDs"));
+			assertThat(JdbcLoggerFactory.getLogger(url), is(sameInstance(logger)));
+		} finally {
+			JdbcLoggerFactory.setResolver(old);
+		}
+	}
+
+	@Test
+	public void testRebindAfterScan() {
+		final String url = "jdbc:h2:mem:factoryTest4";
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		DataSourceNameResolver resolver = new DataSourceNameResolver(
+			new Supplier<Map<String, String>>() {
+				@Override
+				public Map<String, String> get() {
+					return Collections.singletonMap(url, "factoryTestDs4");
+				}
+			},
+			JdbcLoggerFactory::rebindLoggers,
+			new Executor() {
+				@Override
+				public void execute(Runnable task) {
+					tasks.add(task);
+				}
+			});
+		DataSourceNameResolver old = JdbcLoggerFactory.setResolver(resolver);
+		try {
+			// 解決前はURLで生成し、解決後に同じLoggerを登録し直す
+			JdbcLogger logger = JdbcLoggerFactory.getLogger(url);
+			assertThat(logger.getDispUrl(), is(url));
+			tasks.get(0).run();
+			assertThat(logger.getDispUrl(), is("factoryTestDs4"));
+			assertThat(JdbcLoggerFactory.getLogger(url), is(sameInstance(logger)));
+		} finally {
+			JdbcLoggerFactory.setResolver(old);
+		}
+	}
+
+	@Test
+	public void testConcurrentGetLogger() throws Exception {
+		final String url = "jdbc:h2:mem:factoryTest2";
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<JdbcLogger>> results = new ArrayList<Future<JdbcLogger>>();
+			for (int i = 0; i < 64; i++) {
+				results.add(executor.submit(new Callable<JdbcLogger>() {
+					@Override
+					public JdbcLogger call() throws Exception {
+						return JdbcLoggerFactory.getLogger(url);
+					}
+				}));
+			}
+			// 同時に取得した場合も同じインスタンスを返す
+			JdbcLogger logger = results.get(0).get();
+			for (Future<JdbcLogger> result : results) {
+				assertThat(result.get(), is(sameInstance(logger)));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -7,13 +7,20 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import info.bunji.jdbc.LoggerHelper;
 import info.bunji.jdbc.logger.JdbcLogger;
 import info.bunji.jdbc.specifics.DefaultRdbmsSpecifics;
 import info.bunji.jdbc.specifics.OracleRdbmsSpecifics;
@@ -241,6 +248,247 @@ public class AbstractJdbcLoggerTest {
 		assertThat((String) logger.getSetting().get("ignoreFilter"), is(nullValue()));
 	}
 
+	@Test
+	public void testFilterTarget() {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put("acceptFilter", "^select \\* from t where a = \\?$");
+		logger.setSetting(settings);
+		assertThat((String) logger.getSetting().get("filterTarget"), is("sql"));
+
+		AbstractJdbcLogger impl = (AbstractJdbcLogger) logger;
+		String sql = "SELECT * FROM t WHERE a = 1";
+		assertThat(impl.isAccept(sql, logger.getSqlTemplate(sql)), is(false));
+
+		// 正規化したSQLで判定する
+		settings.put("filterTarget", "normalized");
+		logger.setSetting(settings);
+		assertThat((String) logger.getSetting().get("filterTarget"), is("normalized"));
+		assertThat(impl.isAccept(sql, logger.getSqlTemplate(sql)), is(true));
+
+		settings.put("filterTarget", "unknown");
+		assertThat(logger.setSetting(settings), is(false));
+	}
+
+	@Test
+	public void testProxyType() {
+		Map<String, Object> settings = new HashMap<String, Object>();
+
+		logger.setSetting(settings);
+		assertThat((String) logger.getSetting().get("proxyType"), is("reflect"));
+		assertThat(logger.isStaticProxy(), is(false));
+
+		settings.put("proxyType", "static");
+		logger.setSetting(settings);
+		assertThat((String) logger.getSetting().get("proxyType"), is("static"));
+		assertThat(logger.isStaticProxy(), is(true));
+
+		settings.put("proxyType", "unknown");
+		logger.setSetting(settings);
+		assertThat((String) logger.getSetting().get("proxyType"), is("static"));
+
+		settings.put("proxyType", "REFLECT");
+		logger.setSetting(settings);
+		assertThat((String) logger.getSetting().get("proxyType"), is("reflect"));
+	}
+
+	@Test
+	public void testQueryIdType() {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		assertThat((String) logger.getSetting().get("queryIdType"), is("sequence"));
+
+		settings.put("queryIdType", "uuid");
+		logger.setSetting(settings);
+		assertThat(logger.isUuidQueryId(), is(true));
+
+		settings.put("queryIdType", "sequence");
+		logger.setSetting(settings);
+		assertThat(logger.isUuidQueryId(), is(false));
+	}
+
+	/**
+	 * {@link info.bunji.jdbc.logger.impl.AbstractJdbcLogger#reportReturned(LoggerHelper, Object...)} のためのテスト・メソッド。
+	 */
+	@Test
+	public void testReportReturnedUnderThreshold() {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put("timeThreshold", 500);
+		logger.setSetting(settings);
+
+		// 閾値未満の場合はSQLを生成しない
+		LoggerHelper helper = mock(LoggerHelper.class);
+		when(helper.getElapsedNanos()).thenReturn(499999999L);
+		logger.reportReturned(helper);
+		verify(helper, never()).dumpSql();
+		verify(helper, never()).getBatchList();
+
+		// 閾値以上の場合はSQLを生成する
+		helper = mock(LoggerHelper.class);
+		when(helper.getElapsedNanos()).thenReturn(500000000L);
+		when(helper.dumpSql()).thenReturn("SELECT 1");
+		logger.reportReturned(helper);
+		verify(helper, times(1)).dumpSql();
+	}
+
+	/**
+	 * {@link info.bunji.jdbc.logger.impl.AbstractJdbcLogger#addExecStatement(LoggerHelper)} のためのテスト・メソッド。
+	 */
+	@Test
+	public void testExecStatement() {
+		LoggerHelper helper1 = mock(LoggerHelper.class);
+		when(helper1.getQueryId()).thenReturn("1");
+		when(helper1.dumpSql()).thenReturn("SELECT 1");
+		LoggerHelper helper2 = mock(LoggerHelper.class);
+		when(helper2.getQueryId()).thenReturn("2");
+		when(helper2.dumpSql()).thenReturn("SELECT 2");
+
+		logger.addExecStatement(helper1);
+		logger.addExecStatement(helper2);
+		assertThat(logger.getRunningQueries().size(), is(2));
+
+		logger.removeExecStatement(helper1);
+		assertThat(logger.getRunningQueries().size(), is(1));
+		assertThat(logger.getRunningQueries().get(0).getId(), is("2"));
+
+		logger.removeExecStatement(helper2);
+		assertThat(logger.getRunningQueries().size(), is(0));
+	}
+
+	/**
+	 * {@link info.bunji.jdbc.logger.impl.AbstractJdbcLogger#reportReturned(LoggerHelper, Object...)} のためのテスト・メソッド。
+	 */
+	@Test
+	public void testSampling() {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put("samplingMode", "fingerprint");
+		settings.put("samplingRate", 1);
+		settings.put("statistics", true);
+		assertThat(logger.setSetting(settings), is(true));
+		assertThat((String) logger.getSetting().get("samplingMode"), is("fingerprint"));
+
+		LoggerHelper helper = mock(LoggerHelper.class);
+		when(helper.getElapsedNanos()).thenReturn(1000000L);
+		when(helper.getQueryId()).thenReturn("sample-1");
+		when(helper.getTemplateSql()).thenReturn("SELECT * FROM T WHERE A = ?");
+		when(helper.dumpSql()).thenReturn("SELECT * FROM T WHERE A = 1");
+		for (int i = 0; i < 5; i++) {
+			logger.reportReturned(helper);
+		}
+		// 対象外の実行はSQLを生成しない
+		verify(helper, times(1)).dumpSql();
+		assertThat(logger.getHistory().size(), is(1));
+		assertThat((Long) logger.getStatus().get("samplingSkipped"), is(4L));
+
+		// エラーは常に出力する
+		logger.reportException(helper, new SQLException("error"));
+		verify(helper, times(2)).dumpSql();
+
+		// 統計は全ての実行を集計する
+		assertThat(logger.getStatistics().get(0).get("count"), is((Object) 6L));
+
+		settings.put("samplingMode", "unknown");
+		assertThat(logger.setSetting(settings), is(false));
+		assertThat((String) logger.getSetting().get("samplingMode"), is("fingerprint"));
+	}
+
+	@Test
+	public void testNPlusOne() {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put("nPlusOneThreshold", 5);
+		settings.put("nPlusOneWindow", 60000);
+		assertThat(logger.setSetting(settings), is(true));
+		assertThat((Integer) logger.getSetting().get("nPlusOneThreshold"), is(5));
+
+		LoggerHelper helper = mock(LoggerHelper.class);
+		when(helper.getElapsedNanos()).thenReturn(1000000L);
+		when(helper.getConnectionId()).thenReturn("C0001");
+		when(helper.getTemplateSql()).thenReturn("SELECT * FROM T WHERE A = ?");
+		when(helper.dumpSql()).thenReturn("SELECT * FROM T WHERE A = 1");
+		for (int i = 0; i < 20; i++) {
+			when(helper.getBindHash()).thenReturn(i);
+			logger.reportReturned(helper);
+		}
+		// 時間窓内では1度だけ検出する
+		assertThat((Long) logger.getStatus().get("nPlusOneDetected"), is(1L));
+
+		settings.put("nPlusOneThreshold", -1);
+		assertThat(logger.setSetting(settings), is(true));
+		for (int i = 0; i < 20; i++) {
+			when(helper.getBindHash()).thenReturn(i);
+			logger.reportReturned(helper);
+		}
+		assertThat((Long) logger.getStatus().get("nPlusOneDetected"), is(1L));
+	}
+
+	@Test
+	public void testAsyncLogging() {
+		AbstractJdbcLogger asyncLogger = (AbstractJdbcLogger) logger;
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put("asyncLogging", true);
+		settings.put("asyncQueueSize", 16);
+		assertThat(logger.setSetting(settings), is(true));
+		assertThat((Boolean) logger.getSetting().get("asyncLogging"), is(true));
+		try {
+			// 呼び出しスレッドではスナップショットの取得のみ行う
+			LoggerHelper snapshot = mock(LoggerHelper.class);
+			when(snapshot.getElapsedNanos()).thenReturn(1000000L);
+			when(snapshot.getQueryId()).thenReturn("async-1");
+			when(snapshot.dumpSql()).thenReturn("SELECT 1");
+			LoggerHelper helper = mock(LoggerHelper.class);
+			when(helper.getElapsedNanos()).thenReturn(1000000L);
+			when(helper.snapshot(1000000L)).thenReturn(snapshot);
+
+			logger.reportReturned(helper);
+			verify(helper, never()).dumpSql();
+
+			assertThat(asyncLogger.asyncWriter.awaitEmpty(5000), is(true));
+			verify(snapshot, times(1)).dumpSql();
+			assertThat(logger.getHistory().get(0).getId(), is("async-1"));
+			assertThat((Long) logger.getStatus().get("asyncPublished"), is(1L));
+
+			// 不正なポリシーは受け付けない
+			settings.clear();
+			settings.put("asyncOverflow", "unknown");
+			assertThat(logger.setSetting(settings), is(false));
+			assertThat((String) logger.getSetting().get("asyncOverflow"), is("drop"));
+		} finally {
+			settings.clear();
+			settings.put("asyncLogging", false);
+			logger.setSetting(settings);
+		}
+		assertThat(asyncLogger.asyncWriter, is(nullValue()));
+		assertThat(logger.getStatus().containsKey("asyncQueueDepth"), is(false));
+	}
+
+	@Test
+	public void testAsyncOverflow() {
+		AbstractJdbcLogger asyncLogger = (AbstractJdbcLogger) logger;
+		LoggerHelper snapshot = mock(LoggerHelper.class);
+		when(snapshot.dumpSql()).thenReturn("SELECT 1");
+
+		// drop:満杯時は破棄してカウントする
+		AsyncLogWriter writer = new AsyncLogWriter(asyncLogger, 2, "drop", 1);
+		for (int i = 0; i < 5; i++) {
+			assertThat(writer.publish(snapshot, null), is(true));
+		}
+		assertThat(writer.getPublishedCount(), is(2L));
+		assertThat(writer.getDroppedCount(), is(3L));
+
+		// sample:半分以上埋まっている場合は間引く(エラーは間引かない)
+		writer = new AsyncLogWriter(asyncLogger, 8, "sample", 2);
+		for (int i = 0; i < 8; i++) {
+			writer.publish(snapshot, null);
+		}
+		assertThat(writer.getPublishedCount(), is(6L));
+		assertThat(writer.getSampledOutCount(), is(2L));
+		writer.publish(snapshot, new Exception());
+		assertThat(writer.getPublishedCount(), is(7L));
+
+		// 停止後は受け付けない(呼び出し元で同期出力する)
+		writer.start();
+		writer.stop();
+		assertThat(writer.publish(snapshot, null), is(false));
+	}
+
 	// for Test
 	class TestJdbcLogger extends AbstractJdbcLogger {
 		public TestJdbcLogger(String url) { super(url); }
@@ -0,0 +1,59 @@
+/**
+ *
+ */
+package info.bunji.jdbc.logger.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.junit.Test;
+
+/**
+ * @author f.kinoshita
+ *
+ */
+public class CallerFinderTest {
+
+	@Test
+	public void testIsApplication() {
+		CallerFinder finder = new CallerFinder(null, CallerFinder.DEFAULT_EXCLUDE);
+		assertThat(finder.isApplication("com.example.dao.UserDao"), is(true));
+		// 内部のクラスと除外パッケージ
+		assertThat(finder.isApplication("info.bunji.jdbc.StatementProxy"), is(false));
+		assertThat(finder.isApplication("info.bunji.jdbc.logger.impl.AbstractJdbcLogger"), is(false));
+		assertThat(finder.isApplication("java.lang.Thread"), is(false));
+		assertThat(finder.isApplication("org.apache.commons.dbcp2.DelegatingStatement"), is(false));
+		assertThat(finder.isApplication("org.springframework.jdbc.core.JdbcTemplate"), is(false));
+
+		// 対象パッケージの指定時は一致するもののみ
+		finder = new CallerFinder(" com.example.dao. ,, com.example.web.", "com.example.web.internal.");
+		assertThat(finder.getInclude(), is("com.example.dao.,com.example.web."));
+		assertThat(finder.isApplication("com.example.dao.UserDao"), is(true));
+		assertThat(finder.isApplication("com.example.web.UserController"), is(true));
+		assertThat(finder.isApplication("com.example.web.internal.Filter"), is(false));
+		assertThat(finder.isApplication("com.example.service.UserService"), is(false));
+	}
+
+	@Test
+	public void testFind() {
+		// テストクラスは内部のパッケージのため、呼び出し元のJUnitのフレームとなる
+		CallerFinder finder = new CallerFinder("org.junit.", null);
+		String caller = finder.find();
+		assertThat(caller.startsWith("org.junit."), is(true));
+		// Java9以降はStackWalkerを利用する
+		assertThat(CallerFinder.isStackWalkerAvailable(),
+				is(!System.getProperty("java.specification.version").startsWith("1.")));
+		// StackTraceElementと同じ形式
+		boolean found = false;
+		for (StackTraceElement e : new Throwable().getStackTrace()) {
+			if (e.toString().equals(caller)) found = true;
+		}
+		assertThat(found, is(true));
+		// 同じ呼び出し箇所はキャッシュした文字列を返す
+		assertThat(finder.find() == caller, is(true));
+
+		finder = new CallerFinder("com.example.", null);
+		assertThat(finder.find(), is(nullValue()));
+	}
+}
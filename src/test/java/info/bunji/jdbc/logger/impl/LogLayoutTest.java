@@ -0,0 +1,60 @@
+/**
+ *
+ */
+package info.bunji.jdbc.logger.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+/**
+ * @author f.kinoshita
+ *
+ */
+public class LogLayoutTest {
+
+	/**
+	 * {@link info.bunji.jdbc.logger.impl.LogLayout#format(long, String, String, String)} のためのテスト・メソッド。
+	 */
+	@Test
+	public void testFormat() {
+		LogLayout layout = new LogLayout(LogLayout.DEFAULT_LAYOUT_WITH_CONN);
+		assertThat(layout.format(1234567L, "C0001", "Q1", "SELECT '%s'"),
+				is("[executed    1.235 ms] [C0001] SELECT '%s'"));
+
+		// バッチ実行時は件数を付与する
+		assertThat(layout.format(1234567L, "C0001", "Q1", "INSERT", 2, 3),
+				is("[executed    1.235 ms] [C0001] (2/3) INSERT"));
+
+		layout = new LogLayout("{queryId}:{unknown}{sql} {elapsed");
+		assertThat(layout.format(0L, "C0001", "Q1", "SELECT 1"), is("Q1:{unknown}SELECT 1 {elapsed"));
+	}
+
+	/**
+	 * {@link info.bunji.jdbc.logger.impl.LogLayout#appendElapsed(StringBuilder, long)} のためのテスト・メソッド。
+	 */
+	@Test
+	public void testCaller() {
+		LogLayout layout = new LogLayout("{sql} <{caller}>");
+		assertThat(layout.format(0L, "C0001", "Q1", "SELECT 1", 0, 0, "a.B.c(B.java:1)"), is("SELECT 1 <a.B.c(B.java:1)>"));
+		assertThat(layout.format(0L, "C0001", "Q1", "SELECT 1", 0, 0, null), is("SELECT 1 <>"));
+
+		// {caller}を含まない場合は末尾に付与する
+		layout = new LogLayout("{sql}");
+		assertThat(layout.format(0L, "C0001", "Q1", "SELECT 1", 0, 0, "a.B.c(B.java:1)"), is("SELECT 1 (at a.B.c(B.java:1))"));
+		assertThat(layout.format(0L, "C0001", "Q1", "SELECT 1", 0, 0, null), is("SELECT 1"));
+	}
+
+	@Test
+	public void testAppendElapsed() {
+		long[] values = { 0L, 499L, 500L, 999999L, 1000000L, 12345678L, 1234567890L, 98765432109876L, -1L, -2500000L };
+		for (long nanos : values) {
+			StringBuilder buf = new StringBuilder();
+			LogLayout.appendElapsed(buf, nanos);
+			assertThat(buf.toString(), is(String.format(Locale.US, "%,8.3f", nanos / 1000000.0)));
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ *
+ */
+package info.bunji.jdbc.logger.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+/**
+ * @author f.kinoshita
+ *
+ */
+public class NPlusOneDetectorTest {
+
+	private static final long MS = 1000000L;
+
+	@Test
+	public void testDisabled() {
+		NPlusOneDetector detector = new NPlusOneDetector(-1, 1000L);
+		assertThat(detector.isEnabled(), is(false));
+		for (int i = 0; i < 100; i++) {
+			assertThat(detector.record(1L, 1L, i, i * MS), is(-1L));
+		}
+		assertThat(detector.size(), is(0));
+	}
+
+	@Test
+	public void testDetect() {
+		NPlusOneDetector detector = new NPlusOneDetector(3, 1000L);
+		assertThat(detector.record(1L, 1L, 1, 0L), is(-1L));
+		assertThat(detector.record(1L, 1L, 2, 10 * MS), is(-1L));
+		// しきい値に達した時点で1度だけ検出する
+		assertThat(detector.record(1L, 1L, 3, 20 * MS), is(20 * MS));
+		assertThat(detector.record(1L, 1L, 4, 30 * MS), is(-1L));
+		assertThat(detector.record(1L, 1L, 5, 40 * MS), is(-1L));
+
+		// 時間窓の経過後は新たに数える
+		assertThat(detector.record(1L, 1L, 6, 1500 * MS), is(-1L));
+		assertThat(detector.record(1L, 1L, 7, 1510 * MS), is(-1L));
+		assertThat(detector.record(1L, 1L, 8, 1520 * MS), is(20 * MS));
+	}
+
+	@Test
+	public void testSameBinds() {
+		NPlusOneDetector detector = new NPlusOneDetector(3, 1000L);
+		// 同じバインド値の繰り返しは対象外
+		for (int i = 0; i < 10; i++) {
+			assertThat(detector.record(1L, 1L, 1, i * MS), is(-1L));
+		}
+		// 別のSQL、別のコネクションは個別に数える
+		detector.record(1L, 2L, 1, 0L);
+		detector.record(2L, 2L, 2, 0L);
+		detector.record(1L, 2L, 3, 0L);
+		assertThat(detector.record(2L, 2L, 4, 0L), is(-1L));
+		assertThat(detector.record(1L, 2L, 5, 0L), is(0L));
+	}
+
+	@Test
+	public void testReset() {
+		NPlusOneDetector detector = new NPlusOneDetector(3, 1000L);
+		detector.record(1L, 1L, 1, 0L);
+		detector.record(1L, 1L, 2, 0L);
+		detector.reset(1L);
+		assertThat(detector.size(), is(0));
+		assertThat(detector.record(1L, 1L, 3, 0L), is(-1L));
+	}
+}
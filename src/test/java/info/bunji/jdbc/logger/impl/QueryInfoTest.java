@@ -96,6 +96,23 @@ public class QueryInfoTest {
 		assertThat(qi.getElapsed(), is(10L));
 	}
 
+	/**
+	 * {@link info.bunji.jdbc.logger.impl.QueryInfo#getElapsedMicros()} のためのテスト・メソッド。
+	 */
+	@Test
+	public void testGetElapsedMicros() {
+		QueryInfo qi = new QueryInfo(0L, 10L, "select 1", "12345", null);
+		assertThat(qi.getElapsedMicros(), is(10000L));
+
+		qi = new QueryInfo(0L, 0L, 200L, "select 1", "12345", null);
+		assertThat(qi.getElapsed(), is(0L));
+		assertThat(qi.getElapsedMicros(), is(200L));
+
+		// 経過時間不明(バッチ実行時)
+		qi = new QueryInfo(0L, -1L, "select 1", "12345", null);
+		assertThat(qi.getElapsedMicros(), is(-1L));
+	}
+
 	/**
 	 * {@link info.bunji.jdbc.logger.impl.QueryInfo#getSql()} のためのテスト・メソッド。
 	 */
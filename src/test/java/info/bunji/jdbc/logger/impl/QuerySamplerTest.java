@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package info.bunji.jdbc.logger.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+import info.bunji.jdbc.util.SqlTemplate;
+
+/**
+ * @author f.kinoshita
+ *
+ */
+public class QuerySamplerTest {
+
+	@Test
+	public void testNone() {
+		QuerySampler sampler = new QuerySampler(QuerySampler.MODE_NONE, 10, 1);
+		assertThat(sampler.isEnabled(), is(false));
+		for (int i = 0; i < 100; i++) {
+			assertThat(sampler.sample(null), is(true));
+		}
+	}
+
+	@Test
+	public void testRatio() {
+		QuerySampler sampler = new QuerySampler(QuerySampler.MODE_RATIO, 4, 1);
+		int kept = 0;
+		for (int i = 0; i < 4000; i++) {
+			if (sampler.sample(null)) kept++;
+		}
+		// 確率的に約1/4を出力する
+		assertThat(kept > 700 && kept < 1300, is(true));
+		assertThat(sampler.getKeptCount() + sampler.getSkippedCount(), is(4000L));
+	}
+
+	@Test
+	public void testRate() {
+		QuerySampler sampler = new QuerySampler(QuerySampler.MODE_RATE, 1, 10);
+		int kept = 0;
+		for (int i = 0; i < 100; i++) {
+			if (sampler.sample(null)) kept++;
+		}
+		// 1秒分(10件)のバーストのみ許可する
+		assertThat(kept >= 10 && kept <= 11, is(true));
+	}
+
+	@Test
+	public void testFingerprint() {
+		QuerySampler sampler = new QuerySampler(QuerySampler.MODE_FINGERPRINT, 1, 2);
+		SqlTemplate t1 = SqlTemplate.parse("select * from t where a = 1");
+		SqlTemplate t2 = SqlTemplate.parse("SELECT * FROM t WHERE a = 2");
+		SqlTemplate t3 = SqlTemplate.parse("select * from u");
+
+		// 正規化したSQLが同一のものは合算して制限する
+		assertThat(sampler.sample(t1), is(true));
+		assertThat(sampler.sample(t2), is(true));
+		assertThat(sampler.sample(t1), is(false));
+		assertThat(sampler.sample(t3), is(true));
+	}
+
+	@Test
+	public void testRateLimiter() {
+		QuerySampler.RateLimiter limiter = new QuerySampler.RateLimiter(2);
+		long now = 1000000000L;
+		assertThat(limiter.tryAcquire(now), is(true));
+		assertThat(limiter.tryAcquire(now), is(true));
+		assertThat(limiter.tryAcquire(now), is(false));
+		// 500ms経過で1件分回復する
+		assertThat(limiter.tryAcquire(now + 500000000L), is(true));
+		assertThat(limiter.tryAcquire(now + 500000000L), is(false));
+	}
+}
@@ -54,6 +54,8 @@ public class Slf4jJdbcLoggerTest {
 		try {
 			logger.debug("debug message[%s]", "param1");
 			logger.debug("debug message");
+			// 生成済みのメッセージは再度フォーマットしない
+			logger.debug("SELECT * FROM test WHERE a LIKE '%s%d'");
 			logger.debug(null);
 		} catch(Exception e) {
 			fail();
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package info.bunji.jdbc.logger.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import info.bunji.jdbc.util.SqlTemplate;
+
+/**
+ * @author f.kinoshita
+ *
+ */
+public class SqlStatisticsTest {
+
+	private static final long MS = 1000000L;
+
+	@Test
+	public void testSnapshotOrder() {
+		SqlStatistics stats = new SqlStatistics(10);
+		stats.record(SqlTemplate.parse("select 1 from a"), 1 * MS, false);
+		stats.record(SqlTemplate.parse("select 1 from b"), 5 * MS, false);
+		stats.record(SqlTemplate.parse("select 1 from a"), 2 * MS, true);
+
+		// 合計実行時間の降順
+		List<Map<String, Object>> list = stats.snapshot();
+		assertThat(list.size(), is(2));
+		assertThat(list.get(0).get("total"), is((Object) 5.0));
+		assertThat(list.get(1).get("total"), is((Object) 3.0));
+		assertThat(list.get(1).get("count"), is((Object) 2L));
+		assertThat(list.get(1).get("errors"), is((Object) 1L));
+	}
+
+	@Test
+	public void testSnapshotWhileRecording() throws Exception {
+		final SqlStatistics stats = new SqlStatistics(100);
+		final SqlTemplate[] templates = new SqlTemplate[64];
+		for (int i = 0; i < templates.length; i++) {
+			templates[i] = SqlTemplate.parse("select 1 from t" + i);
+			stats.record(templates[i], MS, false);
+		}
+
+		// 集計中に取得しても並べ替えが失敗しない
+		final AtomicBoolean running = new AtomicBoolean(true);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				int i = 0;
+				while (running.get()) {
+					stats.record(templates[i++ % templates.length], (i % 7) * MS, false);
+				}
+			});
+			threads[t].start();
+		}
+		try {
+			for (int n = 0; n < 200; n++) {
+				List<Map<String, Object>> list = stats.snapshot();
+				assertThat(list.size(), is(templates.length));
+				for (int i = 1; i < list.size(); i++) {
+					double prev = (Double) list.get(i - 1).get("total");
+					assertThat(prev >= (Double) list.get(i).get("total"), is(true));
+				}
+			}
+		} finally {
+			running.set(false);
+			for (Thread t : threads) t.join();
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package info.bunji.jdbc.logger.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+/**
+ * @author f.kinoshita
+ *
+ */
+public class TransactionTrackerTest {
+
+	@Test
+	public void testAutoCommit() {
+		TransactionTracker tracker = new TransactionTracker();
+		// autoCommit有効時は追跡しない
+		tracker.recordStatement(1L, "C0001", 0L, 1000000L, false, "SELECT 1");
+		assertThat(tracker.getActiveCount(), is(0));
+
+		// 無効化後の最初の実行で開始する
+		assertThat(tracker.setAutoCommit(1L, false, 1000L, null), is(nullValue()));
+		assertThat(tracker.getActiveCount(), is(0));
+		tracker.recordStatement(1L, "C0001", 0L, 1000000L, false, "SELECT 1");
+		tracker.recordStatement(1L, "C0001", 0L, 3000000L, false, "UPDATE T SET A = ?");
+		tracker.recordStatement(1L, "C0001", 0L, 2000000L, true, "DELETE FROM T");
+		assertThat(tracker.getActiveCount(), is(1));
+
+		// 有効化時はcommitとして終了する
+		TransactionInfo info = tracker.setAutoCommit(1L, true, 500000L, null);
+		assertThat(info, is(notNullValue()));
+		assertThat(info.getResult(), is(TransactionTracker.RESULT_COMMIT));
+		assertThat(info.getStatements(), is(3));
+		assertThat(info.getErrors(), is(1));
+		assertThat(info.getDbTimeMicros(), is(6000L));
+		assertThat(info.getEndMicros(), is(500L));
+		assertThat(info.getSlowestSql(), is("UPDATE T SET A = ?"));
+		assertThat(info.getSlowestMicros(), is(3000L));
+		assertThat(info.getElapsedMicros() >= 1000L, is(true));
+		assertThat(tracker.getActiveCount(), is(0));
+		assertThat(tracker.getCommitCount(), is(1L));
+
+		// 以降は追跡しない
+		tracker.recordStatement(1L, "C0001", 0L, 1000000L, false, "SELECT 1");
+		assertThat(tracker.getActiveCount(), is(0));
+	}
+
+	@Test
+	public void testCommitAndRollback() {
+		TransactionTracker tracker = new TransactionTracker();
+		tracker.setAutoCommit(1L, false, 0L, null);
+
+		tracker.recordStatement(1L, "C0001", 0L, 1000000L, false, "SELECT 1");
+		TransactionInfo info = tracker.end(1L, true, 2000000L, null);
+		assertThat(info.getResult(), is("commit"));
+		assertThat(info.getStatements(), is(1));
+
+		// 実行のないcommitは対象外
+		assertThat(tracker.end(1L, true, 1000000L, null), is(nullValue()));
+
+		// 終了後の実行で次のトランザクションを開始する
+		tracker.recordStatement(1L, "C0001", 0L, 1000000L, false, "SELECT 2");
+		info = tracker.end(1L, false, 1000000L, new SQLException("rollback failed"));
+		assertThat(info.getResult(), is("rollback"));
+		assertThat(info.getSlowestSql(), is("SELECT 2"));
+		assertThat(info.isError(), is(true));
+		assertThat(info.getErrorMsg(), is("rollback failed"));
+
+		assertThat(tracker.getCommitCount(), is(1L));
+		assertThat(tracker.getRollbackCount(), is(1L));
+		double latency = tracker.getCommitLatency(50.0);
+		assertThat(latency > 1.9 && latency < 2.1, is(true));
+	}
+
+	@Test
+	public void testImplicitManualMode() {
+		TransactionTracker tracker = new TransactionTracker();
+		// setAutoCommit(false)を経由しない場合もcommit以降は追跡する
+		assertThat(tracker.end(1L, true, 0L, null), is(nullValue()));
+		tracker.recordStatement(1L, "C0001", 0L, 1000000L, false, "SELECT 1");
+		assertThat(tracker.getActiveCount(), is(1));
+
+		// クローズ時は破棄する
+		tracker.close(1L);
+		assertThat(tracker.getActiveCount(), is(0));
+		tracker.recordStatement(1L, "C0001", 0L, 1000000L, false, "SELECT 1");
+		assertThat(tracker.getActiveCount(), is(0));
+	}
+
+	@Test
+	public void testSameConnectionId() {
+		TransactionTracker tracker = new TransactionTracker();
+		// 表示用のIDが重複しても識別キーが異なれば別のトランザクションとする
+		tracker.setAutoCommit(1L, false, 0L, null);
+		tracker.setAutoCommit(2L, false, 0L, null);
+		tracker.recordStatement(1L, "C0001", 0L, 1000000L, false, "SELECT 1");
+		tracker.recordStatement(2L, "C0001", 0L, 1000000L, false, "SELECT 2");
+		assertThat(tracker.getActiveCount(), is(2));
+
+		tracker.close(2L);
+		TransactionInfo info = tracker.end(1L, true, 0L, null);
+		assertThat(info.getStatements(), is(1));
+		assertThat(info.getSlowestSql(), is("SELECT 1"));
+		assertThat(info.getConnectionId(), is("C0001"));
+	}
+}
@@ -3,13 +3,17 @@
  */
 package info.bunji.jdbc.rest;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasEntry;
 
 import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +24,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.meterware.httpunit.DeleteMethodWebRequest;
 import com.meterware.httpunit.GetMethodWebRequest;
 import com.meterware.httpunit.PutMethodWebRequest;
 import com.meterware.httpunit.WebRequest;
@@ -28,6 +33,8 @@ import com.meterware.servletunit.ServletRunner;
 import com.meterware.servletunit.ServletUnitClient;
 
 import info.bunji.jdbc.AbstractTest;
+import info.bunji.jdbc.logger.JdbcLogger;
+import info.bunji.jdbc.logger.JdbcLoggerFactory;
 import net.arnx.jsonic.JSON;
 /**
  *
@@ -199,6 +206,198 @@ public class RestApiServletTest extends AbstractTest {
 		assertThat(results.get("log4jdbcDs").size(), is(0));
 	}
 
+	@Test
+	public void testStatus() throws Exception {
+		Connection conn = null;
+		try {
+			conn = getConnection("log4jdbcDs");
+			for (int i = 0; i < 2; i++) {
+				PreparedStatement stmt = conn.prepareStatement("select * from test where aaa = ?");
+				stmt.setString(1, "status");
+				stmt.executeQuery();
+			}
+		} finally {
+			closeQuietly(conn);
+		}
+
+		WebRequest req = new GetMethodWebRequest("http://localhost/log4jdbcex/status");
+		WebResponse res = client.getResponse(req);
+
+		assertThat(res.getResponseCode(), is(HttpServletResponse.SC_OK));
+
+		Map<String, List<Map<String, Object>>> results = JSON.decode(res.getInputStream());
+		assertThat(results.containsKey("log4jdbcDs"), is(true));
+
+		Map<String, Object> status = results.get("log4jdbcDs").get(0);
+		assertThat(status.containsKey("host"), is(true));
+		assertThat(((BigDecimal) status.get("sqlCacheHit")).longValue() >= 1, is(true));
+		assertThat(((BigDecimal) status.get("sqlCacheMiss")).longValue() >= 1, is(true));
+		assertThat(status.containsKey("sqlCacheEntries"), is(true));
+		assertThat(status.containsKey("sqlCacheEvicted"), is(true));
+	}
+
+	@Test
+	public void testStats() throws Exception {
+		JdbcLogger logger = JdbcLoggerFactory.getLogger("log4jdbcDs");
+		logger.setSetting(Collections.<String, Object>singletonMap("statistics", true));
+		Connection conn = null;
+		try {
+			conn = getConnection("log4jdbcDs");
+			// リテラルのみが異なるSQLは同一のSQLとして集計する
+			for (int i = 0; i < 3; i++) {
+				conn.createStatement().executeQuery("select * from test where aaa = 'stats" + i + "' or aaa in ('a', 'b', '" + i + "')");
+			}
+		} finally {
+			closeQuietly(conn);
+			logger.setSetting(Collections.<String, Object>singletonMap("statistics", false));
+		}
+
+		WebRequest req = new GetMethodWebRequest("http://localhost/log4jdbcex/stats");
+		WebResponse res = client.getResponse(req);
+
+		assertThat(res.getResponseCode(), is(HttpServletResponse.SC_OK));
+
+		Map<String, List<Map<String, Object>>> results = JSON.decode(res.getInputStream());
+		assertThat(results.containsKey("log4jdbcDs"), is(true));
+
+		Map<String, Object> stat = null;
+		for (Map<String, Object> s : results.get("log4jdbcDs")) {
+			if ("select * from test where aaa = ? or aaa in (?)".equals(s.get("sql"))) {
+				stat = s;
+			}
+		}
+		assertThat(stat, is(notNullValue()));
+		assertThat(stat.containsKey("host"), is(true));
+		assertThat(((String) stat.get("fingerprint")).length(), is(16));
+		assertThat(((BigDecimal) stat.get("count")).longValue(), is(3L));
+		assertThat(((BigDecimal) stat.get("errors")).longValue(), is(0L));
+		assertThat(((BigDecimal) stat.get("max")).doubleValue() >= ((BigDecimal) stat.get("min")).doubleValue(), is(true));
+		assertThat(stat.containsKey("p99"), is(true));
+
+		// 件数の指定
+		req = new GetMethodWebRequest("http://localhost/log4jdbcex/stats");
+		req.setParameter("limit", "1");
+		results = JSON.decode(client.getResponse(req).getInputStream());
+		assertThat(results.get("log4jdbcDs").size(), is(1));
+	}
+
+	@Test
+	public void testSlowQueries() throws Exception {
+		putSetting("{ 'log4jdbcDs': [ { captureThreshold: 0 } ] }");
+		Connection conn = null;
+		try {
+			conn = getConnection("log4jdbcDs");
+			PreparedStatement stmt = conn.prepareStatement("select * from test where aaa = ?");
+			stmt.setString(1, "slow");
+			stmt.executeQuery();
+		} finally {
+			closeQuietly(conn);
+			putSetting("{ 'log4jdbcDs': [ { captureThreshold: -1 } ] }");
+		}
+
+		WebRequest req = new GetMethodWebRequest("http://localhost/log4jdbcex/slow");
+		WebResponse res = client.getResponse(req);
+		assertThat(res.getResponseCode(), is(HttpServletResponse.SC_OK));
+
+		Map<String, List<Map<String, Object>>> results = JSON.decode(res.getInputStream());
+		Map<String, Object> slow = null;
+		for (Map<String, Object> qi : results.get("log4jdbcDs")) {
+			if ("select * from test where aaa = 'slow'".equals(qi.get("sql"))) {
+				slow = qi;
+				break;
+			}
+		}
+		assertThat(slow, is(notNullValue()));
+		assertThat(slow.get("connectionId"), is(notNullValue()));
+		assertThat((List<?>) slow.get("parameters"), is((Object) Arrays.asList("'slow'")));
+		// 内部のフレームは除去され、呼び出し元(コネクションプール経由)から出力される
+		List<?> stackTrace = (List<?>) slow.get("stackTrace");
+		assertThat(stackTrace.get(0).toString().startsWith("info.bunji.jdbc."), is(false));
+		boolean found = false;
+		for (Object frame : stackTrace) {
+			found |= frame.toString().startsWith(getClass().getName() + ".testSlowQueries");
+		}
+		assertThat(found, is(true));
+
+		// クリア
+		client.getResponse(new DeleteMethodWebRequest("http://localhost/log4jdbcex/slow"));
+		results = JSON.decode(client.getResponse(req).getInputStream());
+		assertThat(results.get("log4jdbcDs").isEmpty(), is(true));
+	}
+
+	@Test
+	public void testCaller() throws Exception {
+		putSetting("{ 'log4jdbcDs': [ { callerCapture: true } ] }");
+		Connection conn = null;
+		try {
+			conn = getConnection("log4jdbcDs");
+			PreparedStatement stmt = conn.prepareStatement("select * from test where aaa = ?");
+			stmt.setString(1, "caller");
+			stmt.executeQuery();
+		} finally {
+			closeQuietly(conn);
+			putSetting("{ 'log4jdbcDs': [ { callerCapture: false } ] }");
+		}
+
+		WebRequest req = new GetMethodWebRequest("http://localhost/log4jdbcex/history");
+		Map<String, List<Map<String, Object>>> results = JSON.decode(client.getResponse(req).getInputStream());
+		Map<String, Object> history = null;
+		for (Map<String, Object> qi : results.get("log4jdbcDs")) {
+			if ("select * from test where aaa = 'caller'".equals(qi.get("sql"))) {
+				history = qi;
+			}
+		}
+		assertThat(history, is(notNullValue()));
+		// コネクションプールのフレームは除外され、テストメソッドが呼び出し元となる
+		assertThat(history.get("caller").toString().startsWith(getClass().getName() + ".testCaller("), is(true));
+	}
+
+	@Test
+	public void testTransactions() throws Exception {
+		putSetting("{ 'log4jdbcDs': [ { transactionThreshold: 0 } ] }");
+		Connection conn = null;
+		try {
+			conn = getConnection("log4jdbcDs");
+			conn.setAutoCommit(false);
+			PreparedStatement stmt = conn.prepareStatement("select * from test where aaa = ?");
+			stmt.setString(1, "tx1");
+			stmt.executeQuery();
+			stmt.setString(1, "tx2");
+			stmt.executeQuery();
+			conn.commit();
+			conn.setAutoCommit(true);
+		} finally {
+			closeQuietly(conn);
+			putSetting("{ 'log4jdbcDs': [ { transactionThreshold: -1 } ] }");
+		}
+
+		WebRequest req = new GetMethodWebRequest("http://localhost/log4jdbcex/transactions");
+		WebResponse res = client.getResponse(req);
+		assertThat(res.getResponseCode(), is(HttpServletResponse.SC_OK));
+
+		Map<String, List<Map<String, Object>>> results = JSON.decode(res.getInputStream());
+		List<Map<String, Object>> list = results.get("log4jdbcDs");
+		assertThat(list.isEmpty(), is(false));
+		Map<String, Object> tx = list.get(0);
+		assertThat(tx.get("result"), is((Object) "commit"));
+		assertThat(tx.get("statements"), is((Object) BigDecimal.valueOf(2)));
+		assertThat(tx.get("slowestSql"), is((Object) "select * from test where aaa = ?"));
+		assertThat(tx.get("connectionId"), is(notNullValue()));
+
+		// クリア
+		client.getResponse(new DeleteMethodWebRequest("http://localhost/log4jdbcex/transactions"));
+		results = JSON.decode(client.getResponse(req).getInputStream());
+		assertThat(results.get("log4jdbcDs").isEmpty(), is(true));
+	}
+
+	private void putSetting(String json) throws Exception {
+		WebRequest req = new PutMethodWebRequest(
+								"http://localhost/log4jdbcex/setting",
+								new ByteArrayInputStream(json.getBytes()),
+								"application/json; charset=UTF-8");
+		client.getResponse(req);
+	}
+
 	@Test
 	public void testGetSetting() throws Exception {
 		WebRequest req = new GetMethodWebRequest("http://localhost/log4jdbcex/setting");
@@ -0,0 +1,43 @@
+package info.bunji.jdbc.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testPercentile() {
+		LatencyHistogram hist = new LatencyHistogram();
+		assertThat(hist.getValueAtPercentile(50.0), is(0L));
+
+		for (long i = 1; i <= 100; i++) {
+			hist.record(i * 1000L);
+		}
+		assertThat(hist.getCount(), is(100L));
+
+		// 相対誤差12.5%以内
+		long p50 = hist.getValueAtPercentile(50.0);
+		assertThat(p50 >= 50000L && p50 <= 50000L * 1.125, is(true));
+		long p99 = hist.getValueAtPercentile(99.0);
+		assertThat(p99 >= 99000L && p99 <= 99000L * 1.125, is(true));
+		long max = hist.getValueAtPercentile(100.0);
+		assertThat(max >= 100000L && max <= 100000L * 1.125, is(true));
+
+		hist.reset();
+		assertThat(hist.getCount(), is(0L));
+	}
+
+	@Test
+	public void testBucket() {
+		for (long v = 0; v < 100000; v++) {
+			int idx = LatencyHistogram.indexOf(v);
+			assertThat(v <= LatencyHistogram.upperBoundOf(idx), is(true));
+			if (idx > 0) {
+				assertThat(v > LatencyHistogram.upperBoundOf(idx - 1), is(true));
+			}
+		}
+		assertThat(LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(Long.MAX_VALUE)), is(Long.MAX_VALUE));
+	}
+}
@@ -0,0 +1,73 @@
+package info.bunji.jdbc.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class MpscQueueTest {
+
+	@Test
+	public void testOfferPoll() {
+		MpscQueue<Integer> queue = new MpscQueue<Integer>(3);
+		assertThat(queue.capacity(), is(4));
+		assertThat(queue.poll(), is(nullValue()));
+
+		for (int i = 1; i <= 4; i++) {
+			assertThat(queue.offer(i), is(true));
+		}
+		// 満杯
+		assertThat(queue.offer(5), is(false));
+		assertThat(queue.size(), is(4));
+
+		assertThat(queue.poll(), is(1));
+		assertThat(queue.offer(5), is(true));
+		for (int i = 2; i <= 5; i++) {
+			assertThat(queue.poll(), is(i));
+		}
+		assertThat(queue.poll(), is(nullValue()));
+		assertThat(queue.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testConcurrentOffer() throws Exception {
+		final MpscQueue<Integer> queue = new MpscQueue<Integer>(1024);
+		final int threads = 4;
+		final int count = 10000;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] producers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			producers[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < count; i++) {
+					while (!queue.offer(i)) Thread.yield();
+				}
+			});
+			producers[t].start();
+		}
+		start.countDown();
+
+		long sum = 0;
+		int received = 0;
+		while (received < threads * count) {
+			Integer v = queue.poll();
+			if (v == null) {
+				Thread.yield();
+				continue;
+			}
+			sum += v;
+			received++;
+		}
+		for (Thread t : producers) t.join();
+
+		assertThat(sum, is((long) threads * count * (count - 1) / 2));
+		assertThat(queue.poll(), is(nullValue()));
+	}
+}
@@ -0,0 +1,88 @@
+package info.bunji.jdbc.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+	@Test
+	public void testAdd() {
+		RingBuffer<Integer> buf = new RingBuffer<Integer>(3);
+		assertThat(buf.snapshot(), is(Collections.<Integer>emptyList()));
+		buf.add(1);
+		buf.add(2);
+		assertThat(buf.snapshot(), is(Arrays.asList(1, 2)));
+		buf.add(3);
+		buf.add(4);
+		buf.add(5);
+		assertThat(buf.snapshot(), is(Arrays.asList(3, 4, 5)));
+	}
+
+	@Test
+	public void testZeroCapacity() {
+		RingBuffer<Integer> buf = new RingBuffer<Integer>(0);
+		buf.add(1);
+		assertThat(buf.snapshot().size(), is(0));
+	}
+
+	@Test
+	public void testResize() {
+		RingBuffer<Integer> buf = new RingBuffer<Integer>(5);
+		for (int i = 1; i <= 7; i++) buf.add(i);
+
+		buf.resize(2);
+		assertThat(buf.capacity(), is(2));
+		assertThat(buf.snapshot(), is(Arrays.asList(6, 7)));
+		buf.add(8);
+		assertThat(buf.snapshot(), is(Arrays.asList(7, 8)));
+
+		buf.resize(4);
+		assertThat(buf.snapshot(), is(Arrays.asList(7, 8)));
+		buf.add(9);
+		buf.add(10);
+		buf.add(11);
+		assertThat(buf.snapshot(), is(Arrays.asList(8, 9, 10, 11)));
+
+		buf.resize(0);
+		assertThat(buf.snapshot().size(), is(0));
+	}
+
+	@Test
+	public void testClear() {
+		RingBuffer<Integer> buf = new RingBuffer<Integer>(3);
+		for (int i = 1; i <= 4; i++) buf.add(i);
+		buf.clear();
+		assertThat(buf.snapshot(), is(Collections.<Integer>emptyList()));
+		assertThat(buf.capacity(), is(3));
+
+		buf.add(5);
+		assertThat(buf.snapshot(), is(Arrays.asList(5)));
+	}
+
+	@Test
+	public void testConcurrentAdd() throws Exception {
+		final RingBuffer<Integer> buf = new RingBuffer<Integer>(10000);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int base = t * 2500;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 2500; i++) buf.add(base + i);
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) t.join();
+
+		List<Integer> list = buf.snapshot();
+		Set<Integer> set = new HashSet<Integer>(list);
+		assertThat(list.size(), is(10000));
+		assertThat(set.size(), is(10000));
+	}
+}
@@ -0,0 +1,86 @@
+package info.bunji.jdbc.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+public class SqlNormalizerTest {
+
+	@Test
+	public void testLiteral() {
+		assertThat(SqlNormalizer.normalize("select * from t where a = 'it''s' and b = 10 and c = -1.5e3"),
+				is("select * from t where a = ? and b = ? and c = ?"));
+		assertThat(SqlNormalizer.normalize("select * from t where a = 0x1F and b = x'0A' and c = N'abc' and d = b - 1"),
+				is("select * from t where a = ? and b = ? and c = ? and d = b - ?"));
+		// 識別子に含まれる数字や引用符付き識別子は置換しない
+		assertThat(SqlNormalizer.normalize("select col1, \"x 1\", t2.c from t2"),
+				is("select col1, \"x 1\", t2.c from t2"));
+	}
+
+	@Test
+	public void testCaseAndWhitespace() {
+		assertThat(SqlNormalizer.normalize("  SELECT\n\t*  /* comment */ FROM T -- tail\n WHERE a=?  "),
+				is("select * from t where a = ?"));
+		assertThat(SqlNormalizer.normalize("select count( * ),max(t . a) from t where a<>1 and b>=2"),
+				is("select count (*), max (t.a) from t where a <> ? and b >= ?"));
+		// 引用符付き識別子の大文字・小文字は保持する
+		assertThat(SqlNormalizer.normalize("SELECT \"Col\" FROM `Tbl`"),
+				is("select \"Col\" from `Tbl`"));
+	}
+
+	@Test
+	public void testInList() {
+		assertThat(SqlNormalizer.normalize("select * from t where a in (1, 2, 3) and b IN(?,?)"),
+				is("select * from t where a in (?) and b in (?)"));
+		assertThat(SqlNormalizer.normalize("select * from t where a in ('x', -1, :p)"),
+				is("select * from t where a in (?)"));
+		assertThat(SqlNormalizer.normalize("select * from t where a in (select b from u)"),
+				is("select * from t where a in (select b from u)"));
+	}
+
+	@Test
+	public void testBindMarker() {
+		// 名前付き・位置指定のバインド変数
+		assertThat(SqlNormalizer.normalize("update t set a = :val where id = $1"),
+				is("update t set a = ? where id = ?"));
+		// PostgreSQLの型キャストはバインド変数として扱わない
+		assertThat(SqlNormalizer.normalize("select a::text from t"),
+				is("select a :: text from t"));
+	}
+
+	@Test
+	public void testDialect() {
+		// Oracleの代替引用符
+		assertThat(SqlNormalizer.normalize("select q'[it's]', nq'{x}' from dual"),
+				is("select ?, ? from dual"));
+		// PostgreSQLのドル引用符、エスケープ文字列
+		assertThat(SqlNormalizer.normalize("select $$a'b$$, $tag$x$tag$, E'a\\'b' from t"),
+				is("select ?, ?, ? from t"));
+		// SQLServerの引用符付き識別子
+		assertThat(SqlNormalizer.normalize("select [My Col] from t"),
+				is("select [My Col] from t"));
+	}
+
+	@Test
+	public void testFingerprint() {
+		long fp1 = SqlNormalizer.fingerprint(SqlNormalizer.normalize("SELECT * FROM t WHERE a = 1"));
+		long fp2 = SqlNormalizer.fingerprint(SqlNormalizer.normalize("select *\nfrom t where a=2"));
+		long fp3 = SqlNormalizer.fingerprint(SqlNormalizer.normalize("select * from u where a = 1"));
+		assertThat(fp1, is(fp2));
+		assertThat(fp1, is(not(fp3)));
+
+		assertThat(SqlNormalizer.toHex(0x1aL), is("000000000000001a"));
+		assertThat(SqlNormalizer.toHex(-1L), is("ffffffffffffffff"));
+	}
+
+	@Test
+	public void testTemplateMemoize() {
+		SqlTemplate template = SqlTemplate.parse("SELECT * FROM t WHERE a = ?");
+		String normalized = template.getNormalizedSql();
+		assertThat(normalized, is("select * from t where a = ?"));
+		assertThat(template.getNormalizedSql() == normalized, is(true));
+		assertThat(template.getFingerprint(), is(SqlNormalizer.fingerprint(normalized)));
+	}
+}
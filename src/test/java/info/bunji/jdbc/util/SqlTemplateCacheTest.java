@@ -0,0 +1,88 @@
+package info.bunji.jdbc.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+public class SqlTemplateCacheTest {
+
+	@Test
+	public void testGet() {
+		SqlTemplateCache cache = new SqlTemplateCache(10, "lru");
+		SqlTemplate t1 = cache.get("select ?");
+		SqlTemplate t2 = cache.get("select ?");
+		assertThat(t2, is(sameInstance(t1)));
+		assertThat(cache.getHitCount(), is(1L));
+		assertThat(cache.getMissCount(), is(1L));
+		assertThat(cache.size(), is(1));
+	}
+
+	@Test
+	public void testEvictLru() {
+		SqlTemplateCache cache = new SqlTemplateCache(2, "lru");
+		SqlTemplate a = cache.get("a");
+		cache.get("b");
+		cache.get("a");
+		cache.get("c");		// bが削除される
+		assertThat(cache.size(), is(2));
+		assertThat(cache.getEvictionCount(), is(1L));
+		assertThat(cache.get("a"), is(sameInstance(a)));
+		assertThat(cache.getMissCount(), is(3L));
+		cache.get("b");
+		assertThat(cache.getMissCount(), is(4L));
+	}
+
+	@Test
+	public void testEvictLruHotEntry() {
+		SqlTemplateCache cache = new SqlTemplateCache(3, "lru");
+		SqlTemplate hot = cache.get("hot");
+		// 1回しか実行されないSQLが続いても参照されるSQLは残る
+		for (int i = 0; i < 100; i++) {
+			cache.get("select " + i);
+			assertThat(cache.get("hot"), is(sameInstance(hot)));
+		}
+		assertThat(cache.size(), is(3));
+		assertThat(cache.getEvictionCount(), is(98L));
+	}
+
+	@Test
+	public void testEvictFifo() {
+		SqlTemplateCache cache = new SqlTemplateCache(2, "FIFO");
+		SqlTemplate a = cache.get("a");
+		cache.get("b");
+		cache.get("a");
+		cache.get("c");		// aが削除される
+		assertThat(cache.size(), is(2));
+		assertThat(cache.get("a"), is(not(sameInstance(a))));
+		assertThat(cache.getEvictionCount(), is(2L));
+	}
+
+	@Test
+	public void testConfigure() {
+		SqlTemplateCache cache = new SqlTemplateCache(10, "lru");
+		cache.get("a");
+		cache.get("b");
+		cache.get("c");
+		cache.configure(1, "lru");
+		assertThat(cache.size(), is(1));
+
+		// 0以下はキャッシュしない
+		cache.configure(0, "lru");
+		cache.get("a");
+		cache.get("a");
+		assertThat(cache.size(), is(0));
+		assertThat(cache.getHitCount(), is(0L));
+
+		cache.configure(5, "fifo");
+		assertThat(cache.getEviction(), is("fifo"));
+		assertThat(cache.getMaxSize(), is(5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownEviction() {
+		new SqlTemplateCache(10, "random");
+	}
+}
@@ -0,0 +1,50 @@
+package info.bunji.jdbc.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+public class SqlTemplateTest {
+
+	private int[] positions(String sql) {
+		SqlTemplate template = SqlTemplate.parse(sql);
+		int[] ret = new int[template.getParameterCount()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = template.getPosition(i);
+		}
+		return ret;
+	}
+
+	@Test
+	public void testParse() {
+		assertThat(positions("select * from test where a = ? and b = ?"), is(new int[] { 29, 39 }));
+		assertThat(positions("select * from test"), is(new int[0]));
+		assertThat(positions("{? = call proc(?)}"), is(new int[] { 1, 15 }));
+		assertThat(SqlTemplate.parse(null).getSql(), is(""));
+	}
+
+	@Test
+	public void testParseLiteral() {
+		assertThat(positions("select '?', \"?\", `?` from test where a = ?"), is(new int[] { 41 }));
+		assertThat(positions("select 'it''s ?' from test where a = ?"), is(new int[] { 37 }));
+		assertThat(positions("select 'unterminated ?"), is(new int[0]));
+	}
+
+	@Test
+	public void testParseComment() {
+		assertThat(positions("select a -- ?\n from test where a = ?"), is(new int[] { 35 }));
+		assertThat(positions("select /* ? */ a from test where a = ?"), is(new int[] { 37 }));
+		assertThat(positions("select a from test -- ?"), is(new int[0]));
+		assertThat(positions("select 1 - ? / ?"), is(new int[] { 11, 15 }));
+	}
+
+	@Test
+	public void testParsePostgreSql() {
+		assertThat(positions("select * from t where j ?| array['a'] and j ?& array['b'] and a = ?"), is(new int[] { 66 }));
+		assertThat(positions("select * from t where j ?? 'a' and a = ?"), is(new int[] { 39 }));
+		assertThat(positions("select ?|| 'a'"), is(new int[] { 7 }));
+		assertThat(positions("select $$?$$, $tag$ ? $tag$, ?"), is(new int[] { 29 }));
+		assertThat(positions("select * from v$session where a = ?"), is(new int[] { 34 }));
+	}
+}